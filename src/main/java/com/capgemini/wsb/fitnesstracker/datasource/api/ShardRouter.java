@@ -0,0 +1,154 @@
+package com.capgemini.wsb.fitnesstracker.datasource.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Routes the database access to the shard the data of a user lives on. A user, together with everything referencing
+ * it, is stored on the shard picked by the user id; data of many users is read from all shards at once.
+ * With sharding disabled there is a single shard and the methods simply run the given actions.
+ * <p>
+ * The shard is bound to the current thread and taken by the first statement of a transaction, so within
+ * a transaction it has to be bound before anything is read or written, and cannot be changed afterwards.
+ */
+public interface ShardRouter {
+
+    /**
+     * @return number of shards, {@code 1} if sharding is disabled
+     */
+    int shardCount();
+
+    /**
+     * @param userId id of the user
+     * @return shard the data of the user lives on
+     */
+    int shardOf(long userId);
+
+    /**
+     * Runs the action with the database access of the current thread bound to the given shard.
+     *
+     * @param shard  shard to access
+     * @param action action to run
+     * @return result of the action
+     */
+    <T> T onShard(int shard, Supplier<T> action);
+
+    /**
+     * Runs the action with the database access of the current thread bound to the shard of the given user.
+     *
+     * @param userId id of the user whose data is accessed
+     * @param action action to run
+     * @return result of the action
+     */
+    default <T> T onShardOf(long userId, Supplier<T> action) {
+        return onShard(shardOf(userId), action);
+    }
+
+    /**
+     * Runs the action on every shard in parallel. Each run happens on another thread, so it does not take part in
+     * the transaction of the caller.
+     *
+     * @param action action to run
+     * @return results of the action, in the order of the shards
+     */
+    <T> List<T> onEveryShard(Supplier<T> action);
+
+    /**
+     * Runs the stream query on every shard in parallel, each in its own read-only transaction, and passes the items
+     * to the consumer on the calling thread as they arrive. Only a bounded number of items is buffered, so a slow
+     * consumer holds the queries back instead of piling the results up in memory.
+     *
+     * @param query    query opening the stream, closed once consumed
+     * @param consumer consumer of the items, in no particular order across the shards
+     */
+    <T> void streamEveryShard(Supplier<Stream<T>> query, Consumer<T> consumer);
+
+    /**
+     * Runs the query on every shard in parallel and concatenates the results.
+     *
+     * @param query query to run
+     * @return results of all shards
+     */
+    default <T> List<T> findOnEveryShard(Supplier<? extends Collection<T>> query) {
+        List<? extends Collection<T>> results = onEveryShard(query);
+        if (results.size() == 1) {
+            return new ArrayList<>(results.get(0));
+        }
+        List<T> merged = new ArrayList<>(results.stream().mapToInt(Collection::size).sum());
+        results.forEach(merged::addAll);
+        return merged;
+    }
+
+    /**
+     * Runs the page query on every shard in parallel and merges the sorted pages into one. Every shard has to return
+     * its page sorted in the given order, and at least {@code limit} items if it has that many.
+     *
+     * @param query page query to run
+     * @param order order of the items within the pages
+     * @param limit maximal number of items of the merged page
+     * @return first {@code limit} items of all shards, in the given order
+     */
+    default <T> List<T> findPageOnEveryShard(Supplier<List<T>> query, Comparator<? super T> order, int limit) {
+        List<List<T>> pages = onEveryShard(query);
+        if (pages.size() == 1) {
+            return pages.get(0).size() <= limit ? pages.get(0) : pages.get(0).subList(0, limit);
+        }
+        // k-way merge, reading the heads of the pages only as far as the merged page reaches
+        PriorityQueue<PageCursor<T>> heads = new PriorityQueue<>((first, second) -> order.compare(first.head(), second.head()));
+        pages.stream().filter(page -> !page.isEmpty()).forEach(page -> heads.add(new PageCursor<>(page)));
+        List<T> merged = new ArrayList<>(limit);
+        while (merged.size() < limit && !heads.isEmpty()) {
+            PageCursor<T> cursor = heads.poll();
+            merged.add(cursor.head());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Groups the users by the shard their data lives on.
+     *
+     * @param userIds ids of the users
+     * @return ids of the users per shard, only shards having any of the users
+     */
+    default Map<Integer, List<Long>> groupByShard(Collection<Long> userIds) {
+        Map<Integer, List<Long>> groups = new TreeMap<>();
+        for (Long userId : userIds) {
+            groups.computeIfAbsent(shardOf(userId), shard -> new ArrayList<>()).add(userId);
+        }
+        return groups;
+    }
+
+    /**
+     * Position within a sorted page of a single shard.
+     */
+    final class PageCursor<T> {
+
+        private final List<T> page;
+        private int position;
+
+        private PageCursor(List<T> page) {
+            this.page = page;
+        }
+
+        private T head() {
+            return page.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < page.size();
+        }
+
+    }
+
+}
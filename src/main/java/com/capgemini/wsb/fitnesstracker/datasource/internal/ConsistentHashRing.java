@@ -0,0 +1,66 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring assigning user ids to shards. Every shard owns a number of points (virtual nodes) spread over
+ * the 64-bit hash space, and a user belongs to the shard owning the first point at or after the hash of its id.
+ * Adding a shard only takes over the users falling right before its own points, about {@code 1 / shardCount}
+ * of them, while all other users stay where they are.
+ */
+final class ConsistentHashRing {
+
+    private final long[] points;
+
+    private final int[] shards;
+
+    ConsistentHashRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("Hash ring needs at least one shard and one virtual node");
+        }
+        TreeMap<Long, Integer> ring = new TreeMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                // the points of a shard do not depend on the other shards, so adding one leaves them in place
+                ring.put(hash(((long) (shard + 1) << 32) | node), shard);
+            }
+        }
+        points = new long[ring.size()];
+        shards = new int[ring.size()];
+        int index = 0;
+        for (Map.Entry<Long, Integer> point : ring.entrySet()) {
+            points[index] = point.getKey();
+            shards[index] = point.getValue();
+            index++;
+        }
+    }
+
+    int shardOf(long userId) {
+        long hash = hash(userId);
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (points[middle] < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return shards[low == points.length ? 0 : low];
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreading consecutive ids evenly over the hash space.
+     */
+    static long hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+}
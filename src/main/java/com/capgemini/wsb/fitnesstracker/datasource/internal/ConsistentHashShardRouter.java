@@ -0,0 +1,181 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * {@link ShardRouter} spreading the users over the shards with a {@link ConsistentHashRing}. Actions run on every
+ * shard are submitted to a thread pool, one task per shard, so the latency of a fan-out is the one of the slowest
+ * shard rather than the sum of all of them.
+ */
+@Slf4j
+class ConsistentHashShardRouter implements ShardRouter, DisposableBean {
+
+    /**
+     * Number of streamed items buffered between the shard queries and the consumer.
+     */
+    private static final int STREAM_BUFFER_SIZE = 1024;
+
+    private static final Object END_OF_SHARD = new Object();
+
+    private final ConsistentHashRing ring;
+
+    private final int shardCount;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ExecutorService executor;
+
+    ConsistentHashShardRouter(int shardCount, int virtualNodes, PlatformTransactionManager transactionManager) {
+        this.ring = new ConsistentHashRing(shardCount, virtualNodes);
+        this.shardCount = shardCount;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "shard-query-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public int shardCount() {
+        return shardCount;
+    }
+
+    @Override
+    public int shardOf(long userId) {
+        return ring.shardOf(userId);
+    }
+
+    @Override
+    public <T> T onShard(int shard, Supplier<T> action) {
+        Objects.checkIndex(shard, shardCount);
+        Integer previous = ShardContext.bind(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    @Override
+    public <T> List<T> onEveryShard(Supplier<T> action) {
+        List<Future<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(executor.submit(() -> onShard(target, action)));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying the shards", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    @Override
+    public <T> void streamEveryShard(Supplier<Stream<T>> query, Consumer<T> consumer) {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(STREAM_BUFFER_SIZE);
+        List<Future<?>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(executor.submit(() -> stream(target, query, queue)));
+        }
+        int finishedShards = 0;
+        try {
+            while (finishedShards < shardCount) {
+                Object item = queue.take();
+                if (item == END_OF_SHARD) {
+                    finishedShards++;
+                } else if (item instanceof ShardFailure failure) {
+                    throw propagate(failure.cause());
+                } else {
+                    @SuppressWarnings("unchecked")
+                    T typedItem = (T) item;
+                    consumer.accept(typedItem);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while streaming from the shards", e);
+        } finally {
+            // stops the queries still running if the consumer or another shard failed
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private <T> void stream(int shard, Supplier<Stream<T>> query, BlockingQueue<Object> queue) {
+        try {
+            onShard(shard, () -> {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    try (Stream<T> items = query.get()) {
+                        items.forEach(item -> put(queue, item));
+                    }
+                });
+                return null;
+            });
+            put(queue, END_OF_SHARD);
+        } catch (CancellationException e) {
+            log.debug("Streaming from shard {} was cancelled", shard);
+        } catch (RuntimeException | Error e) {
+            put(queue, new ShardFailure(e));
+        }
+    }
+
+    private static void put(BlockingQueue<Object> queue, Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Streaming from the shard was cancelled");
+        }
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException("Shard query failed", cause);
+    }
+
+    private record ShardFailure(Throwable cause) {
+
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+/**
+ * Lookup key of the {@link ReadWriteRoutingDataSource}.
+ */
+enum DataSourceRole {
+    PRIMARY,
+    REPLICA
+}
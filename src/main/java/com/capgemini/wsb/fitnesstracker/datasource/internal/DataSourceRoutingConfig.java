@@ -0,0 +1,66 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Splits the database access between the primary ({@code spring.datasource}) and a read-only replica
+ * ({@code datasource.replica}). Read-only transactions, e.g. service methods annotated with
+ * {@code @Transactional(readOnly = true)} and the read methods of the Spring Data repositories, go to the replica,
+ * unless the {@link ReplicaLagGuard} holds them on the primary for a client that has just written, tracked by the
+ * {@link ReadYourWritesFilter}. Enabled with the {@code datasource.replica.enabled} property, unless the database is
+ * sharded.
+ */
+@Configuration
+@ConditionalOnExpression("${datasource.replica.enabled:false} and !${datasource.sharding.enabled:false}")
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+class DataSourceRoutingConfig {
+
+    @Bean
+    DataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().build();
+    }
+
+    @Bean
+    DataSource replicaDataSource(ReplicaDataSourceProperties properties) {
+        return DataSourceBuilder.create()
+                                .url(properties.getUrl())
+                                .username(properties.getUsername())
+                                .password(properties.getPassword())
+                                .build();
+    }
+
+    @Bean
+    ReplicaLagGuard replicaLagGuard(ReplicaDataSourceProperties properties) {
+        return new ReplicaLagGuard(properties.getMaxLag());
+    }
+
+    @Bean
+    ReadYourWritesFilter readYourWritesFilter(ReplicaLagGuard replicaLagGuard) {
+        return new ReadYourWritesFilter(replicaLagGuard);
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                          @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                          ReplicaLagGuard replicaLagGuard) {
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(replicaLagGuard);
+        routingDataSource.setTargetDataSources(Map.of(DataSourceRole.PRIMARY, primaryDataSource,
+                                                      DataSourceRole.REPLICA, replicaDataSource));
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Sends the connections of read-only transactions to the replica, and everything else to the primary.
+ * Must be wrapped in a {@code LazyConnectionDataSourceProxy}, so the connection is acquired on the first statement,
+ * once the transaction has been marked read-only.
+ * <p>
+ * The connections report their committed changes to the {@link ReplicaLagGuard}, the transactions that did not
+ * change anything do not hold any reads on the primary.
+ */
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaLagGuard replicaLagGuard;
+
+    ReadWriteRoutingDataSource(ReplicaLagGuard replicaLagGuard) {
+        this.replicaLagGuard = replicaLagGuard;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !replicaLagGuard.isReplicaStale()) {
+            return DataSourceRole.REPLICA;
+        }
+        return DataSourceRole.PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return WriteTrackingConnection.wrap(super.getConnection(), replicaLagGuard::recordWrite);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return WriteTrackingConnection.wrap(super.getConnection(username, password), replicaLagGuard::recordWrite);
+    }
+
+}
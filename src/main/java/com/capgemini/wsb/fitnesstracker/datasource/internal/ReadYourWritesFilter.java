@@ -0,0 +1,66 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Carries the time of the last write of a client between its requests in the {@value #LAST_WRITE_COOKIE} cookie,
+ * so the {@link ReplicaLagGuard} keeps the reads of that client, and only of that client, on the primary while the
+ * replica catches up.
+ */
+@RequiredArgsConstructor
+class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String LAST_WRITE_COOKIE = "last-write";
+
+    private final ReplicaLagGuard replicaLagGuard;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        replicaLagGuard.bindClient(lastWriteMillis(request),
+                                   lastWriteMillis -> rememberWrite(response, lastWriteMillis));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            replicaLagGuard.unbindClient();
+        }
+    }
+
+    private static long lastWriteMillis(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return 0;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (LAST_WRITE_COOKIE.equals(cookie.getName())) {
+                try {
+                    // a time from the future would hold the client on the primary for longer than the lag
+                    return Math.min(Long.parseLong(cookie.getValue()), System.currentTimeMillis());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void rememberWrite(HttpServletResponse response, long lastWriteMillis) {
+        // the writes are committed before the response is written, unless it is streamed
+        if (response.isCommitted()) {
+            return;
+        }
+        Cookie cookie = new Cookie(LAST_WRITE_COOKIE, Long.toString(lastWriteMillis));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) replicaLagGuard.getMaxLag().toSeconds() + 1);
+        response.addCookie(cookie);
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Connection to the read-only replica of the primary database.
+ */
+@ConfigurationProperties(prefix = "datasource.replica")
+@Getter
+@RequiredArgsConstructor
+class ReplicaDataSourceProperties {
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    /**
+     * Upper bound of the replication lag. Reads of a client started within that time after its last committed write
+     * go to the primary, so clients always read their own writes.
+     */
+    private final Duration maxLag;
+
+}
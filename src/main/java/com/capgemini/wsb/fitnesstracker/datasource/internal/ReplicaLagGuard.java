@@ -0,0 +1,77 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import jakarta.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.function.LongConsumer;
+
+/**
+ * Keeps the reads of a client on the primary while the replica may still be missing a write of that client.
+ * The replica is considered stale for a client for {@code maxLag} after its last committed write, the other clients
+ * keep reading from the replica. A request acts for the client whose last write it carries (see
+ * {@link ReadYourWritesFilter}); threads working outside of requests (startup and scheduled jobs) are clients of
+ * their own.
+ * <p>
+ * The write times are wall clock times, as they travel between the instances of the application with the client.
+ */
+class ReplicaLagGuard {
+
+    private final Duration maxLag;
+
+    private final ThreadLocal<ClientWrites> currentClient = ThreadLocal.withInitial(() -> new ClientWrites(0, null));
+
+    ReplicaLagGuard(Duration maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    Duration getMaxLag() {
+        return maxLag;
+    }
+
+    /**
+     * Makes the current thread act for the given client, until {@link #unbindClient()}.
+     *
+     * @param lastWriteMillis time of the last write of the client, {@code 0} if it has none
+     * @param writeListener   told the time of every further write of the client
+     */
+    void bindClient(long lastWriteMillis, LongConsumer writeListener) {
+        currentClient.set(new ClientWrites(lastWriteMillis, writeListener));
+    }
+
+    void unbindClient() {
+        currentClient.remove();
+    }
+
+    /**
+     * Records a committed write of the client of the current thread.
+     */
+    void recordWrite() {
+        ClientWrites client = currentClient.get();
+        client.lastWriteMillis = System.currentTimeMillis();
+        if (client.writeListener != null) {
+            client.writeListener.accept(client.lastWriteMillis);
+        }
+    }
+
+    /**
+     * @return {@code true} if the client of the current thread committed a write recently enough not to be
+     * replicated yet
+     */
+    boolean isReplicaStale() {
+        return System.currentTimeMillis() - currentClient.get().lastWriteMillis < maxLag.toMillis();
+    }
+
+    private static final class ClientWrites {
+
+        private long lastWriteMillis;
+
+        @Nullable
+        private final LongConsumer writeListener;
+
+        private ClientWrites(long lastWriteMillis, @Nullable LongConsumer writeListener) {
+            this.lastWriteMillis = lastWriteMillis;
+            this.writeListener = writeListener;
+        }
+    }
+
+}
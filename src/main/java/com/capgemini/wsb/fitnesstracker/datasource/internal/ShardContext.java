@@ -0,0 +1,43 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Shard the database access of the current thread is bound to, read by the {@link ShardRoutingDataSource}.
+ */
+final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return shard bound to the current thread, {@code null} if none is
+     */
+    @Nullable
+    static Integer current() {
+        return CURRENT_SHARD.get();
+    }
+
+    /**
+     * Binds the current thread to the shard.
+     *
+     * @return previously bound shard, to be {@link #restore restored} afterwards
+     */
+    @Nullable
+    static Integer bind(int shard) {
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        return previous;
+    }
+
+    static void restore(@Nullable Integer previous) {
+        if (previous == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(previous);
+        }
+    }
+
+}
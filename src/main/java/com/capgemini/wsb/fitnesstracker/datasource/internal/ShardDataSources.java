@@ -0,0 +1,11 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Data sources of all shards, indexed by the shard.
+ */
+record ShardDataSources(List<DataSource> dataSources) {
+
+}
@@ -0,0 +1,17 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Sends the connections to the shard bound to the current thread, or to the first shard if none is bound.
+ * Must be wrapped in a {@code LazyConnectionDataSourceProxy}, so the connection of a transaction is acquired on its
+ * first statement, once the shard has been bound.
+ */
+class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.relational.SchemaManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Creates the schema on the shards following the first one, where Hibernate creates it on start, and makes the ids
+ * generated by sequences unique across the shards. Hibernate takes the ids in blocks of {@value #ID_BLOCK_SIZE} from
+ * the sequence of whichever shard is bound when the previous block runs out, and hands them out to the inserts into
+ * any shard; the sequence of every shard is therefore restarted to hand out only the blocks of its own residue class,
+ * so no two shards ever hand out the same block. A sequence only ever moves forward, to the first value of its class
+ * not below its current one, so a restart against shards holding data never hands out an id again.
+ * The increment of the sequences then differs from the {@code allocationSize}, which Hibernate is told to accept in
+ * {@link ShardingConfig}. User ids are allocated from the first shard only, see {@code UserIdAllocator}.
+ */
+@Slf4j
+class ShardSchemaInitializer {
+
+    /**
+     * {@code allocationSize} of the sequences.
+     */
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final List<String> SHARDED_SEQUENCES = List.of("trainings_seq", "training_sample_chunks_seq");
+
+    private static final String NEXT_SEQUENCE_VALUE =
+            "select base_value from information_schema.sequences where lower(sequence_name) = ?";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final List<DataSource> dataSources;
+
+    private final ShardRouter shardRouter;
+
+    ShardSchemaInitializer(EntityManagerFactory entityManagerFactory, ShardDataSources shardDataSources, ShardRouter shardRouter) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.dataSources = shardDataSources.dataSources();
+        this.shardRouter = shardRouter;
+    }
+
+    @PostConstruct
+    void initialize() {
+        SchemaManager schemaManager = entityManagerFactory.unwrap(SessionFactory.class).getSchemaManager();
+        for (int shard = 1; shard < dataSources.size(); shard++) {
+            // the schema manager takes its connections from the routing data source, i.e. from the bound shard
+            shardRouter.onShard(shard, () -> {
+                schemaManager.exportMappedObjects(true);
+                return null;
+            });
+        }
+        long stride = (long) dataSources.size() * ID_BLOCK_SIZE;
+        for (int shard = 0; shard < dataSources.size(); shard++) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSources.get(shard));
+            long firstBlock = (shard + 1L) * ID_BLOCK_SIZE;
+            for (String sequence : SHARDED_SEQUENCES) {
+                long next = jdbcTemplate.queryForObject(NEXT_SEQUENCE_VALUE, Long.class, sequence);
+                jdbcTemplate.execute("alter sequence %s restart with %d increment by %d"
+                        .formatted(sequence, nextInClass(next, firstBlock, stride), stride));
+            }
+        }
+        log.info("Created the schema on {} shards", dataSources.size());
+    }
+
+    /**
+     * @return the least value not below {@code next} handing out the blocks of the class of {@code firstBlock}
+     */
+    private static long nextInClass(long next, long firstBlock, long stride) {
+        if (next <= firstBlock) {
+            return firstBlock;
+        }
+        return firstBlock + (next - firstBlock + stride - 1) / stride * stride;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.id.SequenceMismatchStrategy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spreads the users, with everything referencing them, over several databases: the primary one
+ * ({@code spring.datasource}) and the ones listed in {@code datasource.sharding.shards}. The services bind
+ * the shard through the {@link ShardRouter} and the Spring Data repositories run on whichever shard is bound.
+ * Enabled with the {@code datasource.sharding.enabled} property, which turns the replica routing off.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+class ShardingConfig {
+
+    @Bean
+    ShardDataSources shardDataSources(DataSourceProperties primaryProperties, ShardingProperties properties) {
+        List<DataSource> dataSources = new ArrayList<>();
+        dataSources.add(primaryProperties.initializeDataSourceBuilder().build());
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            dataSources.add(DataSourceBuilder.create()
+                                             .url(shard.url())
+                                             .username(shard.username())
+                                             .password(shard.password())
+                                             .build());
+        }
+        return new ShardDataSources(List.copyOf(dataSources));
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(ShardDataSources shardDataSources) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shardDataSources.dataSources().size(); shard++) {
+            targets.put(shard, shardDataSources.dataSources().get(shard));
+        }
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(shardDataSources.dataSources().get(0));
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    ShardRouter shardRouter(ShardDataSources shardDataSources, ShardingProperties properties,
+                            PlatformTransactionManager transactionManager) {
+        return new ConsistentHashShardRouter(shardDataSources.dataSources().size(), properties.getVirtualNodes(),
+                                             transactionManager);
+    }
+
+    /**
+     * The {@link ShardSchemaInitializer} moves the sharded sequences by the whole stride of the shards, while
+     * the entities keep taking blocks of {@code allocationSize} ids from them. Hibernate would refuse to start
+     * against such sequences; the pooled optimizer takes the sequence value as the last id of its block, which is
+     * exactly what the stride relies on, so the mismatch is expected and the sequences must not be "fixed" either.
+     */
+    @Bean
+    HibernatePropertiesCustomizer shardedSequencesCustomizer() {
+        return properties -> properties.put(AvailableSettings.SEQUENCE_INCREMENT_SIZE_MISMATCH_STRATEGY,
+                                            SequenceMismatchStrategy.NONE);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "datasource.sharding.create-schema", havingValue = "true")
+    ShardSchemaInitializer shardSchemaInitializer(EntityManagerFactory entityManagerFactory,
+                                                  ShardDataSources shardDataSources,
+                                                  ShardRouter shardRouter) {
+        return new ShardSchemaInitializer(entityManagerFactory, shardDataSources, shardRouter);
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+/**
+ * Shards of the database. The primary database ({@code spring.datasource}) is always the first shard.
+ */
+@ConfigurationProperties(prefix = "datasource.sharding")
+@Getter
+@RequiredArgsConstructor
+class ShardingProperties {
+
+    /**
+     * Number of points every shard owns on the hash ring, the more the evener the users are spread.
+     */
+    private final int virtualNodes;
+
+    /**
+     * Whether the schema is created on the shards other than the first one (where Hibernate creates it), together
+     * with the sequences of training ids. Meant for local databases created on every start.
+     */
+    private final boolean createSchema;
+
+    /**
+     * Shards following the primary database.
+     */
+    private final List<Shard> shards;
+
+    record Shard(String url, String username, String password) {
+
+    }
+
+}
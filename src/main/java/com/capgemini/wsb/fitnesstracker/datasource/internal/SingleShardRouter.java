@@ -0,0 +1,59 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * {@link ShardRouter} of the unsharded database, running everything right away on the calling thread.
+ */
+@Component
+@ConditionalOnProperty(name = "datasource.sharding.enabled", havingValue = "false", matchIfMissing = true)
+class SingleShardRouter implements ShardRouter {
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    SingleShardRouter(PlatformTransactionManager transactionManager) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public int shardCount() {
+        return 1;
+    }
+
+    @Override
+    public int shardOf(long userId) {
+        return 0;
+    }
+
+    @Override
+    public <T> T onShard(int shard, Supplier<T> action) {
+        return action.get();
+    }
+
+    @Override
+    public <T> List<T> onEveryShard(Supplier<T> action) {
+        return Collections.singletonList(action.get());
+    }
+
+    @Override
+    public <T> void streamEveryShard(Supplier<Stream<T>> query, Consumer<T> consumer) {
+        // joins the transaction of the caller, if there is one
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<T> items = query.get()) {
+                items.forEach(consumer);
+            }
+        });
+    }
+
+}
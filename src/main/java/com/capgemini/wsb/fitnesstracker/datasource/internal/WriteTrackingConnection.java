@@ -0,0 +1,152 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import jakarta.annotation.Nullable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Pattern;
+
+/**
+ * Wraps a JDBC connection to tell whether it committed any change, so the transactions that only read do not count
+ * as writes. A statement is a write when it reports update counts, or when it is a query over a data change delta
+ * table ({@code select ... from final table (update ...)}).
+ */
+final class WriteTrackingConnection implements InvocationHandler {
+
+    private static final Pattern DATA_CHANGE_DELTA_TABLE = Pattern.compile("\\b(old|new|final)\\s+table\\s*\\(",
+                                                                           Pattern.CASE_INSENSITIVE);
+
+    private final Connection connection;
+
+    private final Runnable committedWriteListener;
+
+    private Connection proxy;
+
+    /**
+     * Whether the current transaction of the connection has changed anything yet.
+     */
+    private boolean written;
+
+    private WriteTrackingConnection(Connection connection, Runnable committedWriteListener) {
+        this.connection = connection;
+        this.committedWriteListener = committedWriteListener;
+    }
+
+    /**
+     * @param connection             connection to track
+     * @param committedWriteListener called after every commit of a change, on the committing thread
+     * @return connection delegating to the given one
+     */
+    static Connection wrap(Connection connection, Runnable committedWriteListener) {
+        WriteTrackingConnection handler = new WriteTrackingConnection(connection, committedWriteListener);
+        handler.proxy = (Connection) Proxy.newProxyInstance(WriteTrackingConnection.class.getClassLoader(),
+                                                            new Class<?>[]{Connection.class},
+                                                            handler);
+        return handler.proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "createStatement", "prepareStatement", "prepareCall":
+                Statement statement = (Statement) invokeOn(connection, method, args);
+                return Proxy.newProxyInstance(WriteTrackingConnection.class.getClassLoader(),
+                                              new Class<?>[]{method.getReturnType()},
+                                              new StatementHandler(statement, sqlOf(args)));
+            case "commit":
+                invokeOn(connection, method, args);
+                if (written) {
+                    written = false;
+                    committedWriteListener.run();
+                }
+                return null;
+            case "rollback":
+                Object result = invokeOn(connection, method, args);
+                // a rollback to a savepoint keeps the changes made before it
+                if (args == null) {
+                    written = false;
+                }
+                return result;
+            default:
+                return invokeOn(connection, method, args);
+        }
+    }
+
+    private void markWritten() throws SQLException {
+        if (connection.getAutoCommit()) {
+            committedWriteListener.run();
+        } else {
+            written = true;
+        }
+    }
+
+    private static boolean isDataChangeQuery(@Nullable String sql) {
+        return sql != null && DATA_CHANGE_DELTA_TABLE.matcher(sql).find();
+    }
+
+    @Nullable
+    private static String sqlOf(Object[] args) {
+        return args != null && args.length > 0 && args[0] instanceof String sql ? sql : null;
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+
+        @Nullable
+        private final String preparedSql;
+
+        private StatementHandler(Statement statement, @Nullable String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getConnection":
+                    return WriteTrackingConnection.this.proxy;
+                default:
+                    break;
+            }
+            Object result = invokeOn(statement, method, args);
+            if (isWrite(method, args, result)) {
+                markWritten();
+            }
+            return result;
+        }
+
+        private boolean isWrite(Method method, Object[] args, Object result) {
+            String sql = sqlOf(args) != null ? sqlOf(args) : preparedSql;
+            return switch (method.getName()) {
+                case "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch" -> true;
+                // false means the first result is an update count
+                case "execute" -> !(Boolean) result || isDataChangeQuery(sql);
+                case "executeQuery" -> isDataChangeQuery(sql);
+                default -> false;
+            };
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.capgemini.wsb.fitnesstracker.exception.api;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Generic business exception indicating that the resource was concurrently modified by someone else.
+ * Will resolve to the {@link HttpStatus#CONFLICT} if handled by the Spring's exception handler.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictException extends BusinessException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+
+}
@@ -5,7 +5,8 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
-@Table(name = "statistics")
+@Table(name = "statistics",
+       indexes = @Index(name = "idx_statistics_user_id", columnList = "user_id", unique = true))
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
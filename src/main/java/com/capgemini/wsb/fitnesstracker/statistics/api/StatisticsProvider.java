@@ -13,4 +13,13 @@ public interface StatisticsProvider {
      */
     Optional<Statistics> getStatistics(Long statisticsId);
 
+    /**
+     * Retrieves the statistics of a user. The statistics are kept up to date as the trainings of the user are written,
+     * so nothing is aggregated on read. A user without any trainings has no statistics yet.
+     *
+     * @param userId id of the user
+     * @return An {@link Optional} containing the statistics of the user, or {@link Optional#empty()} if not found
+     */
+    Optional<Statistics> getUserStatistics(Long userId);
+
 }
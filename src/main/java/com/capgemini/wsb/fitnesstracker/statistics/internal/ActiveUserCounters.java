@@ -0,0 +1,188 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingChangedEvent;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Approximate numbers of the distinct users who trained, per start day of the trainings and {@link ActivityType}.
+ * Every day and activity with trainings has a {@link HyperLogLog} of 4 KB fed with the users of the committed
+ * training creations, allocated with the first training of the activity on the day; the users of a date range,
+ * of one or all activities, are estimated from the union of the counters of its days.
+ * The counters are rebuilt from the trainings once the application is ready and on demand, every shard into its own
+ * counters in parallel, united afterwards; trainings created meanwhile are buffered and replayed into the rebuilt
+ * counters once they replace the current ones. Training updates and deletions do not change the counters.
+ */
+@Component
+@Slf4j
+class ActiveUserCounters {
+
+    private static final String SELECT_TRAININGS = "select user_id, activity_type, start_time from trainings";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ShardRouter shardRouter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private NavigableMap<LocalDate, HyperLogLog[]> counters = new TreeMap<>();
+
+    /**
+     * Held by the rebuild, so concurrent rebuilds never share the buffer of created trainings.
+     */
+    private final Object rebuildLock = new Object();
+
+    /**
+     * Trainings created since the running rebuild started reading the trainings, or {@code null} if there is no
+     * rebuild. Guarded by {@code this}.
+     */
+    private List<TrainingDto> createdDuringRebuild;
+
+    private volatile boolean loaded;
+
+    ActiveUserCounters(JdbcTemplate jdbcTemplate, ShardRouter shardRouter, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                createdDuringRebuild = new ArrayList<>();
+            }
+            try {
+                rebuildFromTrainings();
+            } finally {
+                synchronized (this) {
+                    createdDuringRebuild = null;
+                }
+            }
+        }
+    }
+
+    private void rebuildFromTrainings() {
+        List<NavigableMap<LocalDate, HyperLogLog[]>> shardCounters = shardRouter.onEveryShard(() -> {
+            NavigableMap<LocalDate, HyperLogLog[]> days = new TreeMap<>();
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(SELECT_TRAININGS, resultSet -> {
+                LocalDate day = resultSet.getTimestamp(3).toLocalDateTime().toLocalDate();
+                add(days, day, resultSet.getInt(2), resultSet.getLong(1));
+            }));
+            return days;
+        });
+        NavigableMap<LocalDate, HyperLogLog[]> united = shardCounters.get(0);
+        for (NavigableMap<LocalDate, HyperLogLog[]> days : shardCounters.subList(1, shardCounters.size())) {
+            days.forEach((day, activities) -> {
+                mergeDay(united.computeIfAbsent(day, ignored -> newDay()), activities);
+            });
+        }
+        synchronized (this) {
+            counters = united;
+            createdDuringRebuild.forEach(this::addTraining);
+            createdDuringRebuild = null;
+        }
+        loaded = true;
+        log.info("Rebuilt the active user counters of {} days", united.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTrainingChanged(TrainingChangedEvent event) {
+        TrainingDto training = event.current();
+        if (event.previous() != null || training == null) {
+            // only creations are added
+            return;
+        }
+        synchronized (this) {
+            if (createdDuringRebuild != null) {
+                // the rebuild may have read the trainings before this one was committed
+                createdDuringRebuild.add(training);
+            }
+            if (loaded) {
+                // before loading the trainings are read by the rebuild
+                addTraining(training);
+            }
+        }
+    }
+
+    /**
+     * Estimates the number of distinct users who trained within the range.
+     *
+     * @param from first day of the range
+     * @param to   day after the last day of the range
+     * @return estimated users of all activities together and of every activity alone
+     */
+    synchronized ActiveUsers countActiveUsers(LocalDate from, LocalDate to) {
+        HyperLogLog all = new HyperLogLog();
+        HyperLogLog[] activities = newDay();
+        for (HyperLogLog[] day : counters.subMap(from, true, to, false).values()) {
+            mergeDay(activities, day);
+        }
+        Map<ActivityType, Long> usersByActivity = new EnumMap<>(ActivityType.class);
+        for (ActivityType activityType : ActivityType.values()) {
+            HyperLogLog users = activities[activityType.ordinal()];
+            if (users == null) {
+                usersByActivity.put(activityType, 0L);
+            } else {
+                all.merge(users);
+                usersByActivity.put(activityType, users.estimate());
+            }
+        }
+        return new ActiveUsers(from, to, all.estimate(), usersByActivity);
+    }
+
+    private void addTraining(TrainingDto training) {
+        LocalDate day = training.startTime().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        add(counters, day, training.activityType().ordinal(), training.userId());
+    }
+
+    private static void add(Map<LocalDate, HyperLogLog[]> days, LocalDate day, int activity, long userId) {
+        HyperLogLog[] activities = days.computeIfAbsent(day, ignored -> newDay());
+        if (activities[activity] == null) {
+            activities[activity] = new HyperLogLog();
+        }
+        activities[activity].add(userId);
+    }
+
+    /**
+     * Adds the users of the other day to the day, activity by activity. The other day is left untouched.
+     */
+    private static void mergeDay(HyperLogLog[] activities, HyperLogLog[] other) {
+        for (int activity = 0; activity < other.length; activity++) {
+            if (other[activity] == null) {
+                continue;
+            }
+            if (activities[activity] == null) {
+                activities[activity] = new HyperLogLog();
+            }
+            activities[activity].merge(other[activity]);
+        }
+    }
+
+    /**
+     * Counters of a day, per activity ordinal, {@code null} for the activities without trainings yet.
+     */
+    private static HyperLogLog[] newDay() {
+        return new HyperLogLog[ActivityType.values().length];
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Estimated numbers of the distinct users who trained within a range of days.
+ *
+ * @param from            first day of the range
+ * @param to              day after the last day of the range
+ * @param users           users of all activities
+ * @param usersByActivity users of every activity
+ */
+public record ActiveUsers(LocalDate from, LocalDate to, long users, Map<ActivityType, Long> usersByActivity) {
+}
@@ -0,0 +1,51 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Actuator endpoint {@code activeusers} with the estimated numbers of the distinct users who trained within
+ * the {@code [from, to)} range of days (ISO-8601 dates), today by default. Writing to it rebuilds the counters
+ * from the trainings.
+ */
+@Component
+@Endpoint(id = "activeusers")
+@RequiredArgsConstructor
+class ActiveUsersEndpoint {
+
+    private final ActiveUserCounters activeUserCounters;
+
+    @ReadOperation
+    public ActiveUsers activeUsers(@Nullable String from, @Nullable String to) {
+        LocalDate start = from == null ? LocalDate.now() : parse(from);
+        LocalDate end = to == null ? start.plusDays(1) : parse(to);
+        if (!start.isBefore(end)) {
+            throw new InvalidEndpointRequestException("Range start %s should be before its end %s".formatted(start, end),
+                                                      "Invalid range");
+        }
+        return activeUserCounters.countActiveUsers(start, end);
+    }
+
+    @WriteOperation
+    public void rebuild() {
+        activeUserCounters.rebuild();
+    }
+
+    private static LocalDate parse(String date) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new InvalidEndpointRequestException("Date %s should have the yyyy-MM-dd format".formatted(date),
+                                                      "Invalid date");
+        }
+    }
+
+}
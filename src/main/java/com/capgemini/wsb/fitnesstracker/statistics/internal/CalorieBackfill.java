@@ -0,0 +1,210 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recomputes the burned calories of all trainings, and the totals in the statistics of their users, with the
+ * {@link CalorieEngine}. Users are processed in chunks of {@value #CHUNK_SIZE}, the chunks of all shards in parallel
+ * on a pool sized by the available processors. Every chunk is one transaction: it locks the trainings and then the
+ * statistics of its users (the order in which training writes take them), reads the trainings straight into
+ * primitive columns, estimates the calories in one batch and writes them back, per training and per user, with
+ * one JDBC batch each. Training writes of the users of a chunk wait for its locks, so their deltas are never lost
+ * by the overwrite.
+ */
+@Component
+@Slf4j
+class CalorieBackfill implements DisposableBean {
+
+    static final int CHUNK_SIZE = 1000;
+
+    private static final String SELECT_TRAININGS = """
+            select t.user_id, t.activity_type, t.start_time, t.end_time, t.average_speed, u.birthdate, t.id
+            from trainings t
+            join users u on u.id = t.user_id
+            where t.user_id in (:userIds)
+            """;
+
+    private static final String LOCK_TRAININGS = "select id from trainings where user_id in (:userIds) for update";
+
+    private static final String UPDATE_TRAINING_CALORIES =
+            "update trainings set calories_burned = :calories where id = :trainingId";
+
+    private static final String UPDATE_CALORIES =
+            "update statistics set total_calories_burned = :calories where user_id = :userId";
+
+    private final StatisticsRepository statisticsRepository;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final ShardRouter shardRouter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    CalorieBackfill(StatisticsRepository statisticsRepository,
+                    NamedParameterJdbcTemplate jdbcTemplate,
+                    ShardRouter shardRouter,
+                    PlatformTransactionManager transactionManager) {
+        this.statisticsRepository = statisticsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "calorie-backfill-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Recomputes the burned calories of all users.
+     *
+     * @return number of processed trainings
+     */
+    long backfill() {
+        // a few chunks per thread in flight, the user ids of the remaining ones are not read ahead
+        Queue<Future<Integer>> pending = new ArrayDeque<>();
+        long trainings = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            int chunkShard = shard;
+            long after = 0;
+            List<Long> userIds;
+            do {
+                long previous = after;
+                userIds = shardRouter.onShard(shard, () -> transactionTemplate.execute(
+                        status -> statisticsRepository.findUserIdsAfter(previous, PageRequest.of(0, CHUNK_SIZE))));
+                if (userIds.isEmpty()) {
+                    break;
+                }
+                List<Long> chunk = userIds;
+                pending.add(executor.submit(() -> shardRouter.onShard(
+                        chunkShard, () -> transactionTemplate.execute(status -> backfillChunk(chunk)))));
+                while (pending.size() > 2 * parallelism) {
+                    trainings += await(pending.remove());
+                }
+                after = userIds.get(userIds.size() - 1);
+            } while (userIds.size() == CHUNK_SIZE);
+        }
+        while (!pending.isEmpty()) {
+            trainings += await(pending.remove());
+        }
+        log.info("Backfilled the burned calories of {} trainings", trainings);
+        return trainings;
+    }
+
+    private int backfillChunk(List<Long> userIds) {
+        jdbcTemplate.queryForList(LOCK_TRAININGS, new MapSqlParameterSource("userIds", userIds), Long.class);
+        statisticsRepository.lockByUserIds(userIds);
+        TrainingColumns columns = new TrainingColumns();
+        jdbcTemplate.query(SELECT_TRAININGS, new MapSqlParameterSource("userIds", userIds), resultSet -> {
+            long startMillis = resultSet.getTimestamp(3).getTime();
+            long birthEpochDay = resultSet.getObject(6, LocalDate.class).toEpochDay();
+            columns.add(resultSet.getLong(7),
+                        resultSet.getLong(1),
+                        resultSet.getInt(2),
+                        (resultSet.getTimestamp(4).getTime() - startMillis) / 1000,
+                        resultSet.getDouble(5),
+                        CalorieEngine.age(birthEpochDay, startMillis));
+        });
+        int[] calories = new int[columns.size];
+        CalorieEngine.estimate(columns.activities, columns.durationSeconds, columns.averageSpeeds, columns.ages,
+                               columns.size, calories);
+
+        SqlParameterSource[] trainingUpdates = new SqlParameterSource[columns.size];
+        for (int i = 0; i < columns.size; i++) {
+            trainingUpdates[i] = new MapSqlParameterSource("trainingId", columns.trainingIds[i])
+                    .addValue("calories", calories[i]);
+        }
+        jdbcTemplate.batchUpdate(UPDATE_TRAINING_CALORIES, trainingUpdates);
+
+        Map<Long, Integer> caloriesByUser = new HashMap<>(userIds.size() * 4 / 3 + 1);
+        userIds.forEach(userId -> caloriesByUser.put(userId, 0));
+        for (int i = 0; i < columns.size; i++) {
+            caloriesByUser.merge(columns.userIds[i], calories[i], Integer::sum);
+        }
+        SqlParameterSource[] updates = caloriesByUser.entrySet()
+                .stream()
+                .map(entry -> new MapSqlParameterSource("userId", entry.getKey()).addValue("calories", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPDATE_CALORIES, updates);
+        return columns.size;
+    }
+
+    private static int await(Future<Integer> chunk) {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Calorie backfill was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Calorie backfill failed", e.getCause());
+        }
+    }
+
+    /**
+     * Trainings of a chunk, column by column.
+     */
+    private static final class TrainingColumns {
+
+        private long[] trainingIds = new long[1024];
+        private long[] userIds = new long[1024];
+        private int[] activities = new int[1024];
+        private long[] durationSeconds = new long[1024];
+        private double[] averageSpeeds = new double[1024];
+        private int[] ages = new int[1024];
+        private int size;
+
+        private void add(long trainingId, long userId, int activity, long duration, double averageSpeed, int age) {
+            if (size == userIds.length) {
+                int capacity = size * 2;
+                trainingIds = Arrays.copyOf(trainingIds, capacity);
+                userIds = Arrays.copyOf(userIds, capacity);
+                activities = Arrays.copyOf(activities, capacity);
+                durationSeconds = Arrays.copyOf(durationSeconds, capacity);
+                averageSpeeds = Arrays.copyOf(averageSpeeds, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+            }
+            trainingIds[size] = trainingId;
+            userIds[size] = userId;
+            activities[size] = activity;
+            durationSeconds[size] = duration;
+            averageSpeeds[size] = averageSpeed;
+            ages[size] = age;
+            size++;
+        }
+
+    }
+
+}
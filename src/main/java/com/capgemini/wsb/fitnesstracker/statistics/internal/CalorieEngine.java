@@ -0,0 +1,151 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+
+/**
+ * Estimates the calories burned by a training from its metabolic equivalent (MET): {@code MET * weight * hours}.
+ * The MET of an activity is interpolated from the speed-dependent values of the Compendium of Physical Activities
+ * (speeds in km/h); a training without a speed gets the typical MET of its activity. Users have no recorded weight,
+ * so a reference weight of {@value #REFERENCE_WEIGHT_KG} kg is assumed, and the result is scaled by the decline
+ * of the resting metabolic rate with age.
+ * <p>
+ * The single-training estimate is plain arithmetic over constant tables, cheap enough for the write path.
+ * The batch estimate runs the same computation over primitive columns, without an object per training.
+ */
+final class CalorieEngine {
+
+    static final double REFERENCE_WEIGHT_KG = 70.0;
+
+    /**
+     * Age the MET values are measured for, the metabolic rate is scaled relative to it.
+     */
+    static final int REFERENCE_AGE = 30;
+
+    private static final double SECONDS_PER_HOUR = 3600.0;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private static final double DAYS_PER_YEAR = 365.2425;
+
+    /**
+     * Relative decline of the resting metabolic rate per year of age.
+     */
+    private static final double DECLINE_PER_YEAR = 0.002;
+
+    private static final double MIN_AGE_FACTOR = 0.8;
+
+    private static final double MAX_AGE_FACTOR = 1.1;
+
+    /**
+     * Speeds of the MET table, per activity ordinal, ascending.
+     */
+    private static final double[][] SPEEDS = new double[ActivityType.values().length][];
+
+    /**
+     * METs at the {@link #SPEEDS}, per activity ordinal.
+     */
+    private static final double[][] METS = new double[ActivityType.values().length][];
+
+    /**
+     * MET of a training of unknown speed, per activity ordinal.
+     */
+    private static final double[] TYPICAL_METS = new double[ActivityType.values().length];
+
+    static {
+        table(ActivityType.RUNNING, 9.8,
+              new double[]{6.4, 8.0, 9.7, 11.3, 12.9, 14.5, 16.1, 17.7, 19.3},
+              new double[]{6.0, 8.3, 9.8, 11.0, 11.8, 12.8, 14.5, 16.0, 19.0});
+        table(ActivityType.CYCLING, 8.0,
+              new double[]{10.0, 17.7, 20.9, 24.1, 28.2, 32.2},
+              new double[]{4.0, 6.8, 8.0, 10.0, 12.0, 15.8});
+        table(ActivityType.WALKING, 3.5,
+              new double[]{3.2, 4.0, 4.8, 5.6, 6.4, 7.2, 8.0},
+              new double[]{2.8, 3.0, 3.5, 4.3, 5.0, 7.0, 8.3});
+        table(ActivityType.SWIMMING, 8.3,
+              new double[]{1.8, 2.7, 3.6},
+              new double[]{5.8, 8.3, 10.0});
+        table(ActivityType.TENNIS, 7.3,
+              new double[]{0.0},
+              new double[]{7.3});
+    }
+
+    private CalorieEngine() {
+    }
+
+    /**
+     * Estimates the calories of a single training.
+     *
+     * @param activityType    activity of the training
+     * @param durationSeconds duration of the training
+     * @param averageSpeed    average speed in km/h, {@code 0} if unknown
+     * @param age             age of the user in years at the time of the training
+     * @return burned calories, in kcal
+     */
+    static int estimate(ActivityType activityType, long durationSeconds, double averageSpeed, int age) {
+        return estimate(activityType.ordinal(), durationSeconds, averageSpeed, age);
+    }
+
+    /**
+     * Estimates the calories of {@code count} trainings given column by column.
+     *
+     * @param activities      activity ordinals of the trainings
+     * @param durationSeconds durations of the trainings
+     * @param averageSpeeds   average speeds in km/h, {@code 0} if unknown
+     * @param ages            ages of the users in years at the time of the trainings
+     * @param count           number of trainings
+     * @param calories        receives the burned calories, in kcal
+     */
+    static void estimate(int[] activities, long[] durationSeconds, double[] averageSpeeds, int[] ages, int count,
+                         int[] calories) {
+        for (int i = 0; i < count; i++) {
+            calories[i] = estimate(activities[i], durationSeconds[i], averageSpeeds[i], ages[i]);
+        }
+    }
+
+    /**
+     * Computes the age in whole years, counting with the average length of a year, so the single and the batch
+     * estimates agree without any calendar arithmetic.
+     *
+     * @param birthEpochDay birthdate of the user, as days since the epoch
+     * @param timeMillis    time of the training, as milliseconds since the epoch
+     * @return age of the user at the time
+     */
+    static int age(long birthEpochDay, long timeMillis) {
+        return (int) ((Math.floorDiv(timeMillis, MILLIS_PER_DAY) - birthEpochDay) / DAYS_PER_YEAR);
+    }
+
+    private static int estimate(int activity, long durationSeconds, double averageSpeed, int age) {
+        if (durationSeconds <= 0) {
+            return 0;
+        }
+        double met = averageSpeed > 0
+                ? interpolate(SPEEDS[activity], METS[activity], averageSpeed)
+                : TYPICAL_METS[activity];
+        double ageFactor = Math.min(MAX_AGE_FACTOR,
+                                    Math.max(MIN_AGE_FACTOR, 1 - DECLINE_PER_YEAR * (age - REFERENCE_AGE)));
+        return (int) Math.round(met * REFERENCE_WEIGHT_KG * ageFactor * durationSeconds / SECONDS_PER_HOUR);
+    }
+
+    /**
+     * Interpolates linearly between the points of the table, holding the value of the nearest point outside of it.
+     */
+    private static double interpolate(double[] speeds, double[] mets, double speed) {
+        if (speed <= speeds[0]) {
+            return mets[0];
+        }
+        for (int i = 1; i < speeds.length; i++) {
+            if (speed <= speeds[i]) {
+                double fraction = (speed - speeds[i - 1]) / (speeds[i] - speeds[i - 1]);
+                return mets[i - 1] + fraction * (mets[i] - mets[i - 1]);
+            }
+        }
+        return mets[mets.length - 1];
+    }
+
+    private static void table(ActivityType activityType, double typicalMet, double[] speeds, double[] mets) {
+        SPEEDS[activityType.ordinal()] = speeds;
+        METS[activityType.ordinal()] = mets;
+        TYPICAL_METS[activityType.ordinal()] = typicalMet;
+    }
+
+}
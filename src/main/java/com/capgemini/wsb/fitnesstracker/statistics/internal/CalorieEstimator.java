@@ -0,0 +1,33 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingCalorieEstimator;
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import com.capgemini.wsb.fitnesstracker.user.api.UserProvider;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/**
+ * Single-training estimate of the {@link CalorieEngine} for the training write path. The birthdate of the user
+ * is taken from the {@link UserProvider}, which serves it from the user cache; an unknown user is assumed to be
+ * of the {@link CalorieEngine#REFERENCE_AGE reference age}.
+ */
+@Component
+@RequiredArgsConstructor
+class CalorieEstimator implements TrainingCalorieEstimator {
+
+    private final UserProvider userProvider;
+
+    @Override
+    public int estimateCalories(Long userId, ActivityType activityType, Date startTime, Date endTime,
+                                double averageSpeed) {
+        long startMillis = startTime.getTime();
+        int age = userProvider.getUser(userId)
+                              .map(user -> CalorieEngine.age(user.getBirthdate().toEpochDay(), startMillis))
+                              .orElse(CalorieEngine.REFERENCE_AGE);
+        long durationSeconds = (endTime.getTime() - startMillis) / 1000;
+        return CalorieEngine.estimate(activityType, durationSeconds, averageSpeed, age);
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * KLL quantile sketch of a stream of values. The values are kept in levels of compactors, an item on level
+ * {@code h} standing for {@code 2^h} values; a full level is sorted and every other item, starting at a random
+ * offset, is promoted to the next level. With the accuracy parameter {@code k} the rank error is about
+ * {@code 1.7 / k} with a high probability, in a few KB, regardless of the number of values.
+ * Sketches of disjoint streams (shards, periods) merge into a sketch of their union with the same guarantees.
+ * <p>
+ * Rank queries binary search a sorted view of all items, built once after every change. Not thread-safe.
+ */
+final class KllSketch {
+
+    static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+    private static final int MIN_CAPACITY = 8;
+
+    private final int k;
+
+    private double[][] levels = new double[1][MIN_CAPACITY];
+
+    private int[] sizes = new int[1];
+
+    private long count;
+
+    private double min = Double.NaN;
+
+    private double max = Double.NaN;
+
+    private double[] viewValues;
+
+    private long[] viewRanks;
+
+    KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    KllSketch(int k) {
+        this.k = k;
+    }
+
+    /**
+     * @return number of values added to the sketch
+     */
+    long count() {
+        return count;
+    }
+
+    void add(double value) {
+        append(0, value);
+        count++;
+        min = count == 1 ? value : Math.min(min, value);
+        max = count == 1 ? value : Math.max(max, value);
+        compress();
+        viewValues = null;
+    }
+
+    /**
+     * Adds all values of the other sketch to this one. The other sketch is left untouched.
+     */
+    void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int level = 0; level < other.sizes.length; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        compress();
+        viewValues = null;
+    }
+
+    /**
+     * Estimates the fraction of the values less than or equal to the given one.
+     *
+     * @param value value to rank
+     * @return fraction within {@code [0, 1]}, {@code 0} for an empty sketch
+     */
+    double rank(double value) {
+        if (count == 0 || value < min) {
+            return 0;
+        }
+        if (value >= max) {
+            return 1;
+        }
+        if (viewValues == null) {
+            buildView();
+        }
+        // index of the last item less than or equal to the value
+        int low = 0;
+        int high = viewValues.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (viewValues[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low == 0 ? 0 : (double) viewRanks[low - 1] / count;
+    }
+
+    byte[] toBytes() {
+        int items = Arrays.stream(sizes).sum();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 8 + 8 + 8 + 4 + 4 * sizes.length + 8 * items);
+        buffer.putInt(k).putLong(count).putDouble(min).putDouble(max).putInt(sizes.length);
+        for (int level = 0; level < sizes.length; level++) {
+            buffer.putInt(sizes[level]);
+            for (int i = 0; i < sizes[level]; i++) {
+                buffer.putDouble(levels[level][i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    static KllSketch fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        KllSketch sketch = new KllSketch(buffer.getInt());
+        sketch.count = buffer.getLong();
+        sketch.min = buffer.getDouble();
+        sketch.max = buffer.getDouble();
+        int levelCount = buffer.getInt();
+        sketch.levels = new double[levelCount][];
+        sketch.sizes = new int[levelCount];
+        for (int level = 0; level < levelCount; level++) {
+            int size = buffer.getInt();
+            sketch.levels[level] = new double[Math.max(size, MIN_CAPACITY)];
+            sketch.sizes[level] = size;
+            for (int i = 0; i < size; i++) {
+                sketch.levels[level][i] = buffer.getDouble();
+            }
+        }
+        return sketch;
+    }
+
+    private void append(int level, double value) {
+        if (level == sizes.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            sizes = Arrays.copyOf(sizes, level + 1);
+            levels[level] = new double[MIN_CAPACITY];
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], sizes[level] * 2);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Capacity of a level, the top level holds {@code k} items and every level below two thirds of the one above.
+     */
+    private int capacity(int level) {
+        int depth = sizes.length - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void compress() {
+        for (int level = 0; level < sizes.length; level++) {
+            if (sizes[level] <= capacity(level)) {
+                continue;
+            }
+            double[] items = levels[level];
+            int size = sizes[level];
+            Arrays.sort(items, 0, size);
+            // an odd item stays on the level, the pairs are halved into the next one
+            int kept = size % 2;
+            int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+            for (int i = kept + offset; i < size; i += 2) {
+                append(level + 1, items[i]);
+            }
+            sizes[level] = kept;
+        }
+    }
+
+    private void buildView() {
+        int items = Arrays.stream(sizes).sum();
+        viewValues = new double[items];
+        viewRanks = new long[items];
+        // order within a level does not matter to the sketch, so the levels are sorted in place and merged
+        for (int level = 0; level < sizes.length; level++) {
+            Arrays.sort(levels[level], 0, sizes[level]);
+        }
+        int[] positions = new int[sizes.length];
+        long rank = 0;
+        for (int i = 0; i < items; i++) {
+            int next = -1;
+            for (int level = 0; level < sizes.length; level++) {
+                if (positions[level] < sizes[level]
+                        && (next < 0 || levels[level][positions[level]] < levels[next][positions[next]])) {
+                    next = level;
+                }
+            }
+            viewValues[i] = levels[next][positions[next]++];
+            rank += 1L << next;
+            viewRanks[i] = rank;
+        }
+    }
+
+}
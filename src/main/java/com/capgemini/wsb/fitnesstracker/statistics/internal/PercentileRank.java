@@ -0,0 +1,11 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+/**
+ * Approximate percentile rank of a value among the trainings.
+ *
+ * @param value      ranked value
+ * @param percentile percentage of the trainings with a value less than or equal to the ranked one
+ * @param trainings  number of the trainings the value is ranked among
+ */
+public record PercentileRank(double value, double percentile, long trainings) {
+}
@@ -0,0 +1,72 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Length of the buckets of the {@link StatisticsRollup}s. Buckets are calendar days, ISO weeks (starting on Monday)
+ * and calendar months of the local time zone of the server, each starting at midnight of its first day.
+ */
+enum RollupGranularity {
+
+    DAY("DAY") {
+        @Override
+        LocalDate bucketStart(LocalDate date) {
+            return date;
+        }
+
+        @Override
+        LocalDate nextBucketStart(LocalDate bucketStart) {
+            return bucketStart.plusDays(1);
+        }
+    },
+    WEEK("ISO_WEEK") {
+        @Override
+        LocalDate bucketStart(LocalDate date) {
+            return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        @Override
+        LocalDate nextBucketStart(LocalDate bucketStart) {
+            return bucketStart.plusWeeks(1);
+        }
+    },
+    MONTH("MONTH") {
+        @Override
+        LocalDate bucketStart(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+
+        @Override
+        LocalDate nextBucketStart(LocalDate bucketStart) {
+            return bucketStart.plusMonths(1);
+        }
+    };
+
+    private final String truncationUnit;
+
+    RollupGranularity(String truncationUnit) {
+        this.truncationUnit = truncationUnit;
+    }
+
+    /**
+     * @param date any date
+     * @return first day of the bucket containing the date
+     */
+    abstract LocalDate bucketStart(LocalDate date);
+
+    /**
+     * @param bucketStart first day of a bucket
+     * @return first day of the following bucket
+     */
+    abstract LocalDate nextBucketStart(LocalDate bucketStart);
+
+    /**
+     * @return unit of the SQL {@code date_trunc} function truncating a time to the start of its bucket
+     */
+    String truncationUnit() {
+        return truncationUnit;
+    }
+
+}
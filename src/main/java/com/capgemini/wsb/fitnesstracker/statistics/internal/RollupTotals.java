@@ -0,0 +1,20 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+/**
+ * Totals of the trainings within a date range.
+ *
+ * @param trainings       number of trainings
+ * @param distance        total distance
+ * @param durationSeconds total duration, in seconds
+ */
+public record RollupTotals(long trainings, double distance, long durationSeconds) {
+
+    static final RollupTotals EMPTY = new RollupTotals(0, 0, 0);
+
+    RollupTotals plus(StatisticsRollup rollup) {
+        return new RollupTotals(trainings + rollup.getTrainingCount(),
+                                distance + rollup.getTotalDistance(),
+                                durationSeconds + rollup.getTotalDurationSeconds());
+    }
+
+}
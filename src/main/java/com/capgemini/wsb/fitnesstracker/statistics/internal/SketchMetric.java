@@ -0,0 +1,25 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+
+/**
+ * Metric of the trainings tracked by the {@link TrainingPercentiles}.
+ */
+public enum SketchMetric {
+
+    DISTANCE {
+        @Override
+        double valueOf(TrainingDto training) {
+            return training.distance();
+        }
+    },
+    AVERAGE_SPEED {
+        @Override
+        double valueOf(TrainingDto training) {
+            return training.averageSpeed();
+        }
+    };
+
+    abstract double valueOf(TrainingDto training);
+
+}
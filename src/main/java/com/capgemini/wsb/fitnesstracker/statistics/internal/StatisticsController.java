@@ -0,0 +1,111 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.exception.api.BusinessException;
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/statistics")
+@RequiredArgsConstructor
+class StatisticsController {
+
+    private final StatisticsRollupService rollupService;
+
+    private final StatisticsUpdater statisticsUpdater;
+
+    private final StatisticsRollupUpdater rollupUpdater;
+
+    private final CalorieBackfill calorieBackfill;
+
+    private final TrainingPercentiles trainingPercentiles;
+
+    /**
+     * Returns the totals of the trainings of the user started within the {@code [from, to)} range of days
+     * (ISO-8601 dates), per activity.
+     */
+    @GetMapping("/users/{userId}/activity")
+    public ResponseEntity<Map<ActivityType, RollupTotals>> summarize(
+            @PathVariable Long userId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        verifyRange(from, to);
+        return ResponseEntity.ok(rollupService.summarize(userId, from, to));
+    }
+
+    /**
+     * Returns the approximate percentile rank of the value among the trainings of the activity, optionally only
+     * the ones started within the {@code [from, to)} range of days (ISO-8601 dates).
+     */
+    @GetMapping("/percentiles")
+    public ResponseEntity<PercentileRank> percentileRank(
+            @RequestParam ActivityType activityType,
+            @RequestParam SketchMetric metric,
+            @RequestParam double value,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from == null && to == null) {
+            return ResponseEntity.ok(trainingPercentiles.percentileRank(activityType, metric, value));
+        }
+        if (from == null || to == null) {
+            throw new BusinessException("Range should have both its start and its end");
+        }
+        verifyRange(from, to);
+        return ResponseEntity.ok(trainingPercentiles.percentileRank(activityType, metric, value, from, to));
+    }
+
+    /**
+     * Rebuilds the percentile sketches of all trainings.
+     */
+    @PostMapping("/percentiles/rebuild")
+    public ResponseEntity<Void> rebuildPercentiles() {
+        trainingPercentiles.rebuild();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Rebuilds the statistics of all users from their trainings, burned calories included.
+     *
+     * @return number of users with statistics
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<Integer> rebuildStatistics() {
+        return ResponseEntity.ok(statisticsUpdater.rebuild());
+    }
+
+    /**
+     * Rebuilds the statistics rollups of all users from their trainings.
+     */
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Void> rebuildRollups() {
+        rollupUpdater.rebuild();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Recomputes the burned calories in the statistics of all users from their trainings.
+     *
+     * @return number of processed trainings
+     */
+    @PostMapping("/calories/backfill")
+    public ResponseEntity<Long> backfillCalories() {
+        return ResponseEntity.ok(calorieBackfill.backfill());
+    }
+
+    private static void verifyRange(LocalDate from, LocalDate to) {
+        if (!from.isBefore(to)) {
+            throw new BusinessException("Range start %s should be before its end %s".formatted(from, to));
+        }
+    }
+
+}
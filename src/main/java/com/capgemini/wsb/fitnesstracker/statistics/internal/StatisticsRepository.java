@@ -0,0 +1,86 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.statistics.api.Statistics;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+interface StatisticsRepository extends JpaRepository<Statistics, Long> {
+
+    Optional<Statistics> findByUserId(Long userId);
+
+    /**
+     * Query returning ids of the first users having statistics, after the given one. Used to process the users
+     * chunk by chunk.
+     *
+     * @param after    id of the last user of the previous chunk
+     * @param pageable chunk size
+     * @return ids of the users, in ascending order
+     */
+    @Query("select s.user.id from Statistics s where s.user.id > :after order by s.user.id")
+    List<Long> findUserIdsAfter(@Param("after") Long after, Pageable pageable);
+
+    /**
+     * Locks the statistics of the given users until the end of the transaction, holding back the concurrent
+     * {@link #addDelta} of their trainings.
+     *
+     * @param userIds ids of the users
+     * @return ids of the locked statistics
+     */
+    @Query(value = "select id from statistics where user_id in (:userIds) for update", nativeQuery = true)
+    List<Long> lockByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Adds the deltas to the statistics of the user with a single statement, so concurrent writers never lose
+     * each other's updates.
+     *
+     * @param userId    id of the user
+     * @param trainings change of the number of trainings
+     * @param distance  change of the total distance
+     * @param calories  change of the total burned calories
+     * @return number of updated statistics, {@code 0} if the user has no statistics yet
+     */
+    @Modifying
+    @Query("""
+            update Statistics s
+            set s.totalTrainings = s.totalTrainings + :trainings,
+                s.totalDistance = s.totalDistance + :distance,
+                s.totalCaloriesBurned = s.totalCaloriesBurned + :calories
+            where s.user.id = :userId
+            """)
+    int addDelta(@Param("userId") Long userId,
+                 @Param("trainings") int trainings,
+                 @Param("distance") double distance,
+                 @Param("calories") int calories);
+
+    /**
+     * Inserts the statistics of all users having trainings, aggregated from the trainings with a single statement.
+     *
+     * @return number of inserted statistics
+     */
+    @Modifying
+    @Query(value = """
+            insert into statistics (user_id, total_trainings, total_distance, total_calories_burned)
+            select t.user_id, count(*), sum(t.distance), sum(t.calories_burned)
+            from trainings t
+            group by t.user_id
+            """, nativeQuery = true)
+    int insertAggregatedFromTrainings();
+
+    /**
+     * Deletes the statistics of the given users with a single statement, bypassing the persistence context.
+     *
+     * @param userIds ids of the users
+     * @return number of deleted statistics
+     */
+    @Modifying
+    @Query("delete from Statistics s where s.user.id in :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+
+}
@@ -0,0 +1,57 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * Totals of the trainings of a user of a single {@link ActivityType} started within a day, week or month.
+ * Maintained on every training write, so the totals of any date range are summed up from a handful of buckets
+ * instead of scanning the trainings.
+ */
+@Entity
+@Table(name = "statistics_rollups",
+       indexes = @Index(name = "idx_statistics_rollups_bucket",
+                        columnList = "user_id, granularity, bucket_start, activity_type",
+                        unique = true))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+class StatisticsRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @ToString.Exclude
+    private User user;
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "granularity", nullable = false)
+    private RollupGranularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDate bucketStart;
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "activity_type", nullable = false)
+    private ActivityType activityType;
+
+    @Column(name = "training_count", nullable = false)
+    private long trainingCount;
+
+    @Column(name = "total_distance", nullable = false)
+    private double totalDistance;
+
+    @Column(name = "total_duration_seconds", nullable = false)
+    private long totalDurationSeconds;
+
+}
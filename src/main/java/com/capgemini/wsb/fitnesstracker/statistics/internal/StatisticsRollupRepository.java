@@ -0,0 +1,77 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+interface StatisticsRollupRepository extends JpaRepository<StatisticsRollup, Long> {
+
+    /**
+     * Adds the deltas to a bucket with a single statement, so concurrent writers never lose each other's updates.
+     *
+     * @param userId          id of the user
+     * @param granularity     granularity of the bucket
+     * @param bucketStart     first day of the bucket
+     * @param activityType    activity of the bucket
+     * @param trainings       change of the number of trainings
+     * @param distance        change of the total distance
+     * @param durationSeconds change of the total duration
+     * @return number of updated buckets, {@code 0} if the bucket does not exist yet
+     */
+    @Modifying
+    @Query("""
+            update StatisticsRollup r
+            set r.trainingCount = r.trainingCount + :trainings,
+                r.totalDistance = r.totalDistance + :distance,
+                r.totalDurationSeconds = r.totalDurationSeconds + :durationSeconds
+            where r.user.id = :userId
+              and r.granularity = :granularity
+              and r.bucketStart = :bucketStart
+              and r.activityType = :activityType
+            """)
+    int addDelta(@Param("userId") Long userId,
+                 @Param("granularity") RollupGranularity granularity,
+                 @Param("bucketStart") LocalDate bucketStart,
+                 @Param("activityType") ActivityType activityType,
+                 @Param("trainings") long trainings,
+                 @Param("distance") double distance,
+                 @Param("durationSeconds") long durationSeconds);
+
+    /**
+     * Query returning the buckets of a user of the given granularity, starting on one of the given days.
+     *
+     * @param userId       id of the user
+     * @param granularity  granularity of the buckets
+     * @param bucketStarts first days of the buckets
+     * @return buckets of all activities
+     */
+    @Query("""
+            select r from StatisticsRollup r
+            where r.user.id = :userId
+              and r.granularity = :granularity
+              and r.bucketStart in :bucketStarts
+            """)
+    List<StatisticsRollup> findBuckets(@Param("userId") Long userId,
+                                       @Param("granularity") RollupGranularity granularity,
+                                       @Param("bucketStarts") Collection<LocalDate> bucketStarts);
+
+    /**
+     * Deletes at most {@code limit} buckets of the given users with a single statement, bypassing the persistence
+     * context. Used to delete the buckets chunk by chunk.
+     *
+     * @param userIds ids of the users
+     * @param limit   maximal number of buckets to delete
+     * @return number of deleted buckets
+     */
+    @Modifying
+    @Query(value = "delete from statistics_rollups where user_id in (:userIds) fetch first :limit rows only",
+           nativeQuery = true)
+    int deleteFirstByUserIds(@Param("userIds") Collection<Long> userIds, @Param("limit") int limit);
+
+}
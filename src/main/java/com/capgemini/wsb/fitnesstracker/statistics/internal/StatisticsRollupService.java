@@ -0,0 +1,85 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers the totals of the trainings of a user within a date range from the {@link StatisticsRollup}s.
+ * The range is covered by whole months where it spans them, by whole weeks next to the months and by single days
+ * only at its edges, so a range of any length needs at most a few dozen buckets besides its months.
+ */
+@Service
+@RequiredArgsConstructor
+class StatisticsRollupService {
+
+    private final StatisticsRollupRepository rollupRepository;
+
+    private final ShardRouter shardRouter;
+
+    /**
+     * Sums up the trainings of the user started within the range, per activity.
+     *
+     * @param userId id of the user
+     * @param from   first day of the range
+     * @param to     day after the last day of the range
+     * @return totals of every activity, empty totals for the activities without any trainings
+     */
+    @Transactional(readOnly = true)
+    public Map<ActivityType, RollupTotals> summarize(Long userId, LocalDate from, LocalDate to) {
+        Map<ActivityType, RollupTotals> totals = new EnumMap<>(ActivityType.class);
+        for (ActivityType activityType : ActivityType.values()) {
+            totals.put(activityType, RollupTotals.EMPTY);
+        }
+        Map<RollupGranularity, List<LocalDate>> buckets = cover(from, to);
+        shardRouter.onShardOf(userId, () -> {
+            buckets.forEach((granularity, bucketStarts) -> rollupRepository
+                    .findBuckets(userId, granularity, bucketStarts)
+                    .forEach(rollup -> totals.compute(rollup.getActivityType(), (activityType, sum) -> sum.plus(rollup))));
+            return null;
+        });
+        return totals;
+    }
+
+    /**
+     * Splits the range into disjoint buckets: whole months where they fit into the range, otherwise whole weeks
+     * that do not cross the start of the next month, and single days.
+     *
+     * @param from first day of the range
+     * @param to   day after the last day of the range
+     * @return first days of the buckets, per granularity, only granularities having any buckets
+     */
+    static Map<RollupGranularity, List<LocalDate>> cover(LocalDate from, LocalDate to) {
+        Map<RollupGranularity, List<LocalDate>> buckets = new EnumMap<>(RollupGranularity.class);
+        LocalDate day = from;
+        while (day.isBefore(to)) {
+            RollupGranularity granularity = coarsestBucket(day, to);
+            buckets.computeIfAbsent(granularity, ignored -> new ArrayList<>()).add(day);
+            day = granularity.nextBucketStart(day);
+        }
+        return buckets;
+    }
+
+    private static RollupGranularity coarsestBucket(LocalDate day, LocalDate to) {
+        if (fits(RollupGranularity.MONTH, day, to)) {
+            return RollupGranularity.MONTH;
+        }
+        // a week crossing into the next month would keep the following weeks off the month boundary
+        LocalDate nextMonth = RollupGranularity.MONTH.nextBucketStart(RollupGranularity.MONTH.bucketStart(day));
+        LocalDate limit = nextMonth.isBefore(to) ? nextMonth : to;
+        return fits(RollupGranularity.WEEK, day, limit) ? RollupGranularity.WEEK : RollupGranularity.DAY;
+    }
+
+    private static boolean fits(RollupGranularity granularity, LocalDate day, LocalDate limit) {
+        return granularity.bucketStart(day).equals(day) && !granularity.nextBucketStart(day).isAfter(limit);
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingChangedEvent;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Keeps the {@link StatisticsRollup}s up to date. Every {@link TrainingChangedEvent} adds its delta to the day, week
+ * and month buckets of the training within the transaction writing it; the deltas of a transaction are summed
+ * per bucket and applied right before it commits, with one atomic update per bucket. A missing bucket is created
+ * in the same transaction, like the {@link StatisticsUpdater} creates the statistics. Trainings deleted together
+ * with their user are ignored, the buckets go with the user.
+ * The rollups are rebuilt from the trainings on demand only, with one aggregate statement per granularity on every
+ * shard.
+ */
+@Component
+@Slf4j
+class StatisticsRollupUpdater {
+
+    private static final String INSERT_AGGREGATED = """
+            insert into statistics_rollups (user_id, granularity, bucket_start, activity_type,
+                                            training_count, total_distance, total_duration_seconds)
+            select t.user_id, %1$d, cast(date_trunc(%2$s, t.start_time) as date), t.activity_type,
+                   count(*), sum(t.distance), sum(datediff(second, t.start_time, t.end_time))
+            from trainings t
+            group by t.user_id, cast(date_trunc(%2$s, t.start_time) as date), t.activity_type
+            """;
+
+    private static final String INSERT_EMPTY = """
+            insert into statistics_rollups (user_id, granularity, bucket_start, activity_type,
+                                            training_count, total_distance, total_duration_seconds)
+            values (?, ?, ?, ?, 0, 0, 0)
+            """;
+
+    private final StatisticsRollupRepository rollupRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ShardRouter shardRouter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionalDeltas<Bucket, Delta> deltas = new TransactionalDeltas<>(Delta::plus, this::apply);
+
+    StatisticsRollupUpdater(StatisticsRollupRepository rollupRepository,
+                            JdbcTemplate jdbcTemplate,
+                            ShardRouter shardRouter,
+                            PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Replaces all rollups with the ones aggregated from the trainings.
+     */
+    public void rebuild() {
+        shardRouter.onEveryShard(() -> transactionTemplate.execute(status -> {
+            rollupRepository.deleteAllInBatch();
+            int buckets = 0;
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                buckets += jdbcTemplate.update(INSERT_AGGREGATED.formatted(granularity.ordinal(),
+                                                                           granularity.truncationUnit()));
+            }
+            log.info("Rebuilt {} statistics rollup buckets", buckets);
+            return buckets;
+        }));
+    }
+
+    @EventListener
+    public void onTrainingChanged(TrainingChangedEvent event) {
+        if (event.userDeleted()) {
+            return;
+        }
+        TrainingDto previous = event.previous();
+        TrainingDto current = event.current();
+        if (previous != null && current != null
+                && previous.userId().equals(current.userId())
+                && previous.activityType() == current.activityType()
+                && startDay(previous).equals(startDay(current))) {
+            // same buckets, only the totals change
+            addDelta(current,
+                     0,
+                     current.distance() - previous.distance(),
+                     durationSeconds(current) - durationSeconds(previous));
+            return;
+        }
+        if (previous != null) {
+            addDelta(previous, -1, -previous.distance(), -durationSeconds(previous));
+        }
+        if (current != null) {
+            addDelta(current, 1, current.distance(), durationSeconds(current));
+        }
+    }
+
+    private void addDelta(TrainingDto training, long trainings, double distance, long durationSeconds) {
+        if (trainings == 0 && distance == 0 && durationSeconds == 0) {
+            return;
+        }
+        LocalDate startDay = startDay(training);
+        Delta delta = new Delta(trainings, distance, durationSeconds);
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            LocalDate bucketStart = granularity.bucketStart(startDay);
+            deltas.add(new Bucket(training.userId(), granularity, bucketStart, training.activityType()), delta);
+        }
+    }
+
+    private void apply(Bucket bucket, Delta delta) {
+        if (delta.trainings() == 0 && delta.distance() == 0 && delta.durationSeconds() == 0) {
+            return;
+        }
+        if (update(bucket, delta) > 0 || delta.trainings() <= 0) {
+            // buckets are only created by a new training, a removed one never brings back deleted buckets
+            return;
+        }
+        try {
+            // plain JDBC, so a failed insert does not mark the transaction of the training rollback-only
+            jdbcTemplate.update(INSERT_EMPTY, bucket.userId(), bucket.granularity().ordinal(), bucket.bucketStart(),
+                                bucket.activityType().ordinal());
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Statistics rollup bucket {} {} of user {} was created concurrently",
+                      bucket.granularity(), bucket.bucketStart(), bucket.userId());
+        }
+        update(bucket, delta);
+    }
+
+    private int update(Bucket bucket, Delta delta) {
+        return rollupRepository.addDelta(bucket.userId(), bucket.granularity(), bucket.bucketStart(),
+                                         bucket.activityType(), delta.trainings(), delta.distance(),
+                                         delta.durationSeconds());
+    }
+
+    private static LocalDate startDay(TrainingDto training) {
+        return training.startTime().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static long durationSeconds(TrainingDto training) {
+        return (training.endTime().getTime() - training.startTime().getTime()) / 1000;
+    }
+
+    private record Bucket(Long userId,
+                          RollupGranularity granularity,
+                          LocalDate bucketStart,
+                          ActivityType activityType) {
+
+    }
+
+    private record Delta(long trainings, double distance, long durationSeconds) {
+
+        private Delta plus(Delta other) {
+            return new Delta(trainings + other.trainings,
+                             distance + other.distance,
+                             durationSeconds + other.durationSeconds);
+        }
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.user.api.UserDataRemover;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+/**
+ * Removes the statistics rollups of deleted users.
+ */
+@Component
+@Order(2)
+@RequiredArgsConstructor
+class StatisticsRollupUserDataRemover implements UserDataRemover {
+
+    private final StatisticsRollupRepository rollupRepository;
+
+    @Override
+    @Transactional
+    public int removeChunk(Collection<Long> userIds, int chunkSize) {
+        return rollupRepository.deleteFirstByUserIds(userIds, chunkSize);
+    }
+
+}
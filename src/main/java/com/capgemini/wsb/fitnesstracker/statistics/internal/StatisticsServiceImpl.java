@@ -0,0 +1,34 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.statistics.api.Statistics;
+import com.capgemini.wsb.fitnesstracker.statistics.api.StatisticsProvider;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+class StatisticsServiceImpl implements StatisticsProvider {
+
+    private final StatisticsRepository statisticsRepository;
+
+    private final ShardRouter shardRouter;
+
+    @Override
+    public Optional<Statistics> getStatistics(Long statisticsId) {
+        // statistics ids are generated per shard, so the id alone does not tell the shard
+        return shardRouter.findOnEveryShard(() -> statisticsRepository.findById(statisticsId).stream().toList())
+                          .stream()
+                          .findFirst();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Statistics> getUserStatistics(Long userId) {
+        return shardRouter.onShardOf(userId, () -> statisticsRepository.findByUserId(userId));
+    }
+
+}
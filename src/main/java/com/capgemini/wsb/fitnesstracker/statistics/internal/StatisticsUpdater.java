@@ -0,0 +1,123 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingChangedEvent;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the {@link com.capgemini.wsb.fitnesstracker.statistics.api.Statistics} of the users up to date.
+ * Every {@link TrainingChangedEvent} adds its delta within the transaction writing the training. The deltas of a
+ * transaction are summed per user and applied right before it commits, with one atomic update per user.
+ * The calories of a training are the ones estimated by the {@link CalorieEstimator} when it was written and stored
+ * with it, so an update or a deletion subtracts exactly what was once added, whatever happened to the user since.
+ * The first training of a user creates the statistics in the same transaction; a concurrent creation is caught by
+ * the unique index on the user and simply reused. Trainings deleted together with their user are ignored,
+ * the statistics go with the user.
+ * <p>
+ * Trainings written around the training module (e.g. the initial data) are only counted by an explicit
+ * {@link #rebuild() rebuild}, a batch job run on demand and never on startup.
+ */
+@Component
+@Slf4j
+class StatisticsUpdater {
+
+    private static final String INSERT_EMPTY = """
+            insert into statistics (user_id, total_trainings, total_distance, total_calories_burned)
+            values (?, 0, 0, 0)
+            """;
+
+    private final StatisticsRepository statisticsRepository;
+
+    private final CalorieBackfill calorieBackfill;
+
+    private final ShardRouter shardRouter;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionalDeltas<Long, Delta> deltas = new TransactionalDeltas<>(Delta::plus, this::apply);
+
+    StatisticsUpdater(StatisticsRepository statisticsRepository,
+                      CalorieBackfill calorieBackfill,
+                      ShardRouter shardRouter,
+                      JdbcTemplate jdbcTemplate,
+                      PlatformTransactionManager transactionManager) {
+        this.statisticsRepository = statisticsRepository;
+        this.calorieBackfill = calorieBackfill;
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Replaces the statistics of all users with the ones aggregated from their trainings, with a single statement
+     * per shard, and then recomputes their burned calories with the {@link CalorieBackfill}.
+     *
+     * @return number of users with statistics
+     */
+    public int rebuild() {
+        int users = shardRouter.onEveryShard(() -> transactionTemplate.execute(status -> {
+            statisticsRepository.deleteAllInBatch();
+            return statisticsRepository.insertAggregatedFromTrainings();
+        })).stream().mapToInt(Integer::intValue).sum();
+        log.info("Rebuilt statistics of {} users", users);
+        calorieBackfill.backfill();
+        return users;
+    }
+
+    @EventListener
+    public void onTrainingChanged(TrainingChangedEvent event) {
+        if (event.userDeleted()) {
+            return;
+        }
+        TrainingDto previous = event.previous();
+        TrainingDto current = event.current();
+        if (previous != null && current != null && previous.userId().equals(current.userId())) {
+            deltas.add(current.userId(), new Delta(0,
+                                                   current.distance() - previous.distance(),
+                                                   current.caloriesBurned() - previous.caloriesBurned()));
+            return;
+        }
+        if (previous != null) {
+            deltas.add(previous.userId(), new Delta(-1, -previous.distance(), -previous.caloriesBurned()));
+        }
+        if (current != null) {
+            deltas.add(current.userId(), new Delta(1, current.distance(), current.caloriesBurned()));
+        }
+    }
+
+    private void apply(Long userId, Delta delta) {
+        if (delta.trainings() == 0 && delta.distance() == 0 && delta.calories() == 0) {
+            return;
+        }
+        if (statisticsRepository.addDelta(userId, delta.trainings(), delta.distance(), delta.calories()) > 0
+                || delta.trainings() <= 0) {
+            // statistics are only created by a new training, a removed one never brings back deleted statistics
+            return;
+        }
+        try {
+            // plain JDBC, so a failed insert does not mark the transaction of the training rollback-only
+            jdbcTemplate.update(INSERT_EMPTY, userId);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Statistics of user {} were created concurrently", userId);
+        }
+        statisticsRepository.addDelta(userId, delta.trainings(), delta.distance(), delta.calories());
+    }
+
+    private record Delta(int trainings, double distance, int calories) {
+
+        private Delta plus(Delta other) {
+            return new Delta(trainings + other.trainings, distance + other.distance, calories + other.calories);
+        }
+
+    }
+
+}
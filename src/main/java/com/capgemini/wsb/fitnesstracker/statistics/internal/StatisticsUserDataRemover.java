@@ -0,0 +1,28 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.user.api.UserDataRemover;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+/**
+ * Removes the statistics of deleted users.
+ */
+@Component
+@Order(3)
+@RequiredArgsConstructor
+class StatisticsUserDataRemover implements UserDataRemover {
+
+    private final StatisticsRepository statisticsRepository;
+
+    @Override
+    @Transactional
+    public int removeChunk(Collection<Long> userIds, int chunkSize) {
+        // a user has at most one statistics row, so a chunk of users never exceeds the chunk of rows
+        return statisticsRepository.deleteByUserIds(userIds);
+    }
+
+}
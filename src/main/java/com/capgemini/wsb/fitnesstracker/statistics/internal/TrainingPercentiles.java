@@ -0,0 +1,361 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingChangedEvent;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Approximate percentile ranks of the {@link SketchMetric}s of the trainings, per {@link ActivityType}.
+ * Every activity and metric has a {@link KllSketch} per start day of the trainings and one of all days, fed with
+ * the committed training creations; the rank of a value among all trainings is a binary search in the latter,
+ * the rank within a date range merges the sketches of its days.
+ * <p>
+ * The day sketches changed since the last snapshot are written to the database (on the first shard) every
+ * {@code statistics.sketches.snapshot-interval} and on shutdown, and loaded once the application is ready.
+ * Without any snapshots the sketches are rebuilt from the trainings, every shard into its own sketches in parallel,
+ * merged afterwards. Trainings created before the sketches are loaded (e.g. replayed from the training log on startup)
+ * or while a rebuild reads the trainings are buffered and replayed into the loaded or rebuilt sketches once they
+ * replace the current ones; after a rebuild only the ones with ids above the greatest id it read on their shard, so
+ * none is counted twice. Trainings are only added: updates and deletions do not change the sketches until a rebuild.
+ */
+@Component
+@Slf4j
+class TrainingPercentiles implements DisposableBean {
+
+    private static final String SELECT_TRAININGS =
+            "select activity_type, start_time, distance, average_speed, id from trainings";
+
+    private static final int SNAPSHOT_SHARD = 0;
+
+    private final TrainingQuantileSketchRepository sketchRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ShardRouter shardRouter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration snapshotInterval;
+
+    private final ScheduledExecutorService snapshotExecutor;
+
+    private final Map<SketchKey, NavigableMap<LocalDate, KllSketch>> daySketches = new HashMap<>();
+
+    private final Map<SketchKey, KllSketch> totalSketches = new HashMap<>();
+
+    private final Set<DayKey> changedDays = new LinkedHashSet<>();
+
+    /**
+     * Held by every snapshot and by the rebuild, so a snapshot never interleaves with replacing the snapshots.
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * Held by the rebuild, so concurrent rebuilds never share the buffer of created trainings.
+     */
+    private final Object rebuildLock = new Object();
+
+    /**
+     * Trainings created before the sketches were loaded or since the running rebuild started reading the trainings,
+     * or {@code null} if there is neither. Guarded by {@code this}.
+     */
+    private List<TrainingDto> pendingTrainings = new ArrayList<>();
+
+    private volatile boolean loaded;
+
+    TrainingPercentiles(TrainingQuantileSketchRepository sketchRepository,
+                        JdbcTemplate jdbcTemplate,
+                        ShardRouter shardRouter,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${statistics.sketches.snapshot-interval:5m}") Duration snapshotInterval) {
+        this.sketchRepository = sketchRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotInterval = snapshotInterval;
+        this.snapshotExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "quantile-sketch-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<TrainingQuantileSketch> snapshots = shardRouter.onShard(
+                SNAPSHOT_SHARD, () -> transactionTemplate.execute(status -> sketchRepository.findAll()));
+        if (snapshots.isEmpty()) {
+            rebuild();
+        } else {
+            Map<DayKey, KllSketch> sketches = new HashMap<>();
+            for (TrainingQuantileSketch snapshot : snapshots) {
+                SketchKey key = new SketchKey(snapshot.getActivityType(), snapshot.getMetric());
+                sketches.put(new DayKey(key, snapshot.getDay()), KllSketch.fromBytes(snapshot.getSketch()));
+            }
+            replace(sketches, false, null);
+            log.info("Loaded {} training quantile sketches", snapshots.size());
+        }
+        long interval = snapshotInterval.toMillis();
+        snapshotExecutor.scheduleWithFixedDelay(this::snapshotSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replaces all sketches with the ones built from the trainings and snapshots them.
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                if (pendingTrainings == null) {
+                    pendingTrainings = new ArrayList<>();
+                }
+            }
+            try {
+                rebuildFromTrainings();
+            } finally {
+                synchronized (this) {
+                    pendingTrainings = null;
+                }
+            }
+        }
+    }
+
+    private void rebuildFromTrainings() {
+        List<ShardSketches> shardSketches = shardRouter.onEveryShard(() -> {
+            ShardSketches read = new ShardSketches();
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(SELECT_TRAININGS, resultSet -> {
+                ActivityType activityType = ActivityType.values()[resultSet.getInt(1)];
+                LocalDate day = resultSet.getTimestamp(2).toLocalDateTime().toLocalDate();
+                add(read.sketches, new SketchKey(activityType, SketchMetric.DISTANCE), day, resultSet.getDouble(3));
+                add(read.sketches, new SketchKey(activityType, SketchMetric.AVERAGE_SPEED), day,
+                    resultSet.getDouble(4));
+                read.maxTrainingId = Math.max(read.maxTrainingId, resultSet.getLong(5));
+            }));
+            return read;
+        });
+        Map<DayKey, KllSketch> merged = shardSketches.get(0).sketches;
+        for (ShardSketches read : shardSketches.subList(1, shardSketches.size())) {
+            read.sketches.forEach((day, sketch) -> merged.merge(day, sketch, (first, second) -> {
+                first.merge(second);
+                return first;
+            }));
+        }
+        long[] maxTrainingIds = shardSketches.stream().mapToLong(read -> read.maxTrainingId).toArray();
+        synchronized (snapshotLock) {
+            shardRouter.onShard(SNAPSHOT_SHARD, () -> transactionTemplate.execute(status -> {
+                sketchRepository.deleteAllInBatch();
+                return null;
+            }));
+            replace(merged, true, maxTrainingIds);
+            snapshot();
+        }
+        log.info("Rebuilt {} training quantile sketches", merged.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTrainingChanged(TrainingChangedEvent event) {
+        TrainingDto training = event.current();
+        if (event.previous() != null || training == null) {
+            // only creations are added
+            return;
+        }
+        synchronized (this) {
+            if (pendingTrainings != null) {
+                // not loaded yet, or the rebuild may have read the trainings before this one was committed
+                pendingTrainings.add(training);
+            }
+            if (loaded) {
+                addTraining(training);
+            }
+        }
+    }
+
+    /**
+     * Estimates the percentile rank of the value among all trainings of the activity.
+     *
+     * @param activityType activity of the trainings
+     * @param metric       metric of the value
+     * @param value        value to rank
+     * @return rank of the value
+     */
+    synchronized PercentileRank percentileRank(ActivityType activityType, SketchMetric metric, double value) {
+        KllSketch sketch = totalSketches.get(new SketchKey(activityType, metric));
+        return sketch == null ? new PercentileRank(value, 0, 0) : rank(sketch, value);
+    }
+
+    /**
+     * Estimates the percentile rank of the value among the trainings of the activity started within the range.
+     *
+     * @param activityType activity of the trainings
+     * @param metric       metric of the value
+     * @param value        value to rank
+     * @param from         first day of the range
+     * @param to           day after the last day of the range
+     * @return rank of the value
+     */
+    synchronized PercentileRank percentileRank(ActivityType activityType, SketchMetric metric, double value,
+                                               LocalDate from, LocalDate to) {
+        KllSketch merged = new KllSketch();
+        NavigableMap<LocalDate, KllSketch> days = daySketches.get(new SketchKey(activityType, metric));
+        if (days != null) {
+            days.subMap(from, true, to, false).values().forEach(merged::merge);
+        }
+        return rank(merged, value);
+    }
+
+    @Override
+    public void destroy() {
+        snapshotExecutor.shutdownNow();
+        if (loaded) {
+            snapshotSafely();
+        }
+    }
+
+    private void snapshotSafely() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.warn("Snapshot of the training quantile sketches failed, retrying with the next one", e);
+        }
+    }
+
+    /**
+     * Writes the day sketches changed since the last snapshot. The sketches are serialized under the lock,
+     * the database is written without holding it.
+     */
+    private void snapshot() {
+        synchronized (snapshotLock) {
+            writeChangedDays();
+        }
+    }
+
+    private void writeChangedDays() {
+        Map<DayKey, byte[]> changed = new HashMap<>();
+        synchronized (this) {
+            for (DayKey day : changedDays) {
+                changed.put(day, daySketches.get(day.key()).get(day.day()).toBytes());
+            }
+            changedDays.clear();
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            shardRouter.onShard(SNAPSHOT_SHARD, () -> transactionTemplate.execute(status -> {
+                changed.forEach((day, sketch) -> {
+                    ActivityType activityType = day.key().activityType();
+                    SketchMetric metric = day.key().metric();
+                    sketchRepository.findByActivityTypeAndMetricAndDay(activityType, metric, day.day())
+                                    .ifPresentOrElse(snapshot -> snapshot.setSketch(sketch),
+                                                     () -> sketchRepository.save(new TrainingQuantileSketch(
+                                                             activityType, metric, day.day(), sketch)));
+                });
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedDays.addAll(changed.keySet());
+            }
+            throw e;
+        }
+        log.debug("Snapshotted {} training quantile sketches", changed.size());
+    }
+
+    /**
+     * Replaces the sketches, replays the pending trainings into them and marks them loaded.
+     *
+     * @param sketches       new day sketches
+     * @param changed        whether the new sketches differ from their snapshots
+     * @param maxTrainingIds greatest training id the new sketches contain, per shard, or {@code null} if they
+     *                       contain none of the pending trainings
+     */
+    private synchronized void replace(Map<DayKey, KllSketch> sketches, boolean changed,
+                                      @Nullable long[] maxTrainingIds) {
+        daySketches.clear();
+        totalSketches.clear();
+        changedDays.clear();
+        sketches.forEach((day, sketch) -> {
+            daySketches.computeIfAbsent(day.key(), ignored -> new TreeMap<>()).put(day.day(), sketch);
+            totalSketches.computeIfAbsent(day.key(), ignored -> new KllSketch()).merge(sketch);
+            if (changed) {
+                changedDays.add(day);
+            }
+        });
+        if (pendingTrainings != null) {
+            for (TrainingDto training : pendingTrainings) {
+                if (maxTrainingIds == null || training.id() > maxTrainingIds[shardRouter.shardOf(training.userId())]) {
+                    addTraining(training);
+                }
+            }
+            pendingTrainings = null;
+        }
+        loaded = true;
+    }
+
+    private void addTraining(TrainingDto training) {
+        LocalDate day = training.startTime().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        for (SketchMetric metric : SketchMetric.values()) {
+            SketchKey key = new SketchKey(training.activityType(), metric);
+            double value = metric.valueOf(training);
+            daySketches.computeIfAbsent(key, ignored -> new TreeMap<>())
+                       .computeIfAbsent(day, ignored -> new KllSketch())
+                       .add(value);
+            totalSketches.computeIfAbsent(key, ignored -> new KllSketch()).add(value);
+            changedDays.add(new DayKey(key, day));
+        }
+    }
+
+    private static void add(Map<DayKey, KllSketch> sketches, SketchKey key, LocalDate day, double value) {
+        sketches.computeIfAbsent(new DayKey(key, day), ignored -> new KllSketch()).add(value);
+    }
+
+    private static PercentileRank rank(KllSketch sketch, double value) {
+        return new PercentileRank(value, 100 * sketch.rank(value), sketch.count());
+    }
+
+    /**
+     * Sketches built from the trainings of a shard.
+     */
+    private static final class ShardSketches {
+
+        private final Map<DayKey, KllSketch> sketches = new HashMap<>();
+
+        private long maxTrainingId;
+
+    }
+
+    private record SketchKey(ActivityType activityType, SketchMetric metric) {
+
+    }
+
+    private record DayKey(SketchKey key, LocalDate day) {
+
+    }
+
+}
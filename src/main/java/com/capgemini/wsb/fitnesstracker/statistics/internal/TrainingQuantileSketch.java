@@ -0,0 +1,61 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * Snapshot of the {@link KllSketch} of a metric of the trainings of a single {@link ActivityType} started within
+ * a day. Written periodically by {@link TrainingPercentiles}, so the sketches survive a restart without reading
+ * the trainings again.
+ */
+@Entity
+@Table(name = "training_quantile_sketches",
+       indexes = @Index(name = "idx_training_quantile_sketches_day",
+                        columnList = "activity_type, metric, start_day",
+                        unique = true))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+class TrainingQuantileSketch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "activity_type", nullable = false)
+    private ActivityType activityType;
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "metric", nullable = false)
+    private SketchMetric metric;
+
+    @Column(name = "start_day", nullable = false)
+    private LocalDate day;
+
+    @Lob
+    @Column(name = "sketch", nullable = false)
+    @ToString.Exclude
+    private byte[] sketch;
+
+    TrainingQuantileSketch(final ActivityType activityType,
+                           final SketchMetric metric,
+                           final LocalDate day,
+                           final byte[] sketch) {
+        this.activityType = activityType;
+        this.metric = metric;
+        this.day = day;
+        this.sketch = sketch;
+    }
+
+    void setSketch(byte[] sketch) {
+        this.sketch = sketch;
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+interface TrainingQuantileSketchRepository extends JpaRepository<TrainingQuantileSketch, Long> {
+
+    Optional<TrainingQuantileSketch> findByActivityTypeAndMetricAndDay(ActivityType activityType,
+                                                                       SketchMetric metric,
+                                                                       LocalDate day);
+
+}
@@ -0,0 +1,76 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+
+/**
+ * Deltas of derived data collected per key within the current transaction and applied right before it commits,
+ * still within it, so a transaction changing many trainings applies a single delta per key instead of one per
+ * change. Without an active transaction every delta is applied right away.
+ *
+ * @param <K> key of the derived data, e.g. the user
+ * @param <D> delta of the derived data
+ */
+final class TransactionalDeltas<K, D> {
+
+    private final BinaryOperator<D> merger;
+
+    private final BiConsumer<K, D> applier;
+
+    /**
+     * @param merger  merges two deltas of the same key
+     * @param applier applies the merged delta of a key
+     */
+    TransactionalDeltas(BinaryOperator<D> merger, BiConsumer<K, D> applier) {
+        this.merger = merger;
+        this.applier = applier;
+    }
+
+    void add(K key, D delta) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            applier.accept(key, delta);
+            return;
+        }
+        pending().deltas.merge(key, delta, merger);
+    }
+
+    /**
+     * Deltas of the current transaction. Looked up among the synchronizations rather than bound as a resource,
+     * so a transaction suspended by an inner one keeps its own deltas.
+     */
+    @SuppressWarnings("unchecked")
+    private Pending<K, D> pending() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Pending<?, ?> pending && pending.owner == this) {
+                return (Pending<K, D>) pending;
+            }
+        }
+        Pending<K, D> pending = new Pending<>(this);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private static final class Pending<K, D> implements TransactionSynchronization {
+
+        private final TransactionalDeltas<K, D> owner;
+
+        private final Map<K, D> deltas = new LinkedHashMap<>();
+
+        private Pending(TransactionalDeltas<K, D> owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            deltas.forEach(owner.applier);
+        }
+
+    }
+
+}
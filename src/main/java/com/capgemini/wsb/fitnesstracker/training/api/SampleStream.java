@@ -0,0 +1,44 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+/**
+ * Kind of the per-sample measurements recorded by a device during a {@link Training}.
+ * Values are stored as integers scaled by the stream's factor, which defines the stored precision.
+ */
+public enum SampleStream {
+
+    /**
+     * Heart rate in beats per minute.
+     */
+    HEART_RATE(1),
+    /**
+     * Pace in seconds per kilometer, with 0.1 s precision.
+     */
+    PACE(10),
+    /**
+     * Latitude in degrees, with ~1 cm precision.
+     */
+    LATITUDE(10_000_000),
+    /**
+     * Longitude in degrees, with ~1 cm precision.
+     */
+    LONGITUDE(10_000_000),
+    /**
+     * Altitude in meters, with 0.1 m precision.
+     */
+    ALTITUDE(10);
+
+    private final double scale;
+
+    SampleStream(double scale) {
+        this.scale = scale;
+    }
+
+    public long toStored(double value) {
+        return Math.round(value * scale);
+    }
+
+    public double toValue(long stored) {
+        return stored / scale;
+    }
+
+}
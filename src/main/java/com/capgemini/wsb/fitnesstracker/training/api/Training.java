@@ -10,18 +10,25 @@ import lombok.ToString;
 
 import java.util.Date;
 @Entity
-@Table(name = "trainings")
+@Table(name = "trainings",
+       indexes = {
+               @Index(name = "idx_trainings_user_start_time", columnList = "user_id, start_time"),
+               @Index(name = "idx_trainings_end_time", columnList = "end_time"),
+               @Index(name = "idx_trainings_activity_start_time", columnList = "activity_type, start_time")
+       })
 @Getter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString
 public class Training {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trainings_seq")
+    @SequenceGenerator(name = "trainings_seq", sequenceName = "trainings_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
+    @ToString.Exclude
     private User user;
 
     @Column(name = "start_time", nullable = false)
@@ -40,6 +47,13 @@ public class Training {
     @Column(name = "average_speed")
     private double averageSpeed;
 
+    @Column(name = "calories_burned", nullable = false)
+    private int caloriesBurned;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
     public Training(
             final User user,
             final Date startTime,
@@ -73,4 +87,8 @@ public class Training {
     public void setAverageSpeed(double averageSpeed) {
         this.averageSpeed = averageSpeed;
     }
+
+    public void setCaloriesBurned(int caloriesBurned) {
+        this.caloriesBurned = caloriesBurned;
+    }
 }
\ No newline at end of file
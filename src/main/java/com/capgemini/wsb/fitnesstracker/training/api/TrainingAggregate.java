@@ -0,0 +1,17 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+/**
+ * Aggregated metrics of a set of trainings.
+ *
+ * @param count               number of trainings
+ * @param totalDistance       sum of the distances
+ * @param totalDurationMillis sum of the durations (end time - start time) in milliseconds
+ * @param averageSpeed        mean of the average speeds, or {@code 0} if there are no trainings
+ * @param maxDistance         longest distance, or {@code 0} if there are no trainings
+ */
+public record TrainingAggregate(long count,
+                                double totalDistance,
+                                long totalDurationMillis,
+                                double averageSpeed,
+                                double maxDistance) {
+}
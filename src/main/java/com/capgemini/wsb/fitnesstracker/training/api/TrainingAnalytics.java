@@ -0,0 +1,38 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import jakarta.annotation.Nullable;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Interface (API) for analytic aggregations over all trainings.
+ * Available only if the in-memory analytics store is enabled with the {@code training.analytics.enabled} property.
+ */
+public interface TrainingAnalytics {
+
+    /**
+     * Aggregates trainings matching all the given (optional) criteria.
+     *
+     * @param activityType activity of the trainings, or {@code null} for all activities
+     * @param userId       id of the user owning the trainings, or {@code null} for all users
+     * @param from         inclusive lower bound of the start time, or {@code null} for no bound
+     * @param to           exclusive upper bound of the start time, or {@code null} for no bound
+     * @return aggregated metrics of the matching trainings
+     */
+    TrainingAggregate aggregate(@Nullable ActivityType activityType, @Nullable Long userId,
+                                @Nullable Instant from, @Nullable Instant to);
+
+    /**
+     * Aggregates trainings matching the given (optional) criteria separately for every activity.
+     *
+     * @param userId id of the user owning the trainings, or {@code null} for all users
+     * @param from   inclusive lower bound of the start time, or {@code null} for no bound
+     * @param to     exclusive upper bound of the start time, or {@code null} for no bound
+     * @return aggregated metrics of the matching trainings per activity
+     */
+    Map<ActivityType, TrainingAggregate> aggregateByActivity(@Nullable Long userId,
+                                                             @Nullable Instant from, @Nullable Instant to);
+
+}
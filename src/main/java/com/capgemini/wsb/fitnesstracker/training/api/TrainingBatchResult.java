@@ -0,0 +1,22 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Result of a single item of the batch training creation.
+ *
+ * @param index position of the item in the submitted batch
+ * @param id    id of the created training, or {@code null} if the item was rejected
+ * @param error reason of the rejection, or {@code null} if the training was created
+ */
+public record TrainingBatchResult(int index, @Nullable Long id, @Nullable String error) {
+
+    public static TrainingBatchResult created(int index, Long id) {
+        return new TrainingBatchResult(index, id, null);
+    }
+
+    public static TrainingBatchResult rejected(int index, String error) {
+        return new TrainingBatchResult(index, null, error);
+    }
+
+}
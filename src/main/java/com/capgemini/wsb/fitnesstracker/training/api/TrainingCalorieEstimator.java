@@ -0,0 +1,25 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+
+import java.util.Date;
+
+/**
+ * Estimates the calories burned by a training. Called by the training module whenever a training is written,
+ * so the estimate is stored with the training and derived totals can subtract exactly what they once added.
+ */
+public interface TrainingCalorieEstimator {
+
+    /**
+     * Estimates the calories of a training of the given user.
+     *
+     * @param userId       id of the user, whose age is taken into account
+     * @param activityType activity of the training
+     * @param startTime    start of the training
+     * @param endTime      end of the training
+     * @param averageSpeed average speed in km/h, {@code 0} if unknown
+     * @return estimated calories in kcal
+     */
+    int estimateCalories(Long userId, ActivityType activityType, Date startTime, Date endTime, double averageSpeed);
+
+}
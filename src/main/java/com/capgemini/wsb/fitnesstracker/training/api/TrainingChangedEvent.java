@@ -0,0 +1,33 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Application event published by the training module whenever a {@link Training} is written.
+ * Allows other components (statistics, analytics) to keep derived data in sync without querying the trainings again.
+ * Listeners interested only in committed changes should use {@code @TransactionalEventListener}.
+ *
+ * @param previous    state of the training before the change, or {@code null} if the training was created
+ * @param current     state of the training after the change, or {@code null} if the training was deleted
+ * @param userDeleted whether the training is deleted together with its user; data derived per user is removed
+ *                    with the user, so listeners maintaining it can ignore the event
+ */
+public record TrainingChangedEvent(@Nullable TrainingDto previous, @Nullable TrainingDto current, boolean userDeleted) {
+
+    public static TrainingChangedEvent created(TrainingDto training) {
+        return new TrainingChangedEvent(null, training, false);
+    }
+
+    public static TrainingChangedEvent updated(TrainingDto previous, TrainingDto current) {
+        return new TrainingChangedEvent(previous, current, false);
+    }
+
+    public static TrainingChangedEvent deleted(TrainingDto previous) {
+        return new TrainingChangedEvent(previous, null, false);
+    }
+
+    public static TrainingChangedEvent deletedWithUser(TrainingDto previous) {
+        return new TrainingChangedEvent(previous, null, true);
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+import com.capgemini.wsb.fitnesstracker.exception.api.BusinessException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.Date;
+
+/**
+ * Keyset position within an ordered list of trainings, i.e. the {@code (time, id)} pair of the last
+ * {@link Training} returned on the previous page. The time is the one the list is ordered by
+ * (start time of the user's training history, end time of the completed trainings).
+ * Textual form is {@code <time>,<id>}, where {@code time} uses the same UTC format as {@link TrainingDto}
+ * (optionally with milliseconds), e.g. {@code 2024-01-19T08:00:00,15}.
+ *
+ * @param time time of the last seen training
+ * @param id   id of the last seen training, used as a tie-breaker for equal times
+ */
+public record TrainingCursor(Date time, Long id) {
+
+    private static final DateTimeFormatter TIME_FORMAT = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy-MM-dd'T'HH:mm:ss")
+            .optionalStart()
+            .appendFraction(ChronoField.MILLI_OF_SECOND, 1, 3, true)
+            .optionalEnd()
+            .toFormatter();
+
+    /**
+     * Parses the {@code <time>,<id>} textual form of the cursor.
+     *
+     * @param value textual cursor
+     * @return parsed cursor
+     * @throws BusinessException if the value is malformed
+     */
+    public static TrainingCursor parse(String value) {
+        int separator = value.lastIndexOf(',');
+        if (separator < 0) {
+            throw new BusinessException("Cursor '%s' should have the <time>,<id> format".formatted(value));
+        }
+        try {
+            LocalDateTime time = LocalDateTime.parse(value.substring(0, separator).trim(), TIME_FORMAT);
+            long id = Long.parseLong(value.substring(separator + 1).trim());
+            return new TrainingCursor(Date.from(time.toInstant(ZoneOffset.UTC)), id);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new BusinessException("Cursor '%s' should have the <time>,<id> format".formatted(value));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return TIME_FORMAT.format(LocalDateTime.ofInstant(time.toInstant(), ZoneOffset.UTC)) + "," + id;
+    }
+
+}
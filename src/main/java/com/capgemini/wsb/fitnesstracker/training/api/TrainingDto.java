@@ -13,5 +13,7 @@ public record TrainingDto(
         @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") Date endTime,
         ActivityType activityType,
         double distance,
-        double averageSpeed) {
+        double averageSpeed,
+        int caloriesBurned,
+        @Nullable Long version) {
 }
@@ -0,0 +1,21 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.annotation.Nullable;
+
+import java.util.Date;
+
+/**
+ * Partial update of a {@link Training}. Only the non-null attributes are changed.
+ *
+ * @param version version of the training the changes are based on, as returned in {@link TrainingDto#version()}
+ */
+public record TrainingPatchDto(
+        Long version,
+        @Nullable @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") Date startTime,
+        @Nullable @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") Date endTime,
+        @Nullable ActivityType activityType,
+        @Nullable Double distance,
+        @Nullable Double averageSpeed) {
+}
@@ -0,0 +1,34 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+import jakarta.annotation.Nullable;
+
+import java.time.Instant;
+
+/**
+ * Interface (API) for storing and reading the per-sample measurements (heart rate, pace, GPS) of trainings.
+ */
+public interface TrainingSampleService {
+
+    /**
+     * Appends samples to the stream of the training. Samples have to be newer than the ones already stored.
+     *
+     * @param trainingId id of the training the samples were recorded in
+     * @param stream     kind of the samples
+     * @param samples    samples to be stored
+     * @throws TrainingNotFoundException if the training does not exist
+     */
+    void appendSamples(Long trainingId, SampleStream stream, TrainingSamplesDto samples);
+
+    /**
+     * Reads samples of the stream of the training recorded within the given time window.
+     *
+     * @param trainingId id of the training the samples were recorded in
+     * @param stream     kind of the samples
+     * @param from       inclusive lower bound of the sample time, or {@code null} for no bound
+     * @param to         exclusive upper bound of the sample time, or {@code null} for no bound
+     * @return samples within the window, ordered by time
+     * @throws TrainingNotFoundException if the training does not exist
+     */
+    TrainingSamplesDto findSamples(Long trainingId, SampleStream stream, @Nullable Instant from, @Nullable Instant to);
+
+}
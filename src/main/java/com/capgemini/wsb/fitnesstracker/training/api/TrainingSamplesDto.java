@@ -0,0 +1,11 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+/**
+ * Series of samples of a single {@link SampleStream}, kept as two parallel primitive arrays,
+ * so neither (de)serialization nor decoding creates an object per sample.
+ *
+ * @param timestamps sample times in epoch milliseconds, strictly increasing
+ * @param values     sample values, in the unit of the stream
+ */
+public record TrainingSamplesDto(long[] timestamps, double[] values) {
+}
@@ -2,14 +2,103 @@ package com.capgemini.wsb.fitnesstracker.training.api;
 
 import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
 import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import jakarta.annotation.Nullable;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface TrainingService {
     List<TrainingDto> findAllTrainings();
-    List<TrainingDto> findTrainingsForUser(Long userId);
+
+    /**
+     * Passes all trainings one by one to the given consumer without loading them into memory at once.
+     * The shards of a sharded database are read in parallel, so the order of the trainings is not defined.
+     *
+     * @param consumer consumer of the trainings, called on the calling thread
+     */
+    void streamAllTrainings(Consumer<TrainingDto> consumer);
+
+    /**
+     * Retrieves a single page of the user's trainings, ordered from the newest one.
+     * Consecutive pages are requested with the {@link TrainingCursor} of the last training of the previous page.
+     *
+     * @param userId id of the user owning the trainings
+     * @param after  position after which the page starts, or {@code null} for the first page
+     * @param limit  maximal number of trainings on the page
+     * @return page of the user's trainings
+     */
+    List<TrainingDto> findTrainingsForUser(Long userId, @Nullable TrainingCursor after, int limit);
+
     TrainingDto createTraining(TrainingDto trainingDto);
-    List<TrainingDto> findCompletedTrainings(String date);
-    List<TrainingDto> findTrainingsByActivity(ActivityType activityType);
+
+    /**
+     * Creates all given trainings at once. Invalid items (e.g. referencing a non-existing user) are rejected
+     * without affecting the remaining ones.
+     *
+     * @param trainingDtos trainings to be created
+     * @return result for every submitted item, in the submission order
+     */
+    List<TrainingBatchResult> createTrainings(List<TrainingDto> trainingDtos);
+
+    /**
+     * Retrieves a single page of trainings completed within the given time range, ordered by the end time.
+     * Consecutive pages are requested with the {@link TrainingCursor} of the last training of the previous page.
+     *
+     * @param from  inclusive lower bound of the end time
+     * @param to    exclusive upper bound of the end time
+     * @param after position after which the page starts, or {@code null} for the first page
+     * @param limit maximal number of trainings on the page
+     * @return page of the completed trainings
+     */
+    List<TrainingDto> findCompletedTrainings(Instant from, Instant to, @Nullable TrainingCursor after, int limit);
+
+    /**
+     * Passes all trainings completed within the given time range one by one to the given consumer
+     * without loading them into memory at once.
+     *
+     * @param from     inclusive lower bound of the end time
+     * @param to       exclusive upper bound of the end time
+     * @param consumer consumer of the trainings, called on the calling thread
+     */
+    void streamCompletedTrainings(Instant from, Instant to, Consumer<TrainingDto> consumer);
+
+    /**
+     * Retrieves a single page of trainings of the given activity, ordered from the newest one,
+     * optionally narrowed down to a single user and a range of the start time.
+     *
+     * @param activityType activity of the trainings
+     * @param userId       id of the user owning the trainings, or {@code null} for all users
+     * @param from         inclusive lower bound of the start time, or {@code null} for no bound
+     * @param to           exclusive upper bound of the start time, or {@code null} for no bound
+     * @param after        position after which the page starts, or {@code null} for the first page
+     * @param limit        maximal number of trainings on the page
+     * @return page of the trainings of the given activity
+     */
+    List<TrainingDto> findTrainingsByActivity(ActivityType activityType, @Nullable Long userId,
+                                              @Nullable Instant from, @Nullable Instant to,
+                                              @Nullable TrainingCursor after, int limit);
+
+    /**
+     * Retrieves the number of trainings of every activity, served from the maintained counters.
+     *
+     * @return number of trainings per activity
+     */
+    Map<ActivityType, Long> countTrainingsByActivity();
+
     TrainingDto updateTraining(Long trainingId, TrainingDto trainingDto);
+
+    /**
+     * Changes only the attributes of the training present in the patch, provided that the training is still
+     * in the version the patch is based on. The change is written with a single version-guarded update statement,
+     * which also returns the previous state of the training, so the training is not read beforehand.
+     *
+     * @param trainingId id of the training to be changed
+     * @param patch      attributes to be changed and the expected version of the training
+     * @return the training after the change
+     * @throws TrainingNotFoundException        if the training does not exist
+     * @throws TrainingVersionConflictException if the training was changed in the meantime
+     */
+    TrainingDto patchTraining(Long trainingId, TrainingPatchDto patch);
 }
@@ -0,0 +1,19 @@
+package com.capgemini.wsb.fitnesstracker.training.api;
+
+import com.capgemini.wsb.fitnesstracker.exception.api.ConflictException;
+
+/**
+ * Exception indicating that the {@link Training} was modified since the version known to the client.
+ */
+@SuppressWarnings("squid:S110")
+public class TrainingVersionConflictException extends ConflictException {
+
+    private TrainingVersionConflictException(String message) {
+        super(message);
+    }
+
+    public TrainingVersionConflictException(Long id, Long expectedVersion) {
+        this("Training with ID=%s is no longer in version %s".formatted(id, expectedVersion));
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+/**
+ * Number of trainings of the given activity, as computed by an aggregate query.
+ *
+ * @param activityType activity of the trainings
+ * @param count        number of trainings
+ */
+public record ActivityTypeCount(ActivityType activityType, Long count) {
+}
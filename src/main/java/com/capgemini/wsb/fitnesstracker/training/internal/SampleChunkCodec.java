@@ -0,0 +1,170 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary encoding of a chunk of samples. Timestamps are stored as delta-of-deltas (a steady sampling rate encodes
+ * to zeros), values as deltas, both column by column as zig-zag varints, and the result is deflated.
+ * A steady per-second stream typically takes less than a byte per sample.
+ * Decoding writes straight into the caller's primitive arrays, without creating an object per sample.
+ */
+final class SampleChunkCodec {
+
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private SampleChunkCodec() {
+    }
+
+    /**
+     * Encodes {@code count} samples starting at {@code offset}.
+     *
+     * @param timestamps sample times, strictly increasing
+     * @param values     scaled sample values
+     * @param offset     index of the first sample of the chunk
+     * @param count      number of samples in the chunk, at least one
+     * @return encoded chunk
+     */
+    static byte[] encode(long[] timestamps, long[] values, int offset, int count) {
+        byte[] raw = new byte[maxRawSize(count)];
+        int end = offset + count;
+
+        long previousTimestamp = timestamps[offset];
+        long previousDelta = 0;
+        int position = writeVarint(raw, 0, zigZag(previousTimestamp));
+        for (int i = offset + 1; i < end; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            position = writeVarint(raw, position, zigZag(delta - previousDelta));
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+        }
+
+        long previousValue = 0;
+        for (int i = offset; i < end; i++) {
+            position = writeVarint(raw, position, zigZag(values[i] - previousValue));
+            previousValue = values[i];
+        }
+        return deflate(raw, position);
+    }
+
+    /**
+     * Decodes the chunk into the given arrays, keeping only the samples within the {@code [from, to)} window.
+     * Both arrays must have room for {@code count} samples starting at {@code offset}.
+     *
+     * @param data       encoded chunk
+     * @param count      number of samples in the chunk
+     * @param from       inclusive lower bound of the sample time
+     * @param to         exclusive upper bound of the sample time
+     * @param timestamps target array of the sample times
+     * @param values     target array of the scaled sample values
+     * @param offset     index the first decoded sample is written at
+     * @return number of samples written
+     */
+    static int decode(byte[] data, int count, long from, long to, long[] timestamps, long[] values, int offset) {
+        byte[] raw = inflate(data, maxRawSize(count));
+        int[] position = {0};
+
+        long timestamp = unZigZag(readVarint(raw, position));
+        long delta = 0;
+        timestamps[offset] = timestamp;
+        for (int i = 1; i < count; i++) {
+            delta += unZigZag(readVarint(raw, position));
+            timestamp += delta;
+            timestamps[offset + i] = timestamp;
+        }
+
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value += unZigZag(readVarint(raw, position));
+            values[offset + i] = value;
+        }
+
+        // compact in place, only the edge chunks of the window have samples to drop
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            long sampleTime = timestamps[offset + i];
+            if (sampleTime >= from && sampleTime < to) {
+                timestamps[offset + kept] = sampleTime;
+                values[offset + kept] = values[offset + i];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    private static int maxRawSize(int count) {
+        return 2 * count * MAX_VARINT_BYTES;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static long readVarint(byte[] buffer, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer[position[0]++];
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    private static byte[] deflate(byte[] raw, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[length + 64];
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                size += deflater.deflate(buffer, size, buffer.length - size);
+            }
+            return Arrays.copyOf(buffer, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int maxLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] raw = new byte[maxLength];
+            int size = 0;
+            while (!inflater.finished() && size < raw.length) {
+                int inflated = inflater.inflate(raw, size, raw.length - size);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated sample chunk");
+                }
+                size += inflated;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted sample chunk", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Number of trainings of a single {@link ActivityType}, maintained on every training write,
+ * so the per-activity counts can be served without scanning the trainings.
+ */
+@Entity
+@Table(name = "training_activity_counts")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+class TrainingActivityCount {
+
+    @Id
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "activity_type", nullable = false)
+    private ActivityType activityType;
+
+    @Column(name = "training_count", nullable = false)
+    private long trainingCount;
+
+    TrainingActivityCount(final ActivityType activityType, final long trainingCount) {
+        this.activityType = activityType;
+        this.trainingCount = trainingCount;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+interface TrainingActivityCountRepository extends JpaRepository<TrainingActivityCount, ActivityType> {
+
+    /**
+     * Atomically adds the given delta to the training count of the activity.
+     *
+     * @param activityType activity of the counter
+     * @param delta        value to be added (negative on removal)
+     * @return number of updated counters
+     */
+    @Modifying
+    @Query("update TrainingActivityCount c set c.trainingCount = c.trainingCount + :delta where c.activityType = :activityType")
+    int increment(@Param("activityType") ActivityType activityType, @Param("delta") long delta);
+
+    /**
+     * Reads the counters of all activities and locks them until the end of the transaction,
+     * so concurrent increments wait for it.
+     *
+     * @return counters of all activities having a counter row
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from TrainingActivityCount c order by c.activityType")
+    List<TrainingActivityCount> lockAll();
+
+    /**
+     * Overwrites the training count of the activity.
+     *
+     * @param activityType activity of the counter
+     * @param count        new training count
+     * @return number of updated counters
+     */
+    @Modifying
+    @Query("update TrainingActivityCount c set c.trainingCount = :count where c.activityType = :activityType")
+    int setCount(@Param("activityType") ActivityType activityType, @Param("count") long count);
+
+}
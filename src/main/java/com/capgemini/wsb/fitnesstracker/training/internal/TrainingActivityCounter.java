@@ -0,0 +1,99 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the per-{@link ActivityType} training counters.
+ * Counters are rebuilt with a single aggregate query once the application is ready
+ * (so trainings loaded on startup are included) and then updated incrementally by {@link TrainingServiceImpl}.
+ * Every shard keeps the counters of its own trainings.
+ */
+@Component
+@Slf4j
+class TrainingActivityCounter {
+
+    private final TrainingActivityCountRepository trainingActivityCountRepository;
+
+    private final TrainingRepository trainingRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    TrainingActivityCounter(TrainingActivityCountRepository trainingActivityCountRepository,
+                            TrainingRepository trainingRepository,
+                            ShardRouter shardRouter,
+                            PlatformTransactionManager transactionManager) {
+        this.trainingActivityCountRepository = trainingActivityCountRepository;
+        this.trainingRepository = trainingRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        shardRouter.onEveryShard(() -> {
+            transactionTemplate.executeWithoutResult(status -> createMissingCounters());
+            return transactionTemplate.execute(status -> rebuildShard());
+        });
+    }
+
+    /**
+     * Creates the counters missing on a fresh database, increments of a missing counter would be lost.
+     */
+    private void createMissingCounters() {
+        Set<ActivityType> existing = trainingActivityCountRepository.findAll()
+                .stream()
+                .map(TrainingActivityCount::getActivityType)
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(ActivityType.class)));
+        trainingActivityCountRepository.saveAll(Arrays.stream(ActivityType.values())
+                .filter(activityType -> !existing.contains(activityType))
+                .map(activityType -> new TrainingActivityCount(activityType, 0))
+                .toList());
+    }
+
+    private Map<ActivityType, Long> rebuildShard() {
+        // the counters are locked before counting: a write that incremented a counter has committed its training
+        // and is counted, a write that did not yet has to wait and increments the rebuilt counter
+        trainingActivityCountRepository.lockAll();
+        Map<ActivityType, Long> counts = trainingRepository.countByActivityType()
+                .stream()
+                .collect(Collectors.toMap(ActivityTypeCount::activityType, ActivityTypeCount::count));
+        for (ActivityType activityType : ActivityType.values()) {
+            trainingActivityCountRepository.setCount(activityType, counts.getOrDefault(activityType, 0L));
+        }
+        log.info("Rebuilt training activity counters {}", counts);
+        return counts;
+    }
+
+    @Transactional
+    public void increment(ActivityType activityType, long delta) {
+        if (delta != 0) {
+            trainingActivityCountRepository.increment(activityType, delta);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Map<ActivityType, Long> getCounts() {
+        Map<ActivityType, Long> counts = new EnumMap<>(ActivityType.class);
+        Arrays.stream(ActivityType.values()).forEach(activityType -> counts.put(activityType, 0L));
+        trainingActivityCountRepository.findAll()
+                .forEach(count -> counts.put(count.getActivityType(), count.getTrainingCount()));
+        return counts;
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingAggregate;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingAnalytics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/trainings/analytics")
+@ConditionalOnProperty(name = "training.analytics.enabled", havingValue = "true")
+public class TrainingAnalyticsController {
+
+    private final TrainingAnalytics trainingAnalytics;
+
+    public TrainingAnalyticsController(TrainingAnalytics trainingAnalytics) {
+        this.trainingAnalytics = trainingAnalytics;
+    }
+
+    @GetMapping
+    public ResponseEntity<TrainingAggregate> aggregate(@RequestParam(required = false) ActivityType activityType,
+                                                       @RequestParam(required = false) Long userId,
+                                                       @RequestParam(required = false) Instant from,
+                                                       @RequestParam(required = false) Instant to) {
+        return ResponseEntity.ok(trainingAnalytics.aggregate(activityType, userId, from, to));
+    }
+
+    @GetMapping("/activity")
+    public ResponseEntity<Map<ActivityType, TrainingAggregate>> aggregateByActivity(@RequestParam(required = false) Long userId,
+                                                                                    @RequestParam(required = false) Instant from,
+                                                                                    @RequestParam(required = false) Instant to) {
+        return ResponseEntity.ok(trainingAnalytics.aggregateByActivity(userId, from, to));
+    }
+}
@@ -0,0 +1,333 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.collection.api.LongIntHashMap;
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingAggregate;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingAnalytics;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingChangedEvent;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional in-process columnar copy of all trainings, serving the {@link TrainingAnalytics} aggregations.
+ * Every attribute is kept in a primitive array (epoch millis, ids, activity ordinals), split into fixed size segments
+ * with min/max zone maps, so a query skips whole segments outside of its criteria and scans the remaining ones
+ * with allocation-free loops. The store is loaded from the database once the application is ready and then kept
+ * in sync with the committed {@link TrainingChangedEvent}s; events committed before the load finishes are buffered
+ * and replayed in order afterwards, so a row read before a concurrent change cannot overwrite its newer state.
+ * Rows of removed trainings are reused by the next added ones.
+ * Enabled with the {@code training.analytics.enabled} property.
+ */
+@Component
+@ConditionalOnProperty(name = "training.analytics.enabled", havingValue = "true")
+@Slf4j
+class TrainingColumnStore implements TrainingAnalytics {
+
+    private static final byte REMOVED = -1;
+
+    private static final long NO_USER = Long.MIN_VALUE;
+
+    private static final ActivityType[] ACTIVITY_TYPES = ActivityType.values();
+
+    private static final int ALL_ACTIVITIES = (1 << ACTIVITY_TYPES.length) - 1;
+
+    private final TrainingRepository trainingRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final int segmentSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongIntHashMap rowsById;
+
+    private Segment[] segments = new Segment[16];
+
+    private int segmentCount;
+
+    /**
+     * Rows of the removed trainings, reused before appending new ones.
+     */
+    private int[] freeRows = new int[16];
+
+    private int freeRowCount;
+
+    /**
+     * Events committed before the load finished, or {@code null} once it has. Guarded by the write lock.
+     */
+    private List<TrainingChangedEvent> changedDuringLoad = new ArrayList<>();
+
+    TrainingColumnStore(TrainingRepository trainingRepository,
+                        ShardRouter shardRouter,
+                        @Value("${training.analytics.segment-size:65536}") int segmentSize) {
+        this.trainingRepository = trainingRepository;
+        this.shardRouter = shardRouter;
+        this.segmentSize = segmentSize;
+        this.rowsById = new LongIntHashMap(segmentSize);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        shardRouter.streamEveryShard(trainingRepository::streamAll, this::upsert);
+        lock.writeLock().lock();
+        try {
+            // the last event of a training carries its latest state, whether the stream read it before or after
+            changedDuringLoad.forEach(this::apply);
+            changedDuringLoad = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Loaded {} trainings into the analytics store", rowsById.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTrainingChanged(TrainingChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringLoad != null) {
+                changedDuringLoad.add(event);
+            } else {
+                apply(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(TrainingChangedEvent event) {
+        if (event.current() != null) {
+            upsert(event.current());
+        } else if (event.previous() != null) {
+            remove(event.previous().id());
+        }
+    }
+
+    void upsert(TrainingDto training) {
+        lock.writeLock().lock();
+        try {
+            int row = rowsById.get(training.id());
+            if (row == LongIntHashMap.NO_VALUE) {
+                row = allocateRow();
+                rowsById.put(training.id(), row);
+            }
+            segments[row / segmentSize].set(row % segmentSize, training);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Long trainingId) {
+        lock.writeLock().lock();
+        try {
+            int row = rowsById.remove(trainingId);
+            if (row == LongIntHashMap.NO_VALUE) {
+                return;
+            }
+            segments[row / segmentSize].activities[row % segmentSize] = REMOVED;
+            if (freeRowCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeRowCount * 2);
+            }
+            freeRows[freeRowCount++] = row;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of the rows allocated so far, of both the stored and the removed trainings
+     */
+    int rowCount() {
+        lock.readLock().lock();
+        try {
+            return segmentCount == 0 ? 0 : (segmentCount - 1) * segmentSize + segments[segmentCount - 1].size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public TrainingAggregate aggregate(@Nullable ActivityType activityType, @Nullable Long userId,
+                                       @Nullable Instant from, @Nullable Instant to) {
+        Accumulator accumulator = scan(activityType == null ? ALL_ACTIVITIES : 1 << activityType.ordinal(), userId, from, to);
+        long count = 0;
+        double totalDistance = 0;
+        long totalDuration = 0;
+        double totalSpeed = 0;
+        double maxDistance = 0;
+        for (int activity = 0; activity < ACTIVITY_TYPES.length; activity++) {
+            count += accumulator.counts[activity];
+            totalDistance += accumulator.distances[activity];
+            totalDuration += accumulator.durations[activity];
+            totalSpeed += accumulator.speeds[activity];
+            maxDistance = Math.max(maxDistance, accumulator.maxDistances[activity]);
+        }
+        return new TrainingAggregate(count, totalDistance, totalDuration, count == 0 ? 0 : totalSpeed / count, maxDistance);
+    }
+
+    @Override
+    public Map<ActivityType, TrainingAggregate> aggregateByActivity(@Nullable Long userId,
+                                                                    @Nullable Instant from, @Nullable Instant to) {
+        Accumulator accumulator = scan(ALL_ACTIVITIES, userId, from, to);
+        Map<ActivityType, TrainingAggregate> aggregates = new EnumMap<>(ActivityType.class);
+        for (ActivityType activityType : ACTIVITY_TYPES) {
+            int activity = activityType.ordinal();
+            long count = accumulator.counts[activity];
+            aggregates.put(activityType, new TrainingAggregate(count,
+                                                               accumulator.distances[activity],
+                                                               accumulator.durations[activity],
+                                                               count == 0 ? 0 : accumulator.speeds[activity] / count,
+                                                               accumulator.maxDistances[activity]));
+        }
+        return aggregates;
+    }
+
+    private Accumulator scan(int activityMask, @Nullable Long userId, @Nullable Instant from, @Nullable Instant to) {
+        long fromMillis = from == null ? Long.MIN_VALUE : from.toEpochMilli();
+        long toMillis = to == null ? Long.MAX_VALUE : to.toEpochMilli();
+        boolean filterUser = userId != null;
+        long user = filterUser ? userId : NO_USER;
+
+        Accumulator accumulator = new Accumulator();
+        long[] counts = accumulator.counts;
+        double[] distances = accumulator.distances;
+        long[] durations = accumulator.durations;
+        double[] speeds = accumulator.speeds;
+        double[] maxDistances = accumulator.maxDistances;
+
+        lock.readLock().lock();
+        try {
+            for (int s = 0; s < segmentCount; s++) {
+                Segment segment = segments[s];
+                if (!segment.mayContain(activityMask, filterUser, user, fromMillis, toMillis)) {
+                    continue;
+                }
+                long[] segmentStarts = segment.startMillis;
+                long[] segmentEnds = segment.endMillis;
+                long[] segmentUsers = segment.userIds;
+                double[] segmentDistances = segment.distances;
+                double[] segmentSpeeds = segment.averageSpeeds;
+                byte[] segmentActivities = segment.activities;
+                for (int i = 0, size = segment.size; i < size; i++) {
+                    int activity = segmentActivities[i];
+                    long start = segmentStarts[i];
+                    if (activity == REMOVED
+                            || (activityMask & (1 << activity)) == 0
+                            || start < fromMillis || start >= toMillis
+                            || (filterUser && segmentUsers[i] != user)) {
+                        continue;
+                    }
+                    double distance = segmentDistances[i];
+                    counts[activity]++;
+                    distances[activity] += distance;
+                    durations[activity] += segmentEnds[i] - start;
+                    speeds[activity] += segmentSpeeds[i];
+                    if (distance > maxDistances[activity]) {
+                        maxDistances[activity] = distance;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return accumulator;
+    }
+
+    private int allocateRow() {
+        if (freeRowCount > 0) {
+            return freeRows[--freeRowCount];
+        }
+        if (segmentCount == 0 || segments[segmentCount - 1].size == segmentSize) {
+            if (segmentCount == segments.length) {
+                segments = Arrays.copyOf(segments, segments.length * 2);
+            }
+            segments[segmentCount++] = new Segment(segmentSize);
+        }
+        Segment last = segments[segmentCount - 1];
+        return (segmentCount - 1) * segmentSize + last.size++;
+    }
+
+    /**
+     * Fixed size chunk of the columns, with zone maps widened on every write, also of a reused row.
+     */
+    private static final class Segment {
+
+        private final long[] userIds;
+        private final long[] startMillis;
+        private final long[] endMillis;
+        private final double[] distances;
+        private final double[] averageSpeeds;
+        private final byte[] activities;
+        private int size;
+
+        private long minStart = Long.MAX_VALUE;
+        private long maxStart = Long.MIN_VALUE;
+        private long minUserId = Long.MAX_VALUE;
+        private long maxUserId = Long.MIN_VALUE;
+        private int activityMask;
+
+        private Segment(int capacity) {
+            userIds = new long[capacity];
+            startMillis = new long[capacity];
+            endMillis = new long[capacity];
+            distances = new double[capacity];
+            averageSpeeds = new double[capacity];
+            activities = new byte[capacity];
+        }
+
+        private void set(int row, TrainingDto training) {
+            long userId = training.userId() == null ? NO_USER : training.userId();
+            long start = training.startTime().getTime();
+            int activity = training.activityType().ordinal();
+
+            userIds[row] = userId;
+            startMillis[row] = start;
+            endMillis[row] = training.endTime().getTime();
+            distances[row] = training.distance();
+            averageSpeeds[row] = training.averageSpeed();
+            activities[row] = (byte) activity;
+
+            minStart = Math.min(minStart, start);
+            maxStart = Math.max(maxStart, start);
+            minUserId = Math.min(minUserId, userId);
+            maxUserId = Math.max(maxUserId, userId);
+            activityMask |= 1 << activity;
+        }
+
+        private boolean mayContain(int activities, boolean filterUser, long userId, long fromMillis, long toMillis) {
+            return (activityMask & activities) != 0
+                    && maxStart >= fromMillis && minStart < toMillis
+                    && (!filterUser || (userId >= minUserId && userId <= maxUserId));
+        }
+
+    }
+
+    /**
+     * Per-activity partial results of a scan, indexed by the {@link ActivityType} ordinal.
+     */
+    private static final class Accumulator {
+
+        private final long[] counts = new long[ACTIVITY_TYPES.length];
+        private final double[] distances = new double[ACTIVITY_TYPES.length];
+        private final long[] durations = new long[ACTIVITY_TYPES.length];
+        private final double[] speeds = new double[ACTIVITY_TYPES.length];
+        private final double[] maxDistances = new double[ACTIVITY_TYPES.length];
+
+    }
+
+}
@@ -1,20 +1,40 @@
 package com.capgemini.wsb.fitnesstracker.training.internal;
 
+import com.capgemini.wsb.fitnesstracker.exception.api.BusinessException;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingBatchResult;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingCursor;
 import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingPatchDto;
 import com.capgemini.wsb.fitnesstracker.training.api.TrainingService;
+import com.capgemini.wsb.fitnesstracker.web.api.NdjsonWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/trainings")
 public class TrainingController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int MAX_BATCH_SIZE = 10_000;
+
     private final TrainingService trainingService;
+    private final NdjsonWriter ndjsonWriter;
 
-    public TrainingController(TrainingService trainingService) {
+    public TrainingController(TrainingService trainingService, NdjsonWriter ndjsonWriter) {
         this.trainingService = trainingService;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     @GetMapping
@@ -22,9 +42,27 @@ public class TrainingController {
         return ResponseEntity.ok(trainingService.findAllTrainings());
     }
 
+    /**
+     * Streams all trainings as newline delimited JSON (one training per line), chosen with
+     * the {@code Accept: application/x-ndjson} header. Trainings are written as they are read from the database,
+     * so the memory usage does not depend on the number of trainings.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportAllTrainings(HttpServletResponse response) throws IOException {
+        ndjsonWriter.write(response, trainingService::streamAllTrainings);
+    }
+
+    /**
+     * Returns a page of the user's trainings, newest first. When the page is full, the cursor of the next page
+     * is returned in the {@value #NEXT_CURSOR_HEADER} header and should be passed back as the {@code after} parameter.
+     */
     @GetMapping("/{userId}")
-    public ResponseEntity<List<TrainingDto>> getTrainingsForUser(@PathVariable Long userId) {
-        return ResponseEntity.ok(trainingService.findTrainingsForUser(userId));
+    public ResponseEntity<List<TrainingDto>> getTrainingsForUser(@PathVariable Long userId,
+                                                                 @RequestParam(required = false) String after,
+                                                                 @RequestParam(defaultValue = "100") int limit) {
+        verifyLimit(limit);
+        TrainingCursor cursor = after == null ? null : TrainingCursor.parse(after);
+        return page(trainingService.findTrainingsForUser(userId, cursor, limit), limit, TrainingDto::startTime);
     }
 
     @PostMapping
@@ -32,18 +70,109 @@ public class TrainingController {
         return ResponseEntity.ok(trainingService.createTraining(trainingDto));
     }
 
+    /**
+     * Creates many trainings in a single request (e.g. uploaded by a device in a burst).
+     * Every item gets its own result, so a single invalid training does not reject the whole batch.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<TrainingBatchResult>> createTrainings(@RequestBody List<TrainingDto> trainingDtos) {
+        if (trainingDtos.size() > MAX_BATCH_SIZE) {
+            throw new BusinessException("Batch cannot contain more than %d trainings".formatted(MAX_BATCH_SIZE));
+        }
+        return ResponseEntity.ok(trainingService.createTrainings(trainingDtos));
+    }
+
+    /**
+     * Returns a page of trainings completed within {@code [from, to)}, ordered by the end time.
+     * Bounds are ISO-8601 instants (e.g. {@code 2024-01-01T00:00:00Z}), {@code to} defaults to now.
+     * When the page is full, the cursor of the next page is returned in the {@value #NEXT_CURSOR_HEADER} header.
+     */
     @GetMapping("/completed")
-    public ResponseEntity<List<TrainingDto>> getCompletedTrainings(@RequestParam String date) {
-        return ResponseEntity.ok(trainingService.findCompletedTrainings(date));
+    public ResponseEntity<List<TrainingDto>> getCompletedTrainings(@RequestParam Instant from,
+                                                                   @RequestParam(required = false) Instant to,
+                                                                   @RequestParam(required = false) String after,
+                                                                   @RequestParam(defaultValue = "100") int limit) {
+        verifyLimit(limit);
+        Instant until = to == null ? Instant.now() : to;
+        verifyRange(from, until);
+        TrainingCursor cursor = after == null ? null : TrainingCursor.parse(after);
+        return page(trainingService.findCompletedTrainings(from, until, cursor, limit), limit, TrainingDto::endTime);
     }
 
+    /**
+     * Streams all trainings completed within {@code [from, to)} as newline delimited JSON,
+     * chosen with the {@code Accept: application/x-ndjson} header.
+     */
+    @GetMapping(value = "/completed", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportCompletedTrainings(@RequestParam Instant from,
+                                         @RequestParam(required = false) Instant to,
+                                         HttpServletResponse response) throws IOException {
+        Instant until = to == null ? Instant.now() : to;
+        verifyRange(from, until);
+        ndjsonWriter.<TrainingDto>write(response,
+                                        consumer -> trainingService.streamCompletedTrainings(from, until, consumer));
+    }
+
+    /**
+     * Returns a page of trainings of the given activity, newest first, optionally narrowed down to a single user
+     * and a {@code [from, to)} range of the start time (ISO-8601 instants).
+     * When the page is full, the cursor of the next page is returned in the {@value #NEXT_CURSOR_HEADER} header.
+     */
     @GetMapping("/activity")
-    public ResponseEntity<List<TrainingDto>> getTrainingsByActivity(@RequestParam ActivityType activityType) {
-        return ResponseEntity.ok(trainingService.findTrainingsByActivity(activityType));
+    public ResponseEntity<List<TrainingDto>> getTrainingsByActivity(@RequestParam ActivityType activityType,
+                                                                    @RequestParam(required = false) Long userId,
+                                                                    @RequestParam(required = false) Instant from,
+                                                                    @RequestParam(required = false) Instant to,
+                                                                    @RequestParam(required = false) String after,
+                                                                    @RequestParam(defaultValue = "100") int limit) {
+        verifyLimit(limit);
+        if (from != null && to != null) {
+            verifyRange(from, to);
+        }
+        TrainingCursor cursor = after == null ? null : TrainingCursor.parse(after);
+        List<TrainingDto> trainings = trainingService.findTrainingsByActivity(activityType, userId, from, to, cursor, limit);
+        return page(trainings, limit, TrainingDto::startTime);
+    }
+
+    @GetMapping("/activity/counts")
+    public ResponseEntity<Map<ActivityType, Long>> getTrainingCountsByActivity() {
+        return ResponseEntity.ok(trainingService.countTrainingsByActivity());
     }
 
     @PutMapping("/{trainingId}")
     public ResponseEntity<TrainingDto> updateTraining(@PathVariable Long trainingId, @RequestBody TrainingDto trainingDto) {
         return ResponseEntity.ok(trainingService.updateTraining(trainingId, trainingDto));
     }
+
+    /**
+     * Changes only the attributes present in the body. The body has to carry the version of the training
+     * the change is based on; if the training was changed since then, {@code 409 Conflict} is returned.
+     */
+    @PatchMapping("/{trainingId}")
+    public ResponseEntity<TrainingDto> patchTraining(@PathVariable Long trainingId, @RequestBody TrainingPatchDto patch) {
+        return ResponseEntity.ok(trainingService.patchTraining(trainingId, patch));
+    }
+
+    private static void verifyLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BusinessException("Limit should be between 1 and %d".formatted(MAX_PAGE_SIZE));
+        }
+    }
+
+    private static void verifyRange(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new BusinessException("Range start %s should be before its end %s".formatted(from, to));
+        }
+    }
+
+    private static ResponseEntity<List<TrainingDto>> page(List<TrainingDto> trainings, int limit,
+                                                          Function<TrainingDto, Date> orderedBy) {
+        if (trainings.size() < limit) {
+            return ResponseEntity.ok(trainings);
+        }
+        TrainingDto last = trainings.get(trainings.size() - 1);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, new TrainingCursor(orderedBy.apply(last), last.id()).toString())
+                .body(trainings);
+    }
 }
@@ -0,0 +1,12 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "training.ingestion.enabled", havingValue = "true")
+@EnableConfigurationProperties(TrainingIngestionProperties.class)
+class TrainingIngestionConfig {
+
+}
@@ -0,0 +1,42 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.exception.api.BusinessException;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Asynchronous counterpart of {@code POST /api/trainings}. The training is only appended to
+ * the {@link TrainingWriteAheadLog} and acknowledged with {@code 202 Accepted}; it is stored, and gets its id,
+ * once the {@link TrainingLogApplier} drains the log.
+ */
+@RestController
+@RequestMapping("/api/trainings/ingest")
+@ConditionalOnProperty(name = "training.ingestion.enabled", havingValue = "true")
+public class TrainingIngestionController {
+
+    private final TrainingWriteAheadLog trainingLog;
+
+    public TrainingIngestionController(TrainingWriteAheadLog trainingLog) {
+        this.trainingLog = trainingLog;
+    }
+
+    @PostMapping
+    public ResponseEntity<Void> ingestTraining(@RequestBody TrainingDto trainingDto) {
+        if (trainingDto.userId() == null) {
+            throw new BusinessException("User ID is required");
+        }
+        if (trainingDto.startTime() == null || trainingDto.endTime() == null || trainingDto.activityType() == null) {
+            throw new BusinessException("Start time, end time and activity type are required");
+        }
+        if (trainingDto.endTime().before(trainingDto.startTime())) {
+            throw new BusinessException("End time cannot be before the start time");
+        }
+        trainingLog.append(trainingDto);
+        return ResponseEntity.accepted().build();
+    }
+}
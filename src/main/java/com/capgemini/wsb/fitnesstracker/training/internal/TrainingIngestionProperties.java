@@ -0,0 +1,43 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Configuration of the asynchronous training ingestion through the {@link TrainingWriteAheadLog}.
+ */
+@ConfigurationProperties(prefix = "training.ingestion")
+@Getter
+@RequiredArgsConstructor
+class TrainingIngestionProperties {
+
+    /**
+     * Directory the log segments are kept in.
+     */
+    private final String directory;
+
+    /**
+     * Size of a single memory-mapped log segment.
+     */
+    private final DataSize segmentSize;
+
+    /**
+     * Maximal number of logged trainings applied to the database in a single transaction.
+     */
+    private final int batchSize;
+
+    /**
+     * Whether every appended record is forced to the storage device before the request is acknowledged.
+     * Without it, acknowledged records survive a crash of the application, but not of the operating system.
+     */
+    private final boolean forceOnAppend;
+
+    /**
+     * Number of failed attempts to apply a logged training after which it is moved to the dead letters,
+     * so a single poison record does not stop the ingestion.
+     */
+    private final int maxAttempts;
+
+}
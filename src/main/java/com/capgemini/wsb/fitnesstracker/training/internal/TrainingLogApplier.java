@@ -0,0 +1,230 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingBatchResult;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background worker draining the {@link TrainingWriteAheadLog} into the database. Trainings are stored through
+ * the batch path of the {@link TrainingService}, one transaction per shard, and every shard commits its own
+ * {@link TrainingLogCheckpoint} together with its trainings. After a restart the log is replayed from the lowest
+ * checkpoint, record by record until the highest one, and a record is stored only on the shards whose checkpoint
+ * it is not behind, so a crash between the commits of two shards stores nothing twice.
+ * A record that still cannot be read or stored after {@code training.ingestion.max-attempts} attempts is moved
+ * to the {@link TrainingLogDeadLetter}s, so it does not stop the ingestion.
+ */
+@Component
+@ConditionalOnProperty(name = "training.ingestion.enabled", havingValue = "true")
+@Slf4j
+class TrainingLogApplier {
+
+    private static final long IDLE_WAIT_MILLIS = 1_000;
+
+    private static final long RETRY_DELAY_MILLIS = 5_000;
+
+    private final TrainingWriteAheadLog trainingLog;
+
+    private final TrainingServiceImpl trainingService;
+
+    private final TrainingLogCheckpointRepository checkpointRepository;
+
+    private final TrainingLogDeadLetterRepository deadLetterRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    private final int maxAttempts;
+
+    /**
+     * Committed checkpoint of every shard, only accessed by the worker once started.
+     */
+    private TrainingLogPosition[] shardCheckpoints;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    TrainingLogApplier(TrainingWriteAheadLog trainingLog,
+                       TrainingServiceImpl trainingService,
+                       TrainingLogCheckpointRepository checkpointRepository,
+                       TrainingLogDeadLetterRepository deadLetterRepository,
+                       ShardRouter shardRouter,
+                       PlatformTransactionManager transactionManager,
+                       TrainingIngestionProperties properties) {
+        this.trainingLog = trainingLog;
+        this.trainingService = trainingService;
+        this.checkpointRepository = checkpointRepository;
+        this.deadLetterRepository = deadLetterRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = properties.getBatchSize();
+        this.maxAttempts = Math.max(properties.getMaxAttempts(), 1);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        shardCheckpoints = new TrainingLogPosition[shardRouter.shardCount()];
+        for (int shard = 0; shard < shardCheckpoints.length; shard++) {
+            shardCheckpoints[shard] = shardRouter.onShard(
+                    shard, () -> checkpointRepository.findById(TrainingLogCheckpoint.SINGLETON_ID)
+                                                     .map(TrainingLogCheckpoint::toPosition)
+                                                     .orElseGet(trainingLog::startPosition));
+        }
+        TrainingLogPosition position = Arrays.stream(shardCheckpoints).min(Comparator.naturalOrder()).orElseThrow();
+        log.info("Applying the training log from {}, appended up to {}", position, trainingLog.endPosition());
+        running = true;
+        worker = new Thread(() -> run(position), "training-log-applier");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(RETRY_DELAY_MILLIS);
+        }
+    }
+
+    private void run(TrainingLogPosition start) {
+        TrainingLogPosition position = start;
+        List<TrainingDto> batch = new ArrayList<>(batchSize);
+        // records still applied one by one after a failed batch, to single out the failing one
+        int isolated = 0;
+        int attempts = 0;
+        while (running) {
+            try {
+                batch.clear();
+                // one by one while some shards are ahead, so every record is either behind or past their checkpoints
+                boolean singly = isolated > 0 || position.compareTo(highestCheckpoint()) < 0;
+                TrainingLogPosition next = trainingLog.read(position, singly ? 1 : batchSize, batch);
+                if (batch.isEmpty()) {
+                    trainingLog.awaitAppend(next, IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                    continue;
+                }
+                apply(batch, next);
+                trainingLog.release(next);
+                position = next;
+                attempts = 0;
+                isolated = Math.max(isolated - 1, 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (isolated == 0 && !batch.isEmpty()) {
+                    isolated = batch.size() + 1;
+                    log.warn("Cannot apply the training log at {}, retrying its next {} records one by one",
+                             position, isolated, e);
+                    continue;
+                }
+                if (++attempts >= maxAttempts) {
+                    try {
+                        position = deadLetter(position, e);
+                        attempts = 0;
+                        isolated = Math.max(isolated - 1, 0);
+                        continue;
+                    } catch (Exception deadLetterFailure) {
+                        e.addSuppressed(deadLetterFailure);
+                    }
+                }
+                log.error("Cannot apply the training log at {} (attempt {} of {}), retrying in {} ms",
+                          position, attempts, maxAttempts, RETRY_DELAY_MILLIS, e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the record at the position to the dead letters and the checkpoints past it. The dead letter is stored
+     * on the first shard, in the same transaction as its checkpoint, which is moved last, so the record is never
+     * dead-lettered twice. The dead letters live in the same database, so while it is down nothing is dropped,
+     * the record keeps being retried instead.
+     *
+     * @return position right after the dead-lettered record
+     */
+    private TrainingLogPosition deadLetter(TrainingLogPosition position, Exception failure) throws IOException {
+        List<byte[]> records = new ArrayList<>(1);
+        TrainingLogPosition next = trainingLog.skip(position, records);
+        if (records.isEmpty()) {
+            return position;
+        }
+        for (int shard = shardCheckpoints.length - 1; shard >= 0; shard--) {
+            int checkpointShard = shard;
+            shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> {
+                if (saveCheckpoint(checkpointShard, next) && checkpointShard == 0) {
+                    deadLetterRepository.save(new TrainingLogDeadLetter(position, records.get(0),
+                                                                        String.valueOf(failure)));
+                }
+                return null;
+            }));
+        }
+        trainingLog.release(next);
+        log.error("Moved the training log record at {} to the dead letters after {} failed attempts",
+                  position, maxAttempts, failure);
+        return next;
+    }
+
+    private void apply(List<TrainingDto> batch, TrainingLogPosition next) {
+        List<TrainingBatchResult> results = trainingService.createTrainings(batch,
+                                                                            shard -> saveCheckpoint(shard, next));
+        long rejected = 0;
+        for (TrainingBatchResult result : results) {
+            if (result.error() != null) {
+                rejected++;
+                log.warn("Dropped logged training {}: {}", batch.get(result.index()), result.error());
+            }
+        }
+        log.debug("Applied {} logged trainings up to {}, {} rejected", batch.size(), next, rejected);
+    }
+
+    /**
+     * Moves the checkpoint of the shard within its current transaction, remembered once the transaction commits.
+     *
+     * @return {@code false} if the shard already stored everything up to the position
+     */
+    private boolean saveCheckpoint(int shard, TrainingLogPosition next) {
+        if (next.compareTo(shardCheckpoints[shard]) <= 0) {
+            return false;
+        }
+        checkpointRepository.save(new TrainingLogCheckpoint(next));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                shardCheckpoints[shard] = next;
+            }
+        });
+        return true;
+    }
+
+    private TrainingLogPosition highestCheckpoint() {
+        return Arrays.stream(shardCheckpoints).max(Comparator.naturalOrder()).orElseThrow();
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Position up to which the {@link TrainingWriteAheadLog} was applied to the database. Every shard keeps its own,
+ * saved in the same transaction as the trainings applied to it, so every logged training is stored exactly once,
+ * even after a crash between the commits of two shards.
+ */
+@Entity
+@Table(name = "training_log_checkpoints")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+class TrainingLogCheckpoint {
+
+    static final long SINGLETON_ID = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(name = "segment", nullable = false)
+    private long segment;
+
+    @Column(name = "segment_offset", nullable = false)
+    private int offset;
+
+    TrainingLogCheckpoint(final TrainingLogPosition position) {
+        this.id = SINGLETON_ID;
+        this.segment = position.segment();
+        this.offset = position.offset();
+    }
+
+    TrainingLogPosition toPosition() {
+        return new TrainingLogPosition(segment, offset);
+    }
+
+}
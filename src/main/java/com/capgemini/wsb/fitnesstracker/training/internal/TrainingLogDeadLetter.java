@@ -0,0 +1,52 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Record of the {@link TrainingWriteAheadLog} that could not be applied to the database, kept as it was logged.
+ * Saved in the same transaction as the {@link TrainingLogCheckpoint} moved past the record, so a poison record
+ * is set aside exactly once and the ingestion carries on with the next one.
+ */
+@Entity
+@Table(name = "training_log_dead_letters")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+class TrainingLogDeadLetter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "segment", nullable = false)
+    private long segment;
+
+    @Column(name = "segment_offset", nullable = false)
+    private int offset;
+
+    @Lob
+    @Column(name = "record", nullable = false)
+    @ToString.Exclude
+    private byte[] record;
+
+    @Column(name = "error", nullable = false, length = 1000)
+    private String error;
+
+    @Column(name = "dead_lettered_at", nullable = false)
+    private Instant deadLetteredAt;
+
+    TrainingLogDeadLetter(final TrainingLogPosition position, final byte[] record, final String error) {
+        this.segment = position.segment();
+        this.offset = position.offset();
+        this.record = record;
+        this.error = error.length() > 1000 ? error.substring(0, 1000) : error;
+        this.deadLetteredAt = Instant.now();
+    }
+
+}
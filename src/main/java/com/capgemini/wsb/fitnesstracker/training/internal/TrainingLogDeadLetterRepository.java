@@ -0,0 +1,7 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+interface TrainingLogDeadLetterRepository extends JpaRepository<TrainingLogDeadLetter, Long> {
+
+}
@@ -0,0 +1,16 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+/**
+ * Position within the {@link TrainingWriteAheadLog}.
+ *
+ * @param segment sequence number of the log segment
+ * @param offset  byte offset within the segment
+ */
+record TrainingLogPosition(long segment, int offset) implements Comparable<TrainingLogPosition> {
+
+    @Override
+    public int compareTo(TrainingLogPosition other) {
+        return segment != other.segment ? Long.compare(segment, other.segment) : Integer.compare(offset, other.offset);
+    }
+
+}
@@ -1,10 +1,11 @@
 package com.capgemini.wsb.fitnesstracker.training.internal;
 
 import com.capgemini.wsb.fitnesstracker.training.api.Training;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingCalorieEstimator;
 import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
 import com.capgemini.wsb.fitnesstracker.training.api.TrainingNotFoundException;
 import com.capgemini.wsb.fitnesstracker.user.api.User;
-import com.capgemini.wsb.fitnesstracker.user.internal.UserRepository;
+import com.capgemini.wsb.fitnesstracker.user.api.UserProvider;
 import org.springframework.stereotype.Component;
 
 import java.util.Optional;
@@ -12,10 +13,13 @@ import java.util.Optional;
 @Component
 public class TrainingMapper {
 
-    private final UserRepository userRepository;
+    private final UserProvider userProvider;
 
-    public TrainingMapper(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    private final TrainingCalorieEstimator calorieEstimator;
+
+    public TrainingMapper(UserProvider userProvider, TrainingCalorieEstimator calorieEstimator) {
+        this.userProvider = userProvider;
+        this.calorieEstimator = calorieEstimator;
     }
 
     public TrainingDto toDto(Training training) {
@@ -26,22 +30,33 @@ public class TrainingMapper {
                 training.getEndTime(),
                 training.getActivityType(),
                 training.getDistance(),
-                training.getAverageSpeed()
+                training.getAverageSpeed(),
+                training.getCaloriesBurned(),
+                training.getVersion()
         );
     }
 
     public Training toEntity(TrainingDto dto) {
-        Optional<User> user = userRepository.findById(dto.userId());
+        // served by the user cache in most cases
+        Optional<User> user = userProvider.getUser(dto.userId());
         if (user.isEmpty()) {
             throw new TrainingNotFoundException(dto.userId());
         }
-        return new Training(
-                user.get(),
+        return toEntity(dto, user.get());
+    }
+
+    public Training toEntity(TrainingDto dto, User user) {
+        Training training = new Training(
+                user,
                 dto.startTime(),
                 dto.endTime(),
                 dto.activityType(),
                 dto.distance(),
                 dto.averageSpeed()
         );
+        // the calories of the DTO are ignored, they are always estimated from the stored attributes
+        training.setCaloriesBurned(calorieEstimator.estimateCalories(
+                user.getId(), dto.activityType(), dto.startTime(), dto.endTime(), dto.averageSpeed()));
+        return training;
     }
 }
@@ -1,8 +1,242 @@
 package com.capgemini.wsb.fitnesstracker.training.internal;
 
 import com.capgemini.wsb.fitnesstracker.training.api.Training;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 interface TrainingRepository extends JpaRepository<Training, Long> {
 
+    /**
+     * Number of rows fetched from the database cursor in one round-trip by the streaming queries.
+     */
+    int STREAM_FETCH_SIZE = 500;
+
+    /**
+     * Select clause projecting trainings directly into {@link TrainingDto}s. Only the {@code user_id} column is read,
+     * so neither the {@code User} entities nor the {@code Training} entities are loaded.
+     */
+    String SELECT_DTO = """
+            select new com.capgemini.wsb.fitnesstracker.training.api.TrainingDto(
+                t.id, t.user.id, t.startTime, t.endTime, t.activityType, t.distance, t.averageSpeed,
+                t.caloriesBurned, t.version)
+            from Training t
+            """;
+
+    /**
+     * Query returning the training together with its user, for the callers that need the user entity.
+     *
+     * @param id id of the training
+     * @return {@link Optional} containing found training or {@link Optional#empty()} if none matched
+     */
+    @EntityGraph(attributePaths = "user")
+    Optional<Training> findWithUserById(Long id);
+
+    /**
+     * Query returning the training and locking its row until the end of the transaction, so writers of data
+     * depending on the training (e.g. its sample chunks) are serialized.
+     *
+     * @param id id of the training
+     * @return {@link Optional} containing found training or {@link Optional#empty()} if none matched
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from Training t where t.id = :id")
+    Optional<Training> findForUpdateById(@Param("id") Long id);
+
+    /**
+     * Query returning a single training projected into DTO, without loading the entity.
+     *
+     * @param id id of the training
+     * @return {@link Optional} containing found training or {@link Optional#empty()} if none matched
+     */
+    @Query(SELECT_DTO + "where t.id = :id")
+    Optional<TrainingDto> findDtoById(@Param("id") Long id);
+
+    /**
+     * Query returning all trainings projected into DTOs.
+     *
+     * @return all trainings
+     */
+    @Query(SELECT_DTO)
+    List<TrainingDto> findAllDtos();
+
+    /**
+     * Query streaming all trainings over a server-side cursor, so the result is never materialized as a whole.
+     * Must be consumed within a transaction and closed afterwards.
+     *
+     * @return stream of all trainings
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query(SELECT_DTO)
+    Stream<TrainingDto> streamAll();
+
+    /**
+     * Query returning the newest trainings of the given user. Backed by the {@code (user_id, start_time)} index.
+     *
+     * @param userId   id of the user owning the trainings
+     * @param pageable page size (only the first page is meaningful, consecutive pages should use the keyset query)
+     * @return trainings ordered from the newest one
+     */
+    @Query(SELECT_DTO + """
+            where t.user.id = :userId
+            order by t.startTime desc, t.id desc
+            """)
+    List<TrainingDto> findFirstPageForUser(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Keyset query returning trainings of the given user started before the given {@code (startTime, id)} position.
+     * Backed by the {@code (user_id, start_time)} index, so the cost does not depend on how deep the page is.
+     *
+     * @param userId    id of the user owning the trainings
+     * @param startTime start time of the last training from the previous page
+     * @param id        id of the last training from the previous page
+     * @param pageable  page size (only the first page is meaningful)
+     * @return trainings ordered from the newest one
+     */
+    @Query(SELECT_DTO + """
+            where t.user.id = :userId
+              and (t.startTime < :startTime or (t.startTime = :startTime and t.id < :id))
+            order by t.startTime desc, t.id desc
+            """)
+    List<TrainingDto> findPageForUserAfter(@Param("userId") Long userId,
+                                        @Param("startTime") Date startTime,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
+
+    /**
+     * Query returning the first page of trainings completed within {@code [from, to)}, ordered by the end time.
+     * Backed by the {@code end_time} index.
+     *
+     * @param from     inclusive lower bound of the end time
+     * @param to       exclusive upper bound of the end time
+     * @param pageable page size (only the first page is meaningful, consecutive pages should use the keyset query)
+     * @return trainings ordered from the earliest completed one
+     */
+    @Query(SELECT_DTO + """
+            where t.endTime >= :from and t.endTime < :to
+            order by t.endTime, t.id
+            """)
+    List<TrainingDto> findFirstPageCompletedBetween(@Param("from") Date from, @Param("to") Date to, Pageable pageable);
+
+    /**
+     * Keyset query returning trainings completed within {@code [from, to)} after the given {@code (endTime, id)} position.
+     *
+     * @param from     inclusive lower bound of the end time
+     * @param to       exclusive upper bound of the end time
+     * @param endTime  end time of the last training from the previous page
+     * @param id       id of the last training from the previous page
+     * @param pageable page size (only the first page is meaningful)
+     * @return trainings ordered from the earliest completed one
+     */
+    @Query(SELECT_DTO + """
+            where t.endTime >= :from and t.endTime < :to
+              and (t.endTime > :endTime or (t.endTime = :endTime and t.id > :id))
+            order by t.endTime, t.id
+            """)
+    List<TrainingDto> findPageCompletedBetweenAfter(@Param("from") Date from,
+                                                 @Param("to") Date to,
+                                                 @Param("endTime") Date endTime,
+                                                 @Param("id") Long id,
+                                                 Pageable pageable);
+
+    /**
+     * Query streaming all trainings completed within {@code [from, to)} over a server-side cursor.
+     * Must be consumed within a transaction and closed afterwards.
+     *
+     * @param from inclusive lower bound of the end time
+     * @param to   exclusive upper bound of the end time
+     * @return stream of the completed trainings
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query(SELECT_DTO + "where t.endTime >= :from and t.endTime < :to")
+    Stream<TrainingDto> streamCompletedBetween(@Param("from") Date from, @Param("to") Date to);
+
+    /**
+     * Keyset query returning trainings of the given activity started within {@code [from, before)}, or at
+     * {@code before} with an id lower than {@code beforeId}. Backed by the {@code (activity_type, start_time)} index.
+     *
+     * @param activityType activity of the trainings
+     * @param from         inclusive lower bound of the start time
+     * @param before       start time of the last training from the previous page (or the exclusive upper bound)
+     * @param beforeId     id of the last training from the previous page
+     * @param pageable     page size (only the first page is meaningful)
+     * @return trainings ordered from the newest one
+     */
+    @Query(SELECT_DTO + """
+            where t.activityType = :activityType
+              and t.startTime >= :from
+              and (t.startTime < :before or (t.startTime = :before and t.id < :beforeId))
+            order by t.startTime desc, t.id desc
+            """)
+    List<TrainingDto> findPageByActivityBefore(@Param("activityType") ActivityType activityType,
+                                            @Param("from") Date from,
+                                            @Param("before") Date before,
+                                            @Param("beforeId") Long beforeId,
+                                            Pageable pageable);
+
+    /**
+     * Same as {@link #findPageByActivityBefore}, narrowed down to trainings of a single user.
+     * Backed by the {@code (user_id, start_time)} index.
+     */
+    @Query(SELECT_DTO + """
+            where t.user.id = :userId
+              and t.activityType = :activityType
+              and t.startTime >= :from
+              and (t.startTime < :before or (t.startTime = :before and t.id < :beforeId))
+            order by t.startTime desc, t.id desc
+            """)
+    List<TrainingDto> findPageByUserAndActivityBefore(@Param("userId") Long userId,
+                                                   @Param("activityType") ActivityType activityType,
+                                                   @Param("from") Date from,
+                                                   @Param("before") Date before,
+                                                   @Param("beforeId") Long beforeId,
+                                                   Pageable pageable);
+
+    /**
+     * Query returning the first trainings of the given users, by id. Used to delete the trainings chunk by chunk.
+     *
+     * @param userIds  ids of the users owning the trainings
+     * @param pageable chunk size
+     * @return trainings ordered by id
+     */
+    @Query(SELECT_DTO + "where t.user.id in :userIds order by t.id")
+    List<TrainingDto> findFirstByUserIds(@Param("userIds") Collection<Long> userIds, Pageable pageable);
+
+    /**
+     * Deletes the given trainings with a single statement, bypassing the persistence context.
+     *
+     * @param ids ids of the trainings
+     * @return number of deleted trainings
+     */
+    @Modifying
+    @Query("delete from Training t where t.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Aggregate query counting trainings per activity.
+     *
+     * @return number of trainings of every activity having at least one training
+     */
+    @Query("""
+            select new com.capgemini.wsb.fitnesstracker.training.internal.ActivityTypeCount(t.activityType, count(t))
+            from Training t
+            group by t.activityType
+            """)
+    List<ActivityTypeCount> countByActivityType();
+
 }
@@ -0,0 +1,67 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.api.SampleStream;
+import com.capgemini.wsb.fitnesstracker.training.api.Training;
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Consecutive samples of a single stream of a {@link Training}, encoded with {@link SampleChunkCodec}.
+ * Times of the first and the last sample are kept in plain columns, so a time window query
+ * reads (and decodes) only the chunks it overlaps.
+ */
+@Entity
+@Table(name = "training_sample_chunks",
+       indexes = @Index(name = "idx_training_sample_chunks_training_stream_start",
+                        columnList = "training_id, stream, start_time"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+class TrainingSampleChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "training_sample_chunks_seq")
+    @SequenceGenerator(name = "training_sample_chunks_seq", sequenceName = "training_sample_chunks_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "training_id", nullable = false)
+    @ToString.Exclude
+    private Training training;
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "stream", nullable = false)
+    private SampleStream stream;
+
+    @Column(name = "start_time", nullable = false)
+    private long startTime;
+
+    @Column(name = "end_time", nullable = false)
+    private long endTime;
+
+    @Column(name = "sample_count", nullable = false)
+    private int sampleCount;
+
+    @Lob
+    @Column(name = "data", nullable = false)
+    @ToString.Exclude
+    private byte[] data;
+
+    TrainingSampleChunk(final Training training,
+                        final SampleStream stream,
+                        final long startTime,
+                        final long endTime,
+                        final int sampleCount,
+                        final byte[] data) {
+        this.training = training;
+        this.stream = stream;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.sampleCount = sampleCount;
+        this.data = data;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.api.SampleStream;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+interface TrainingSampleChunkRepository extends JpaRepository<TrainingSampleChunk, Long> {
+
+    /**
+     * Query returning the chunks of the stream overlapping the {@code [from, to)} time window.
+     *
+     * @param trainingId id of the training
+     * @param stream     kind of the samples
+     * @param from       inclusive lower bound of the sample time, in epoch milliseconds
+     * @param to         exclusive upper bound of the sample time, in epoch milliseconds
+     * @return overlapping chunks ordered by time
+     */
+    @Query("""
+            select c from TrainingSampleChunk c
+            where c.training.id = :trainingId and c.stream = :stream
+              and c.startTime < :to and c.endTime >= :from
+            order by c.startTime
+            """)
+    List<TrainingSampleChunk> findOverlapping(@Param("trainingId") Long trainingId,
+                                              @Param("stream") SampleStream stream,
+                                              @Param("from") long from,
+                                              @Param("to") long to);
+
+    /**
+     * Query returning time of the newest stored sample of the stream.
+     *
+     * @param trainingId id of the training
+     * @param stream     kind of the samples
+     * @return time of the newest sample in epoch milliseconds, or {@code null} if there are no samples
+     */
+    @Query("select max(c.endTime) from TrainingSampleChunk c where c.training.id = :trainingId and c.stream = :stream")
+    Long findLastSampleTime(@Param("trainingId") Long trainingId, @Param("stream") SampleStream stream);
+
+    /**
+     * Deletes all chunks of the given trainings with a single statement.
+     *
+     * @param trainingIds ids of the trainings
+     * @return number of deleted chunks
+     */
+    @Modifying
+    @Query("delete from TrainingSampleChunk c where c.training.id in :trainingIds")
+    int deleteByTrainingIds(@Param("trainingIds") Collection<Long> trainingIds);
+
+}
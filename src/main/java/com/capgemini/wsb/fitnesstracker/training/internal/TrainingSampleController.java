@@ -0,0 +1,44 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.api.SampleStream;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingSampleService;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingSamplesDto;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+
+@RestController
+@RequestMapping("/api/trainings/{trainingId}/samples")
+public class TrainingSampleController {
+
+    private final TrainingSampleService trainingSampleService;
+
+    public TrainingSampleController(TrainingSampleService trainingSampleService) {
+        this.trainingSampleService = trainingSampleService;
+    }
+
+    /**
+     * Appends samples recorded by a device to the stream of the training.
+     * Samples have to be newer than the ones uploaded before.
+     */
+    @PostMapping("/{stream}")
+    public ResponseEntity<Void> appendSamples(@PathVariable Long trainingId,
+                                              @PathVariable SampleStream stream,
+                                              @RequestBody TrainingSamplesDto samples) {
+        trainingSampleService.appendSamples(trainingId, stream, samples);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Returns samples of the stream of the training recorded within the optional {@code [from, to)} window
+     * (ISO-8601 instants). Only the stored chunks overlapping the window are read and decoded.
+     */
+    @GetMapping("/{stream}")
+    public ResponseEntity<TrainingSamplesDto> getSamples(@PathVariable Long trainingId,
+                                                         @PathVariable SampleStream stream,
+                                                         @RequestParam(required = false) Instant from,
+                                                         @RequestParam(required = false) Instant to) {
+        return ResponseEntity.ok(trainingSampleService.findSamples(trainingId, stream, from, to));
+    }
+}
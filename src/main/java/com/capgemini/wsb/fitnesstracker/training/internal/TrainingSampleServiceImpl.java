@@ -0,0 +1,126 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.exception.api.BusinessException;
+import com.capgemini.wsb.fitnesstracker.training.api.SampleStream;
+import com.capgemini.wsb.fitnesstracker.training.api.Training;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingNotFoundException;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingSampleService;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingSamplesDto;
+import jakarta.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+class TrainingSampleServiceImpl implements TrainingSampleService {
+
+    /**
+     * Maximal number of samples encoded into a single chunk.
+     */
+    static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Maximal number of samples accepted in a single upload (a day of per-second samples).
+     */
+    static final int MAX_UPLOAD_SIZE = 86_400;
+
+    private final TrainingRepository trainingRepository;
+
+    private final TrainingSampleChunkRepository trainingSampleChunkRepository;
+
+    private final TrainingShardLocator trainingShardLocator;
+
+    private final ShardRouter shardRouter;
+
+    @Override
+    @Transactional
+    public void appendSamples(Long trainingId, SampleStream stream, TrainingSamplesDto samples) {
+        long[] timestamps = samples.timestamps();
+        double[] values = samples.values();
+        verifySamples(timestamps, values);
+        // the chunks are stored on the shard of their training
+        int shard = trainingShardLocator.findShard(trainingId).orElseThrow(() -> new TrainingNotFoundException(trainingId));
+        shardRouter.onShard(shard, () -> {
+            appendOnShard(trainingId, stream, timestamps, values);
+            return null;
+        });
+    }
+
+    private void appendOnShard(Long trainingId, SampleStream stream, long[] timestamps, double[] values) {
+        // concurrent appends to the training wait here, so both cannot pass the check below with the same last sample
+        Training training = trainingRepository.findForUpdateById(trainingId)
+                .orElseThrow(() -> new TrainingNotFoundException(trainingId));
+        Long lastSampleTime = trainingSampleChunkRepository.findLastSampleTime(trainingId, stream);
+        if (lastSampleTime != null && timestamps[0] <= lastSampleTime) {
+            throw new BusinessException("Samples of %s have to be newer than the last stored one".formatted(stream));
+        }
+
+        long[] storedValues = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            storedValues[i] = stream.toStored(values[i]);
+        }
+        List<TrainingSampleChunk> chunks = new ArrayList<>(timestamps.length / CHUNK_SIZE + 1);
+        for (int offset = 0; offset < timestamps.length; offset += CHUNK_SIZE) {
+            int count = Math.min(CHUNK_SIZE, timestamps.length - offset);
+            chunks.add(new TrainingSampleChunk(training,
+                                               stream,
+                                               timestamps[offset],
+                                               timestamps[offset + count - 1],
+                                               count,
+                                               SampleChunkCodec.encode(timestamps, storedValues, offset, count)));
+        }
+        trainingSampleChunkRepository.saveAll(chunks);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TrainingSamplesDto findSamples(Long trainingId, SampleStream stream, @Nullable Instant from, @Nullable Instant to) {
+        int shard = trainingShardLocator.findShard(trainingId).orElseThrow(() -> new TrainingNotFoundException(trainingId));
+        return shardRouter.onShard(shard, () -> findOnShard(trainingId, stream, from, to));
+    }
+
+    private TrainingSamplesDto findOnShard(Long trainingId, SampleStream stream, @Nullable Instant from, @Nullable Instant to) {
+        long fromMillis = from == null ? Long.MIN_VALUE : from.toEpochMilli();
+        long toMillis = to == null ? Long.MAX_VALUE : to.toEpochMilli();
+        List<TrainingSampleChunk> chunks = trainingSampleChunkRepository.findOverlapping(trainingId, stream, fromMillis, toMillis);
+        if (chunks.isEmpty() && !trainingRepository.existsById(trainingId)) {
+            throw new TrainingNotFoundException(trainingId);
+        }
+
+        int capacity = chunks.stream().mapToInt(TrainingSampleChunk::getSampleCount).sum();
+        long[] timestamps = new long[capacity];
+        long[] storedValues = new long[capacity];
+        int size = 0;
+        for (TrainingSampleChunk chunk : chunks) {
+            size += SampleChunkCodec.decode(chunk.getData(), chunk.getSampleCount(), fromMillis, toMillis,
+                                            timestamps, storedValues, size);
+        }
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = stream.toValue(storedValues[i]);
+        }
+        return new TrainingSamplesDto(size == capacity ? timestamps : Arrays.copyOf(timestamps, size), values);
+    }
+
+    private static void verifySamples(@Nullable long[] timestamps, @Nullable double[] values) {
+        if (timestamps == null || values == null || timestamps.length != values.length) {
+            throw new BusinessException("Timestamps and values have to be provided for every sample");
+        }
+        if (timestamps.length == 0 || timestamps.length > MAX_UPLOAD_SIZE) {
+            throw new BusinessException("Upload should contain between 1 and %d samples".formatted(MAX_UPLOAD_SIZE));
+        }
+        for (int i = 1; i < timestamps.length; i++) {
+            if (timestamps[i] <= timestamps[i - 1]) {
+                throw new BusinessException("Sample timestamps have to be strictly increasing");
+            }
+        }
+    }
+
+}
@@ -1,80 +1,452 @@
 package com.capgemini.wsb.fitnesstracker.training.internal;
 
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.exception.api.BusinessException;
 import com.capgemini.wsb.fitnesstracker.training.api.*;
 import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserNotFoundException;
 import com.capgemini.wsb.fitnesstracker.user.internal.UserRepository;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 
 @Service
 public class TrainingServiceImpl implements TrainingService, TrainingProvider {
-    @Override
-    public Optional<User> getTraining(final Long trainingId) {
-        throw new UnsupportedOperationException("Not finished yet");
-    }
+
+    /**
+     * Number of trainings flushed at once by the batch creation, aligned with {@code hibernate.jdbc.batch_size}.
+     */
+    private static final int BATCH_FLUSH_SIZE = 50;
+
+    private static final String TRAINING_REQUIRED = "Training is required";
+
+    private static final String USER_ID_REQUIRED = "User ID is required";
+
+    /**
+     * Version-guarded update of the patched columns, the absent ones keep their values. Returns the row as it was
+     * before the update (H2 data change delta table), so the patch needs no read of its own.
+     */
+    private static final String PATCH_RETURNING_PREVIOUS = """
+            select user_id, start_time, end_time, activity_type, distance, average_speed, calories_burned, version
+            from old table (
+                update trainings
+                set start_time = coalesce(:startTime, start_time),
+                    end_time = coalesce(:endTime, end_time),
+                    activity_type = coalesce(:activityType, activity_type),
+                    distance = coalesce(:distance, distance),
+                    average_speed = coalesce(:averageSpeed, average_speed),
+                    version = version + 1
+                where id = :id and version = :version)
+            """;
+
+    private static final String UPDATE_CALORIES = "update trainings set calories_burned = :calories where id = :id";
+
+    private static final ActivityType[] ACTIVITY_TYPES = ActivityType.values();
+
+    private static final Instant MIN_START_TIME = Instant.parse("0001-01-01T00:00:00Z");
+
+    private static final Instant MAX_START_TIME = Instant.parse("9999-12-31T00:00:00Z");
+
+    private static final Comparator<TrainingDto> EARLIEST_COMPLETED_FIRST = Comparator.comparing(TrainingDto::endTime)
+                                                                                      .thenComparing(TrainingDto::id);
+
+    private static final Comparator<TrainingDto> LATEST_STARTED_FIRST = Comparator.comparing(TrainingDto::startTime)
+                                                                                  .thenComparing(TrainingDto::id)
+                                                                                  .reversed();
+
     private final TrainingRepository trainingRepository;
     private final UserRepository userRepository;
     private final TrainingMapper trainingMapper;
+    private final TrainingCalorieEstimator calorieEstimator;
+    private final TrainingActivityCounter trainingActivityCounter;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shardRouter;
+    private final TrainingShardLocator trainingShardLocator;
+    private final TransactionTemplate shardTransaction;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
 
-    public TrainingServiceImpl(TrainingRepository trainingRepository, UserRepository userRepository, TrainingMapper trainingMapper) {
+    public TrainingServiceImpl(TrainingRepository trainingRepository, UserRepository userRepository, TrainingMapper trainingMapper,
+                               TrainingCalorieEstimator calorieEstimator, TrainingActivityCounter trainingActivityCounter,
+                               EntityManager entityManager, ApplicationEventPublisher eventPublisher, ShardRouter shardRouter,
+                               TrainingShardLocator trainingShardLocator, PlatformTransactionManager transactionManager,
+                               NamedParameterJdbcTemplate jdbcTemplate) {
         this.trainingRepository = trainingRepository;
         this.userRepository = userRepository;
         this.trainingMapper = trainingMapper;
+        this.calorieEstimator = calorieEstimator;
+        this.trainingActivityCounter = trainingActivityCounter;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.shardRouter = shardRouter;
+        this.trainingShardLocator = trainingShardLocator;
+        this.shardTransaction = new TransactionTemplate(transactionManager);
+        this.shardTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Optional<Training> getTraining(final Long trainingId) {
+        OptionalInt shard = trainingShardLocator.findShard(trainingId);
+        return shard.isEmpty()
+                ? Optional.empty()
+                : shardRouter.onShard(shard.getAsInt(), () -> trainingRepository.findWithUserById(trainingId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<TrainingDto> findAllTrainings() {
-        return trainingRepository.findAll()
-                .stream()
-                .map(trainingMapper::toDto)
-                .collect(Collectors.toList());
+        return shardRouter.findOnEveryShard(trainingRepository::findAllDtos);
     }
 
     @Override
-    public List<TrainingDto> findTrainingsForUser(Long userId) {
-        return trainingRepository.findAll()
-                .stream()
-                .filter(training -> training.getUser().getId().equals(userId))
-                .map(trainingMapper::toDto)
-                .collect(Collectors.toList());
+    public void streamAllTrainings(Consumer<TrainingDto> consumer) {
+        // trainings are projected into DTOs, so nothing piles up in the persistence context while streaming
+        shardRouter.streamEveryShard(trainingRepository::streamAll, consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TrainingDto> findTrainingsForUser(Long userId, @Nullable TrainingCursor after, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        return shardRouter.onShardOf(userId, () -> after == null
+                ? trainingRepository.findFirstPageForUser(userId, page)
+                : trainingRepository.findPageForUserAfter(userId, after.time(), after.id(), page));
     }
 
     @Override
+    @Transactional
     public TrainingDto createTraining(TrainingDto trainingDto) {
+        return trainingDto.userId() == null
+                ? createOnShard(trainingDto)
+                : shardRouter.onShardOf(trainingDto.userId(), () -> createOnShard(trainingDto));
+    }
+
+    private TrainingDto createOnShard(TrainingDto trainingDto) {
         Training training = trainingMapper.toEntity(trainingDto);
         Training savedTraining = trainingRepository.save(training);
-        return trainingMapper.toDto(savedTraining);
+        trainingActivityCounter.increment(savedTraining.getActivityType(), 1);
+        TrainingDto createdTraining = trainingMapper.toDto(savedTraining);
+        eventPublisher.publishEvent(TrainingChangedEvent.created(createdTraining));
+        return createdTraining;
     }
 
     @Override
-    public List<TrainingDto> findCompletedTrainings(String date) {
-        // Implement logic to find completed trainings by date
-        // Placeholder
-        return List.of();
+    @Transactional
+    public List<TrainingBatchResult> createTrainings(List<TrainingDto> trainingDtos) {
+        if (shardRouter.shardCount() == 1) {
+            return createBatchOnShard(trainingDtos);
+        }
+        // one transaction per shard, the batch as a whole is no longer atomic
+        return createBatchPerShard(trainingDtos, false, shard -> true);
     }
 
-    @Override
-    public List<TrainingDto> findTrainingsByActivity(ActivityType activityType) {
-        return trainingRepository.findAll()
+    /**
+     * Creates the trainings like {@link #createTrainings(List)}, but always in one transaction per shard, including
+     * the shards the batch has no trainings for. Lets the {@link TrainingLogApplier} commit its checkpoint on every
+     * shard together with the trainings stored there.
+     *
+     * @param trainingDtos trainings to be created
+     * @param shardStep    run first in the transaction of every shard, returns {@code false} if the trainings of the
+     *                     shard are not to be created (they already were)
+     * @return result for every submitted item, except the trainings of the skipped shards, in the submission order
+     */
+    public List<TrainingBatchResult> createTrainings(List<TrainingDto> trainingDtos, IntPredicate shardStep) {
+        return createBatchPerShard(trainingDtos, true, shardStep);
+    }
+
+    private List<TrainingBatchResult> createBatchPerShard(List<TrainingDto> trainingDtos, boolean everyShard,
+                                                          IntPredicate shardStep) {
+        Map<Integer, List<Integer>> indexesByShard = new TreeMap<>();
+        if (everyShard) {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                indexesByShard.put(shard, new ArrayList<>());
+            }
+        }
+        List<TrainingBatchResult> results = new ArrayList<>(trainingDtos.size());
+        for (int index = 0; index < trainingDtos.size(); index++) {
+            TrainingDto trainingDto = trainingDtos.get(index);
+            if (trainingDto == null) {
+                results.add(TrainingBatchResult.rejected(index, TRAINING_REQUIRED));
+            } else if (trainingDto.userId() == null) {
+                results.add(TrainingBatchResult.rejected(index, USER_ID_REQUIRED));
+            } else {
+                indexesByShard.computeIfAbsent(shardRouter.shardOf(trainingDto.userId()), shard -> new ArrayList<>())
+                              .add(index);
+            }
+        }
+        indexesByShard.forEach((shard, indexes) -> {
+            List<TrainingDto> shardTrainings = indexes.stream().map(trainingDtos::get).toList();
+            List<TrainingBatchResult> shardResults = shardRouter.onShard(
+                    shard, () -> shardTransaction.execute(status -> shardStep.test(shard)
+                            ? createBatchOnShard(shardTrainings)
+                            : List.<TrainingBatchResult>of()));
+            for (TrainingBatchResult result : shardResults) {
+                int index = indexes.get(result.index());
+                results.add(result.error() == null
+                                    ? TrainingBatchResult.created(index, result.id())
+                                    : TrainingBatchResult.rejected(index, result.error()));
+            }
+        });
+        results.sort(Comparator.comparingInt(TrainingBatchResult::index));
+        return results;
+    }
+
+    private List<TrainingBatchResult> createBatchOnShard(List<TrainingDto> trainingDtos) {
+        Map<Long, User> users = userRepository.findAllById(trainingDtos.stream()
+                        .filter(Objects::nonNull)
+                        .map(TrainingDto::userId)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .toList())
                 .stream()
-                .filter(training -> training.getActivityType() == activityType)
-                .map(trainingMapper::toDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        List<TrainingBatchResult> results = new ArrayList<>(trainingDtos.size());
+        Map<ActivityType, Long> createdPerActivity = new EnumMap<>(ActivityType.class);
+        int pending = 0;
+        for (int index = 0; index < trainingDtos.size(); index++) {
+            TrainingDto trainingDto = trainingDtos.get(index);
+            String error = validate(trainingDto, users);
+            if (error != null) {
+                results.add(TrainingBatchResult.rejected(index, error));
+                continue;
+            }
+            Training training = trainingRepository.save(trainingMapper.toEntity(trainingDto, users.get(trainingDto.userId())));
+            results.add(TrainingBatchResult.created(index, training.getId()));
+            createdPerActivity.merge(training.getActivityType(), 1L, Long::sum);
+            eventPublisher.publishEvent(TrainingChangedEvent.created(trainingMapper.toDto(training)));
+            if (++pending % BATCH_FLUSH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        createdPerActivity.forEach(trainingActivityCounter::increment);
+        return results;
+    }
+
+    @Nullable
+    private static String validate(@Nullable TrainingDto trainingDto, Map<Long, User> users) {
+        if (trainingDto == null) {
+            return TRAINING_REQUIRED;
+        }
+        if (trainingDto.userId() == null) {
+            return USER_ID_REQUIRED;
+        }
+        if (!users.containsKey(trainingDto.userId())) {
+            return new UserNotFoundException(trainingDto.userId()).getMessage();
+        }
+        if (trainingDto.startTime() == null || trainingDto.endTime() == null || trainingDto.activityType() == null) {
+            return "Start time, end time and activity type are required";
+        }
+        if (trainingDto.endTime().before(trainingDto.startTime())) {
+            return "End time cannot be before the start time";
+        }
+        return null;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TrainingDto> findCompletedTrainings(Instant from, Instant to, @Nullable TrainingCursor after, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        return shardRouter.findPageOnEveryShard(
+                () -> after == null
+                        ? trainingRepository.findFirstPageCompletedBetween(Date.from(from), Date.from(to), page)
+                        : trainingRepository.findPageCompletedBetweenAfter(Date.from(from), Date.from(to), after.time(),
+                                                                           after.id(), page),
+                EARLIEST_COMPLETED_FIRST,
+                limit);
+    }
+
+    @Override
+    public void streamCompletedTrainings(Instant from, Instant to, Consumer<TrainingDto> consumer) {
+        shardRouter.streamEveryShard(() -> trainingRepository.streamCompletedBetween(Date.from(from), Date.from(to)),
+                                     consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TrainingDto> findTrainingsByActivity(ActivityType activityType, @Nullable Long userId,
+                                                     @Nullable Instant from, @Nullable Instant to,
+                                                     @Nullable TrainingCursor after, int limit) {
+        Date lowerBound = Date.from(from == null ? MIN_START_TIME : from);
+        // the first page starts right before the upper bound, so both cases are served by a single keyset query
+        TrainingCursor position = after == null
+                ? new TrainingCursor(Date.from(to == null ? MAX_START_TIME : to), Long.MIN_VALUE)
+                : after;
+        PageRequest page = PageRequest.of(0, limit);
+        return userId == null
+                ? shardRouter.findPageOnEveryShard(
+                        () -> trainingRepository.findPageByActivityBefore(activityType, lowerBound, position.time(),
+                                                                          position.id(), page),
+                        LATEST_STARTED_FIRST,
+                        limit)
+                : shardRouter.onShardOf(userId, () -> trainingRepository.findPageByUserAndActivityBefore(
+                        userId, activityType, lowerBound, position.time(), position.id(), page));
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Map<ActivityType, Long> countTrainingsByActivity() {
+        // every shard counts its own trainings
+        Map<ActivityType, Long> counts = new EnumMap<>(ActivityType.class);
+        for (Map<ActivityType, Long> shardCounts : shardRouter.onEveryShard(trainingActivityCounter::getCounts)) {
+            shardCounts.forEach((activityType, count) -> counts.merge(activityType, count, Long::sum));
+        }
+        return counts;
+    }
+
+    @Override
+    @Transactional
     public TrainingDto updateTraining(Long trainingId, TrainingDto trainingDto) {
+        int shard = trainingShardLocator.findShard(trainingId).orElseThrow(() -> new TrainingNotFoundException(trainingId));
+        return shardRouter.onShard(shard, () -> updateOnShard(trainingId, trainingDto));
+    }
+
+    private TrainingDto updateOnShard(Long trainingId, TrainingDto trainingDto) {
         Training training = trainingRepository.findById(trainingId)
                 .orElseThrow(() -> new TrainingNotFoundException(trainingId));
+        if (trainingDto.version() != null && trainingDto.version() != training.getVersion()) {
+            throw new TrainingVersionConflictException(trainingId, trainingDto.version());
+        }
+        TrainingDto previousTraining = trainingMapper.toDto(training);
+        if (training.getActivityType() != trainingDto.activityType()) {
+            trainingActivityCounter.increment(training.getActivityType(), -1);
+            trainingActivityCounter.increment(trainingDto.activityType(), 1);
+        }
         training.setStartTime(trainingDto.startTime());
         training.setEndTime(trainingDto.endTime());
         training.setActivityType(trainingDto.activityType());
         training.setDistance(trainingDto.distance());
         training.setAverageSpeed(trainingDto.averageSpeed());
-        Training updatedTraining = trainingRepository.save(training);
-        return trainingMapper.toDto(updatedTraining);
+        training.setCaloriesBurned(calorieEstimator.estimateCalories(previousTraining.userId(),
+                                                                     trainingDto.activityType(),
+                                                                     trainingDto.startTime(),
+                                                                     trainingDto.endTime(),
+                                                                     trainingDto.averageSpeed()));
+        Training updatedTraining;
+        try {
+            updatedTraining = trainingRepository.saveAndFlush(training);
+        } catch (OptimisticLockingFailureException e) {
+            // changed by a concurrent writer after the version check above
+            throw new TrainingVersionConflictException(trainingId, training.getVersion());
+        }
+        TrainingDto currentTraining = trainingMapper.toDto(updatedTraining);
+        eventPublisher.publishEvent(TrainingChangedEvent.updated(previousTraining, currentTraining));
+        return currentTraining;
+    }
+
+    @Override
+    @Transactional
+    public TrainingDto patchTraining(Long trainingId, TrainingPatchDto patch) {
+        if (patch.version() == null) {
+            throw new BusinessException("Version of the patched training is required");
+        }
+        int shard = trainingShardLocator.findShard(trainingId).orElseThrow(() -> new TrainingNotFoundException(trainingId));
+        return shardRouter.onShard(shard, () -> patchOnShard(trainingId, patch));
+    }
+
+    private TrainingDto patchOnShard(Long trainingId, TrainingPatchDto patch) {
+        Optional<TrainingDto> patchedTraining = executePatch(trainingId, patch);
+        if (patchedTraining.isEmpty()) {
+            // only a failed patch pays for telling a missing training from a stale version
+            throw trainingRepository.existsById(trainingId)
+                    ? new TrainingVersionConflictException(trainingId, patch.version())
+                    : new TrainingNotFoundException(trainingId);
+        }
+        TrainingDto previousTraining = patchedTraining.get();
+        Date startTime = patch.startTime() != null ? patch.startTime() : previousTraining.startTime();
+        Date endTime = patch.endTime() != null ? patch.endTime() : previousTraining.endTime();
+        if (endTime.before(startTime)) {
+            // rolls the update back
+            throw new BusinessException("End time cannot be before the start time");
+        }
+        ActivityType activityType = patch.activityType() != null ? patch.activityType() : previousTraining.activityType();
+        double averageSpeed = patch.averageSpeed() != null ? patch.averageSpeed() : previousTraining.averageSpeed();
+        int caloriesBurned = previousTraining.caloriesBurned();
+        if (patch.startTime() != null || patch.endTime() != null || patch.activityType() != null
+                || patch.averageSpeed() != null) {
+            // the estimate depends on the user and the MET table, so it cannot be part of the statement; the row
+            // is locked by the update, only patches of the calorie inputs pay for this second statement
+            caloriesBurned = calorieEstimator.estimateCalories(previousTraining.userId(), activityType, startTime,
+                                                               endTime, averageSpeed);
+            if (caloriesBurned != previousTraining.caloriesBurned()) {
+                jdbcTemplate.update(UPDATE_CALORIES, new MapSqlParameterSource("calories", caloriesBurned)
+                        .addValue("id", trainingId));
+            }
+        }
+        TrainingDto currentTraining = new TrainingDto(
+                trainingId,
+                previousTraining.userId(),
+                startTime,
+                endTime,
+                activityType,
+                patch.distance() != null ? patch.distance() : previousTraining.distance(),
+                averageSpeed,
+                caloriesBurned,
+                previousTraining.version() + 1);
+
+        if (previousTraining.activityType() != currentTraining.activityType()) {
+            trainingActivityCounter.increment(previousTraining.activityType(), -1);
+            trainingActivityCounter.increment(currentTraining.activityType(), 1);
+        }
+        eventPublisher.publishEvent(TrainingChangedEvent.updated(previousTraining, currentTraining));
+        return currentTraining;
+    }
+
+    /**
+     * Issues the {@link #PATCH_RETURNING_PREVIOUS} statement, the only read of the patch is the row it returns.
+     *
+     * @return state of the training before the patch, empty if it does not exist or is no longer in the expected
+     * version
+     */
+    private Optional<TrainingDto> executePatch(Long trainingId, TrainingPatchDto patch) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("startTime", patch.startTime(), Types.TIMESTAMP)
+                .addValue("endTime", patch.endTime(), Types.TIMESTAMP)
+                .addValue("activityType", patch.activityType() == null ? null : patch.activityType().ordinal(),
+                          Types.INTEGER)
+                .addValue("distance", patch.distance(), Types.DOUBLE)
+                .addValue("averageSpeed", patch.averageSpeed(), Types.DOUBLE)
+                .addValue("id", trainingId)
+                .addValue("version", patch.version());
+        List<TrainingDto> previous = jdbcTemplate.query(PATCH_RETURNING_PREVIOUS, parameters, (resultSet, row) ->
+                new TrainingDto(trainingId,
+                                resultSet.getLong("user_id"),
+                                resultSet.getTimestamp("start_time"),
+                                resultSet.getTimestamp("end_time"),
+                                ACTIVITY_TYPES[resultSet.getInt("activity_type")],
+                                resultSet.getDouble("distance"),
+                                resultSet.getDouble("average_speed"),
+                                resultSet.getInt("calories_burned"),
+                                resultSet.getLong("version")));
+        return previous.stream().findFirst();
     }
 }
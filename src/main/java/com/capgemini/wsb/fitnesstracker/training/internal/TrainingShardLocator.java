@@ -0,0 +1,35 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Finds the shard a training lives on when only its id is known. The training ids do not reveal the user, so every
+ * shard is asked at once; with a single shard nothing is queried.
+ */
+@Component
+@RequiredArgsConstructor
+class TrainingShardLocator {
+
+    private final TrainingRepository trainingRepository;
+
+    private final ShardRouter shardRouter;
+
+    /**
+     * @param trainingId id of the training
+     * @return shard holding the training, empty if no shard holds it (only checked when there are more shards)
+     */
+    OptionalInt findShard(Long trainingId) {
+        if (shardRouter.shardCount() == 1) {
+            return OptionalInt.of(0);
+        }
+        List<Boolean> found = shardRouter.onEveryShard(() -> trainingRepository.existsById(trainingId));
+        int shard = found.indexOf(Boolean.TRUE);
+        return shard < 0 ? OptionalInt.empty() : OptionalInt.of(shard);
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingChangedEvent;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import com.capgemini.wsb.fitnesstracker.user.api.UserDataRemover;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes the trainings of deleted users together with their sample chunks. Every chunk of trainings is read once
+ * as DTOs (for the counters and the {@link TrainingChangedEvent} listeners) and then deleted by id.
+ */
+@Component
+@Order(1)
+@RequiredArgsConstructor
+class TrainingUserDataRemover implements UserDataRemover {
+
+    private final TrainingRepository trainingRepository;
+
+    private final TrainingSampleChunkRepository sampleChunkRepository;
+
+    private final TrainingActivityCounter trainingActivityCounter;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    @Transactional
+    public int removeChunk(Collection<Long> userIds, int chunkSize) {
+        List<TrainingDto> trainings = trainingRepository.findFirstByUserIds(userIds, PageRequest.of(0, chunkSize));
+        if (trainings.isEmpty()) {
+            return 0;
+        }
+        List<Long> trainingIds = trainings.stream().map(TrainingDto::id).toList();
+        sampleChunkRepository.deleteByTrainingIds(trainingIds);
+        trainingRepository.deleteByIds(trainingIds);
+
+        Map<ActivityType, Long> deletedPerActivity = new EnumMap<>(ActivityType.class);
+        for (TrainingDto training : trainings) {
+            deletedPerActivity.merge(training.activityType(), 1L, Long::sum);
+            eventPublisher.publishEvent(TrainingChangedEvent.deletedWithUser(training));
+        }
+        deletedPerActivity.forEach((activityType, count) -> trainingActivityCounter.increment(activityType, -count));
+        return trainings.size();
+    }
+
+}
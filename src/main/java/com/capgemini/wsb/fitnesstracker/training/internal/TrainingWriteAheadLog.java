@@ -0,0 +1,393 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of the trainings accepted for asynchronous ingestion. The log is split into fixed size segment
+ * files, each one memory-mapped, so an append is a copy into the page cache and survives a crash of the application
+ * as soon as it returns. Every record is a {@code [length, crc32c, payload]} triple with a fixed-size binary payload;
+ * a record that does not fit into the current segment is preceded by a roll marker and written to the next one.
+ * On start the last segment is scanned up to the first torn or corrupted record, which becomes the append position.
+ */
+@Component
+@ConditionalOnProperty(name = "training.ingestion.enabled", havingValue = "true")
+@Slf4j
+class TrainingWriteAheadLog {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final int PAYLOAD_SIZE = 3 * Long.BYTES + 2 * Double.BYTES + 1;
+
+    private static final int RECORD_SIZE = HEADER_SIZE + PAYLOAD_SIZE;
+
+    private static final int ROLL_MARKER = -1;
+
+    private static final ActivityType[] ACTIVITY_TYPES = ActivityType.values();
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final boolean forceOnAppend;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition appended = lock.newCondition();
+
+    private final CRC32C writeChecksum = new CRC32C();
+
+    private final CRC32C readChecksum = new CRC32C();
+
+    private long firstSegment;
+
+    private long writeSegment;
+
+    private MappedByteBuffer writeBuffer;
+
+    private long readSegment = -1;
+
+    private ByteBuffer readBuffer;
+
+    TrainingWriteAheadLog(TrainingIngestionProperties properties) {
+        this.directory = Path.of(properties.getDirectory());
+        this.segmentSize = Math.toIntExact(properties.getSegmentSize().toBytes());
+        this.forceOnAppend = properties.isForceOnAppend();
+        if (segmentSize < RECORD_SIZE + Integer.BYTES) {
+            throw new IllegalArgumentException("Log segment size %d is too small".formatted(segmentSize));
+        }
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = listSegments();
+        if (segments.isEmpty()) {
+            firstSegment = 0;
+            writeSegment = 0;
+            writeBuffer = map(0, FileChannel.MapMode.READ_WRITE);
+            return;
+        }
+        firstSegment = segments.get(0);
+        writeSegment = segments.get(segments.size() - 1);
+        writeBuffer = map(writeSegment, FileChannel.MapMode.READ_WRITE);
+        boolean rolled = recover();
+        if (rolled) {
+            roll();
+        }
+        log.info("Opened training log with segments {}-{}, appending at {}", firstSegment, writeSegment, endPosition());
+    }
+
+    @PreDestroy
+    void close() {
+        lock.lock();
+        try {
+            writeBuffer.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the training to the log.
+     *
+     * @param training training to append, with all required attributes present
+     * @return position right after the appended record
+     */
+    TrainingLogPosition append(TrainingDto training) {
+        lock.lock();
+        try {
+            if (writeBuffer.position() + RECORD_SIZE > segmentSize) {
+                if (writeBuffer.position() + Integer.BYTES <= segmentSize) {
+                    writeBuffer.putInt(writeBuffer.position(), ROLL_MARKER);
+                }
+                roll();
+            }
+            int position = writeBuffer.position();
+            ByteBuffer payload = writeBuffer.slice(position + HEADER_SIZE, PAYLOAD_SIZE);
+            encode(training, payload);
+            payload.flip();
+            writeChecksum.reset();
+            writeChecksum.update(payload);
+            writeBuffer.putInt(position + Integer.BYTES, (int) writeChecksum.getValue());
+            // the length goes last, a record is never seen with a length and without its payload
+            writeBuffer.putInt(position, PAYLOAD_SIZE);
+            writeBuffer.position(position + RECORD_SIZE);
+            if (forceOnAppend) {
+                writeBuffer.force(position, RECORD_SIZE);
+            }
+            appended.signalAll();
+            return new TrainingLogPosition(writeSegment, writeBuffer.position());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot roll the training log", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the records appended after the given position. Must not be called concurrently.
+     *
+     * @param from       position to read from
+     * @param maxRecords maximal number of records to read
+     * @param trainings  list the read trainings are added to
+     * @return position right after the last read record
+     */
+    TrainingLogPosition read(TrainingLogPosition from, int maxRecords, List<TrainingDto> trainings) throws IOException {
+        TrainingLogPosition end = endPosition();
+        long segment = Math.max(from.segment(), firstSegment());
+        int offset = segment == from.segment() ? from.offset() : 0;
+        int read = 0;
+        while (read < maxRecords && (segment < end.segment() || offset < end.offset())) {
+            ByteBuffer buffer = readBuffer(segment);
+            int length = offset + RECORD_SIZE > segmentSize ? ROLL_MARKER : buffer.getInt(offset);
+            if (length == ROLL_MARKER) {
+                segment++;
+                offset = 0;
+                continue;
+            }
+            if (length != PAYLOAD_SIZE) {
+                throw new IllegalStateException("Corrupted training log record at %d:%d".formatted(segment, offset));
+            }
+            ByteBuffer payload = buffer.slice(offset + HEADER_SIZE, PAYLOAD_SIZE);
+            readChecksum.reset();
+            readChecksum.update(payload);
+            if (buffer.getInt(offset + Integer.BYTES) != (int) readChecksum.getValue()) {
+                throw new IllegalStateException("Corrupted training log record at %d:%d".formatted(segment, offset));
+            }
+            payload.rewind();
+            trainings.add(decode(payload));
+            offset += RECORD_SIZE;
+            read++;
+        }
+        return new TrainingLogPosition(segment, offset);
+    }
+
+    /**
+     * Skips the record at the given position without verifying or decoding it, records have a fixed size,
+     * so even a corrupted one can be stepped over. Must not be called concurrently with {@link #read}.
+     *
+     * @param from    position to skip the record at
+     * @param records list the raw bytes of the skipped record are added to
+     * @return position right after the skipped record, or the given one if there is no record to skip
+     */
+    TrainingLogPosition skip(TrainingLogPosition from, List<byte[]> records) throws IOException {
+        TrainingLogPosition end = endPosition();
+        long segment = Math.max(from.segment(), firstSegment());
+        int offset = segment == from.segment() ? from.offset() : 0;
+        while (segment < end.segment() || offset < end.offset()) {
+            ByteBuffer buffer = readBuffer(segment);
+            if (offset + RECORD_SIZE > segmentSize || buffer.getInt(offset) == ROLL_MARKER) {
+                segment++;
+                offset = 0;
+                continue;
+            }
+            byte[] record = new byte[RECORD_SIZE];
+            buffer.get(offset, record);
+            records.add(record);
+            return new TrainingLogPosition(segment, offset + RECORD_SIZE);
+        }
+        return from;
+    }
+
+    /**
+     * Waits until a record is appended after the given position, or the timeout elapses.
+     *
+     * @param position position the caller has already read up to
+     * @param timeout  maximal time to wait
+     * @param unit     unit of the timeout
+     */
+    void awaitAppend(TrainingLogPosition position, long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            if (position.compareTo(currentPosition()) >= 0) {
+                appended.await(timeout, unit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments preceding the one of the given position, all their records have been applied.
+     *
+     * @param position position the log has been applied up to
+     */
+    void release(TrainingLogPosition position) throws IOException {
+        long first = firstSegment();
+        long upTo = Math.min(position.segment(), endPosition().segment());
+        for (long segment = first; segment < upTo; segment++) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+        if (upTo > first) {
+            lock.lock();
+            try {
+                firstSegment = upTo;
+            } finally {
+                lock.unlock();
+            }
+            log.debug("Released training log segments {}-{}", first, upTo - 1);
+        }
+    }
+
+    /**
+     * @return position of the first record still kept in the log
+     */
+    TrainingLogPosition startPosition() {
+        return new TrainingLogPosition(firstSegment(), 0);
+    }
+
+    /**
+     * @return position the next record will be appended at
+     */
+    TrainingLogPosition endPosition() {
+        lock.lock();
+        try {
+            return currentPosition();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long firstSegment() {
+        lock.lock();
+        try {
+            return firstSegment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TrainingLogPosition currentPosition() {
+        return new TrainingLogPosition(writeSegment, writeBuffer.position());
+    }
+
+    /**
+     * Finds the end of the valid records in the last segment and clears anything written past it, so a torn record
+     * cannot resurface behind the records appended from now on.
+     *
+     * @return {@code true} if the segment ends with a roll marker
+     */
+    private boolean recover() {
+        int offset = 0;
+        boolean rolled = false;
+        while (offset + RECORD_SIZE <= segmentSize) {
+            int length = writeBuffer.getInt(offset);
+            if (length == ROLL_MARKER) {
+                rolled = true;
+                break;
+            }
+            if (length != PAYLOAD_SIZE) {
+                break;
+            }
+            ByteBuffer payload = writeBuffer.slice(offset + HEADER_SIZE, PAYLOAD_SIZE);
+            writeChecksum.reset();
+            writeChecksum.update(payload);
+            if (writeBuffer.getInt(offset + Integer.BYTES) != (int) writeChecksum.getValue()) {
+                log.warn("Dropping torn training log record at {}:{}", writeSegment, offset);
+                break;
+            }
+            offset += RECORD_SIZE;
+        }
+        if (offset + RECORD_SIZE > segmentSize) {
+            rolled = true;
+        }
+        if (!rolled) {
+            for (int i = offset; i < segmentSize; i++) {
+                writeBuffer.put(i, (byte) 0);
+            }
+        }
+        writeBuffer.position(offset);
+        return rolled;
+    }
+
+    private void roll() throws IOException {
+        writeBuffer.force();
+        writeSegment++;
+        writeBuffer = map(writeSegment, FileChannel.MapMode.READ_WRITE);
+    }
+
+    private ByteBuffer readBuffer(long segment) throws IOException {
+        if (segment != readSegment) {
+            readBuffer = map(segment, FileChannel.MapMode.READ_ONLY);
+            readSegment = segment;
+        }
+        return readBuffer;
+    }
+
+    private MappedByteBuffer map(long segment, FileChannel.MapMode mode) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+        // the mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), options)) {
+            return channel.map(mode, 0, segmentSize);
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Long> segments = new ArrayList<>();
+            files.map(file -> file.getFileName().toString())
+                 .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                 .forEach(name -> segments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+            segments.sort(null);
+            return segments;
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve("%020d%s".formatted(segment, SEGMENT_SUFFIX));
+    }
+
+    private static void encode(TrainingDto training, ByteBuffer payload) {
+        payload.putLong(training.userId());
+        payload.putLong(training.startTime().getTime());
+        payload.putLong(training.endTime().getTime());
+        payload.put((byte) training.activityType().ordinal());
+        payload.putDouble(training.distance());
+        payload.putDouble(training.averageSpeed());
+    }
+
+    private static TrainingDto decode(ByteBuffer payload) {
+        long userId = payload.getLong();
+        long startTime = payload.getLong();
+        long endTime = payload.getLong();
+        ActivityType activityType = ACTIVITY_TYPES[payload.get()];
+        double distance = payload.getDouble();
+        double averageSpeed = payload.getDouble();
+        return new TrainingDto(null,
+                               userId,
+                               new Date(startTime),
+                               new Date(endTime),
+                               activityType,
+                               distance,
+                               averageSpeed,
+                               0,
+                               null);
+    }
+
+}
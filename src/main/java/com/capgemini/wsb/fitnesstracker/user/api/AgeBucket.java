@@ -0,0 +1,12 @@
+package com.capgemini.wsb.fitnesstracker.user.api;
+
+/**
+ * Number of users within an age band.
+ *
+ * @param minAge inclusive lower bound of the age, in years
+ * @param maxAge inclusive upper bound of the age, in years
+ * @param count  number of users of the age within the band
+ */
+public record AgeBucket(int minAge, int maxAge, long count) {
+
+}
@@ -8,16 +8,22 @@ import lombok.NoArgsConstructor;
 import lombok.ToString;
 
 import java.time.LocalDate;
+import java.util.Locale;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users",
+       indexes = {
+               @Index(name = "idx_users_normalized_email", columnList = "normalized_email", unique = true),
+               @Index(name = "idx_users_birthdate", columnList = "birthdate")
+       })
 @Getter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     @Nullable
     private Long id;
 
@@ -33,6 +39,12 @@ public class User {
     @Column(nullable = false, unique = true)
     private String email;
 
+    /**
+     * {@link #email} in the {@link #normalizeEmail normalized} form, the one all email lookups are done by.
+     */
+    @Column(name = "normalized_email", nullable = false)
+    private String normalizedEmail;
+
     public User(
             final String firstName,
             final String lastName,
@@ -43,7 +55,20 @@ public class User {
         this.lastName = lastName;
         this.birthdate = birthdate;
         this.email = email;
+        this.normalizedEmail = email == null ? null : normalizeEmail(email);
+    }
+
+    /**
+     * Normalizes the email for the case-insensitive lookups: surrounding whitespace is stripped and the address is
+     * lower-cased.
+     *
+     * @param email email to normalize
+     * @return normalized email
+     */
+    public static String normalizeEmail(String email) {
+        return email.strip().toLowerCase(Locale.ROOT);
     }
+
     public void setId(Long id) {
         this.id = id;
     }
@@ -0,0 +1,44 @@
+package com.capgemini.wsb.fitnesstracker.user.api;
+
+import com.capgemini.wsb.fitnesstracker.exception.api.BusinessException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Keyset position within a list of users ordered from the youngest one, i.e. the {@code (birthdate, id)} pair of
+ * the last {@link User} returned on the previous page.
+ * Textual form is {@code <birthdate>,<id>}, e.g. {@code 1990-05-17,42}.
+ *
+ * @param birthdate birthdate of the last seen user
+ * @param id        id of the last seen user, used as a tie-breaker for equal birthdates
+ */
+public record UserAgeCursor(LocalDate birthdate, Long id) {
+
+    /**
+     * Parses the {@code <birthdate>,<id>} textual form of the cursor.
+     *
+     * @param value textual cursor
+     * @return parsed cursor
+     * @throws BusinessException if the value is malformed
+     */
+    public static UserAgeCursor parse(String value) {
+        int separator = value.lastIndexOf(',');
+        if (separator < 0) {
+            throw new BusinessException("Cursor '%s' should have the <birthdate>,<id> format".formatted(value));
+        }
+        try {
+            LocalDate birthdate = LocalDate.parse(value.substring(0, separator).trim());
+            long id = Long.parseLong(value.substring(separator + 1).trim());
+            return new UserAgeCursor(birthdate, id);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new BusinessException("Cursor '%s' should have the <birthdate>,<id> format".formatted(value));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return birthdate + "," + id;
+    }
+
+}
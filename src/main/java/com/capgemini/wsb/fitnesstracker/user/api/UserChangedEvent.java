@@ -0,0 +1,29 @@
+package com.capgemini.wsb.fitnesstracker.user.api;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Application event published by the user module whenever a {@link User} is written.
+ * Allows other components (lookup directories, caches) to keep derived data in sync without querying the users again.
+ * Updates are single statements that do not read the previous state, so listeners needing it have to keep
+ * their own copy, keyed by the user id.
+ * Listeners interested only in committed changes should use {@code @TransactionalEventListener}.
+ *
+ * @param userId  id of the changed user
+ * @param current state of the user after the change, or {@code null} if the user was deleted
+ */
+public record UserChangedEvent(Long userId, @Nullable UserDto current) {
+
+    public static UserChangedEvent saved(User user) {
+        return new UserChangedEvent(user.getId(), toDto(user));
+    }
+
+    public static UserChangedEvent deleted(Long userId) {
+        return new UserChangedEvent(userId, null);
+    }
+
+    public static UserDto toDto(User user) {
+        return new UserDto(user.getId(), user.getFirstName(), user.getLastName(), user.getBirthdate(), user.getEmail());
+    }
+
+}
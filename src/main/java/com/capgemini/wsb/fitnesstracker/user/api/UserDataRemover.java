@@ -0,0 +1,24 @@
+package com.capgemini.wsb.fitnesstracker.user.api;
+
+import java.util.Collection;
+
+/**
+ * Step of the user deletion, removing the data other modules keep for the users (rows referencing {@code users}).
+ * All removers are run before the users themselves are deleted, each one repeatedly, chunk by chunk, so deleting
+ * a very active account never holds the locks of all its rows in one long transaction.
+ * <p>
+ * The removers run in their {@link org.springframework.core.annotation.Order order}, the source data (trainings)
+ * before the data derived from it.
+ */
+public interface UserDataRemover {
+
+    /**
+     * Deletes a chunk of the data of the given users with set-based statements, within its own transaction.
+     *
+     * @param userIds   ids of the deleted users
+     * @param chunkSize maximal number of rows (of the main table of the module) to delete
+     * @return number of deleted rows, less than {@code chunkSize} once nothing is left
+     */
+    int removeChunk(Collection<Long> userIds, int chunkSize);
+
+}
@@ -0,0 +1,26 @@
+package com.capgemini.wsb.fitnesstracker.user.api;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk user import.
+ *
+ * @param imported number of created users
+ * @param rejected number of rejected rows
+ * @param errors   reasons of the rejections, limited to the first {@value #MAX_REPORTED_ERRORS} rows
+ */
+public record UserImportReport(long imported, long rejected, List<RowError> errors) {
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * Reason of a rejected row.
+     *
+     * @param line    line number of the row in the imported file, starting at 1 for the header
+     * @param message reason of the rejection
+     */
+    public record RowError(long line, String message) {
+
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.capgemini.wsb.fitnesstracker.user.api;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.annotation.Nullable;
+
+import java.time.LocalDate;
+
+/**
+ * Partial update of a {@link User}. Only the non-null attributes are changed.
+ */
+public record UserPatchDto(@Nullable String firstName,
+                           @Nullable String lastName,
+                           @Nullable @JsonFormat(pattern = "yyyy-MM-dd") LocalDate birthdate,
+                           @Nullable String email) {
+
+}
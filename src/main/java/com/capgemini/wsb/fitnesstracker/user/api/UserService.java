@@ -1,6 +1,11 @@
 package com.capgemini.wsb.fitnesstracker.user.api;
 
+import com.capgemini.wsb.fitnesstracker.exception.api.ConflictException;
+import jakarta.annotation.Nullable;
+
+import java.io.Reader;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface (API) for modifying operations on {@link User} entities through the API.
@@ -10,15 +15,84 @@ public interface UserService {
 
     User createUser(User user);
 
+    /**
+     * Creates users in bulk from CSV content with a header row naming the {@code first_name}, {@code last_name},
+     * {@code birthdate} and {@code email} columns. Invalid rows are reported and skipped, the other ones are created.
+     *
+     * @param csv CSV content, read until its end
+     * @return report of the imported and rejected rows
+     */
+    UserImportReport importUsers(Reader csv);
+
     User updateUser(Long id, User user);
 
+    /**
+     * Changes only the non-null attributes of the patch.
+     *
+     * @param id    id of the user
+     * @param patch attributes to change
+     * @return patched user
+     * @throws UserNotFoundException if the user does not exist
+     * @throws ConflictException     if the patched email belongs to another user
+     */
+    User patchUser(Long id, UserPatchDto patch);
+
+    /**
+     * Deletes the user together with the trainings, statistics and other data referencing it.
+     * Does nothing if the user does not exist.
+     *
+     * @param userId id of the user
+     */
     void deleteUser(Long userId);
 
+    /**
+     * Deletes the users together with the trainings, statistics and other data referencing them.
+     * Unknown ids are ignored.
+     *
+     * @param userIds ids of the users
+     * @return number of deleted users
+     */
+    int deleteUsers(List<Long> userIds);
+
 
 
     List<User> findAllUsers();
 
+    /**
+     * Finds a page of user summaries, ordered by id.
+     *
+     * @param afterId id of the last user from the previous page, or {@code null} for the first page
+     * @param limit   maximal number of users to return
+     * @return user summaries ordered by id
+     */
+    List<UserSummaryDto> findUserSummaries(@Nullable Long afterId, int limit);
+
+    /**
+     * Passes summaries of all users one by one to the given consumer without loading them into memory at once.
+     * The summaries come ordered by id, unless the database is sharded.
+     *
+     * @param consumer consumer of the summaries, called on the calling thread
+     */
+    void streamUserSummaries(Consumer<UserSummaryDto> consumer);
+
     List<User> findByEmailContainingIgnoreCase(String email);
 
-    List<User> findUserByAgeGreaterThan(int age);
+    /**
+     * Finds a page of users of the age within {@code [minAge, maxAge]}, ordered from the youngest one.
+     *
+     * @param minAge inclusive lower bound of the age in years, or {@code null} for no lower bound
+     * @param maxAge inclusive upper bound of the age in years, or {@code null} for no upper bound
+     * @param after  position of the last user from the previous page, or {@code null} for the first page
+     * @param limit  maximal number of users to return
+     * @return users ordered from the youngest one
+     */
+    List<User> findUsersByAge(@Nullable Integer minAge, @Nullable Integer maxAge, @Nullable UserAgeCursor after, int limit);
+
+    /**
+     * Counts users per age band.
+     *
+     * @param bucketWidth width of a band in years
+     * @return bands from the youngest to the oldest user, including the empty ones in between
+     */
+    List<AgeBucket> getAgeHistogram(int bucketWidth);
 }
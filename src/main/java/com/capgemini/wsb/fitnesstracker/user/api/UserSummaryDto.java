@@ -0,0 +1,12 @@
+package com.capgemini.wsb.fitnesstracker.user.api;
+
+/**
+ * Lightweight view of a {@link User}, holding just what is needed to list and pick users.
+ *
+ * @param id        id of the user
+ * @param firstName first name of the user
+ * @param lastName  last name of the user
+ */
+public record UserSummaryDto(Long id, String firstName, String lastName) {
+
+}
@@ -0,0 +1,13 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import java.time.LocalDate;
+
+/**
+ * Projection of the number of users born on a day.
+ *
+ * @param birthdate day of birth
+ * @param count     number of users born on that day
+ */
+public record BirthdateCount(LocalDate birthdate, long count) {
+
+}
@@ -0,0 +1,178 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserChangedEvent;
+import com.capgemini.wsb.fitnesstracker.user.api.UserDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded near-cache of the users read by id, in front of the database. The cache is split into
+ * {@value #SEGMENT_COUNT} segments by the user id, each one a least recently used map guarded by its own lock,
+ * so concurrent readers of different users rarely contend. Users are kept as immutable {@link UserDto}s, every hit
+ * hands out a fresh detached {@link User}. Entries are invalidated by the committed {@link UserChangedEvent}s;
+ * a load that raced with an invalidation is not cached, so a stale user read before the commit never outlives it.
+ * Hits, misses, puts, evictions and the size are published as the {@code cache.*} metrics tagged
+ * {@code cache=users}. The size is set with the {@code user.cache.max-size} property, {@code 0} disables the cache.
+ */
+@Component
+class UserCache implements MeterBinder {
+
+    private static final int SEGMENT_BITS = 4;
+
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+
+    private static final String CACHE_NAME = "users";
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    private final boolean enabled;
+
+    /**
+     * Incremented by every invalidation, a load only caches its result if no invalidation happened since it started.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    UserCache(@Value("${user.cache.max-size:10000}") int maxSize) {
+        this.enabled = maxSize > 0;
+        int segmentCapacity = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Returns the cached user, loading and caching it on a miss. Missing users are not cached.
+     *
+     * @param userId id of the user
+     * @param loader reads the user from the database
+     * @return the user, or {@link Optional#empty()} if there is no such user
+     */
+    Optional<User> get(Long userId, Supplier<Optional<User>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Segment segment = segmentOf(userId);
+        UserDto cached;
+        synchronized (segment) {
+            cached = segment.get(userId);
+        }
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(toUser(cached));
+        }
+        misses.increment();
+        long invalidationsBefore = invalidations.get();
+        Optional<User> loaded = loader.get();
+        if (loaded.isPresent()) {
+            UserDto user = UserChangedEvent.toDto(loaded.get());
+            synchronized (segment) {
+                if (invalidations.get() == invalidationsBefore) {
+                    segment.put(userId, user);
+                    puts.increment();
+                }
+            }
+        }
+        return loaded;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        Segment segment = segmentOf(event.userId());
+        synchronized (segment) {
+            // under the lock of the segment, so a load of the same user either sees it or has not cached yet
+            invalidations.incrementAndGet();
+            segment.remove(event.userId());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                       .tags("cache", CACHE_NAME, "result", "hit")
+                       .description("Number of user lookups served from the cache")
+                       .register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                       .tags("cache", CACHE_NAME, "result", "miss")
+                       .description("Number of user lookups that went to the database")
+                       .register(registry);
+        FunctionCounter.builder("cache.puts", puts, LongAdder::sum)
+                       .tags("cache", CACHE_NAME)
+                       .description("Number of users put into the cache")
+                       .register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                       .tags("cache", CACHE_NAME)
+                       .description("Number of users evicted to keep the cache within its size")
+                       .register(registry);
+        Gauge.builder("cache.size", this, UserCache::cachedUsers)
+             .tags("cache", CACHE_NAME)
+             .description("Number of cached users")
+             .register(registry);
+    }
+
+    private double cachedUsers() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentOf(Long userId) {
+        // Fibonacci hashing, the top bits of the product are spread evenly even for consecutive ids
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> (Long.SIZE - SEGMENT_BITS))];
+    }
+
+    private static User toUser(UserDto cached) {
+        User user = new User(cached.firstName(), cached.lastName(), cached.birthdate(), cached.email());
+        user.setId(cached.id());
+        return user;
+    }
+
+    /**
+     * Least recently used map of a segment, counting its evictions.
+     */
+    private final class Segment extends LinkedHashMap<Long, UserDto> {
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(capacity * 4 / 3 + 1, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, UserDto> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
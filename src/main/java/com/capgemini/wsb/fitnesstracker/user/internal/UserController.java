@@ -1,12 +1,29 @@
 package com.capgemini.wsb.fitnesstracker.user.internal;
 
+import com.capgemini.wsb.fitnesstracker.exception.api.BusinessException;
+import com.capgemini.wsb.fitnesstracker.user.api.AgeBucket;
 import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserAgeCursor;
+import com.capgemini.wsb.fitnesstracker.user.api.UserImportReport;
 import com.capgemini.wsb.fitnesstracker.user.api.UserNotFoundException;
+import com.capgemini.wsb.fitnesstracker.user.api.UserPatchDto;
+import com.capgemini.wsb.fitnesstracker.user.api.UserSummaryDto;
+import com.capgemini.wsb.fitnesstracker.web.api.NdjsonWriter;
+import jakarta.annotation.Nullable;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.java.Log;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 @RestController
@@ -14,10 +31,18 @@ import java.util.List;
 @RequiredArgsConstructor
 class UserController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final UserServiceImpl userService;
 
     private final UserMapper userMapper;
 
+    private final NdjsonWriter ndjsonWriter;
+
     @GetMapping
     public List<UserDto> getAllUsers() {
         return userService.findAllUsers()
@@ -26,6 +51,33 @@ class UserController {
                           .toList();
     }
 
+    /**
+     * Returns a page of user summaries (id and name only), ordered by id. When the page is full, the id of its last
+     * user is returned in the {@value #NEXT_CURSOR_HEADER} header and should be passed back as the {@code after}
+     * parameter.
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<List<UserSummaryDto>> getUserSummaries(@RequestParam(required = false) Long after,
+                                                                 @RequestParam(defaultValue = "100") int limit) {
+        verifyLimit(limit);
+        List<UserSummaryDto> summaries = userService.findUserSummaries(after, limit);
+        if (summaries.size() < limit) {
+            return ResponseEntity.ok(summaries);
+        }
+        return ResponseEntity.ok()
+                             .header(NEXT_CURSOR_HEADER, summaries.get(summaries.size() - 1).id().toString())
+                             .body(summaries);
+    }
+
+    /**
+     * Streams summaries of all users as newline delimited JSON, chosen with the {@code Accept: application/x-ndjson}
+     * header. Summaries are written as they are read from the database.
+     */
+    @GetMapping(value = "/summary", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportUserSummaries(HttpServletResponse response) throws IOException {
+        ndjsonWriter.write(response, userService::streamUserSummaries);
+    }
+
     @PostMapping
     public UserDto addUser(@RequestBody UserDto userDto) throws InterruptedException {
 
@@ -35,6 +87,15 @@ class UserController {
         return userMapper.toDto(createdUser);
     }
 
+    /**
+     * Creates users from a CSV body, read as a stream without buffering it. Responds with the report of the imported
+     * and rejected rows.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public UserImportReport importUsers(HttpServletRequest request) throws IOException {
+        return userService.importUsers(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+    }
+
     @GetMapping("/{id}")
     public UserDto getUser(@PathVariable Long id) {
         return userService.getUser(id)
@@ -47,6 +108,11 @@ class UserController {
         userService.deleteUser(id);
     }
 
+    @DeleteMapping
+    public int deleteUsers(@RequestParam List<Long> ids) {
+        return userService.deleteUsers(ids);
+    }
+
     @PutMapping("/{id}")
     public UserDto updateUser(@PathVariable Long id, @RequestBody UserDto userDto) {
         User user = userMapper.toEntity(userDto);
@@ -54,6 +120,11 @@ class UserController {
         return userMapper.toDto(updatedUser);
     }
 
+    @PatchMapping("/{id}")
+    public UserDto patchUser(@PathVariable Long id, @RequestBody UserPatchDto patch) {
+        return userMapper.toDto(userService.patchUser(id, patch));
+    }
+
     @GetMapping("/search")
     public List<UserDto> searchUsersByEmail(@RequestParam String email) {
         return userService.findByEmailContainingIgnoreCase(email)
@@ -62,11 +133,74 @@ class UserController {
                 .toList();
     }
 
+    /**
+     * Returns a page of users of the age within {@code [min, max]}, youngest first. The legacy {@code age} parameter
+     * selects the users older than the given age. When the page is full, the cursor of the next page is returned in
+     * the {@value #NEXT_CURSOR_HEADER} header and should be passed back as the {@code after} parameter.
+     * <p>
+     * A request with the {@code age} parameter alone was never paginated, so it still returns all matching users,
+     * ordered by id.
+     */
     @GetMapping("/age")
-    public List<UserDto> getUsersOlderThan(@RequestParam int age) {
-        return userService.findUserByAgeGreaterThan(age)
-                .stream()
-                .map(userMapper::toDto)
-                .toList();
+    public ResponseEntity<List<UserDto>> getUsersByAge(@RequestParam(required = false) Integer age,
+                                                       @RequestParam(required = false) Integer min,
+                                                       @RequestParam(required = false) Integer max,
+                                                       @RequestParam(required = false) String after,
+                                                       @RequestParam(required = false) Integer limit) {
+        Integer minAge = age != null ? Integer.valueOf(age + 1) : min;
+        if (minAge != null && max != null && minAge > max) {
+            throw new BusinessException("Minimal age %d cannot be greater than the maximal age %d".formatted(minAge, max));
+        }
+        if (age != null && min == null && max == null && after == null && limit == null) {
+            return ResponseEntity.ok(findAllUsersByAge(minAge));
+        }
+        return getUsersByAgePage(minAge, max, after, limit == null ? DEFAULT_PAGE_SIZE : limit);
+    }
+
+    private ResponseEntity<List<UserDto>> getUsersByAgePage(@Nullable Integer minAge, @Nullable Integer max,
+                                                            @Nullable String after, int limit) {
+        verifyLimit(limit);
+        UserAgeCursor cursor = after == null ? null : UserAgeCursor.parse(after);
+        List<User> users = userService.findUsersByAge(minAge, max, cursor, limit);
+        List<UserDto> userDtos = users.stream().map(userMapper::toDto).toList();
+        if (users.size() < limit) {
+            return ResponseEntity.ok(userDtos);
+        }
+        User last = users.get(users.size() - 1);
+        return ResponseEntity.ok()
+                             .header(NEXT_CURSOR_HEADER, new UserAgeCursor(last.getBirthdate(), last.getId()).toString())
+                             .body(userDtos);
+    }
+
+    private List<UserDto> findAllUsersByAge(int minAge) {
+        List<User> users = new ArrayList<>();
+        List<User> page;
+        UserAgeCursor cursor = null;
+        do {
+            page = userService.findUsersByAge(minAge, null, cursor, MAX_PAGE_SIZE);
+            users.addAll(page);
+            if (!page.isEmpty()) {
+                User last = page.get(page.size() - 1);
+                cursor = new UserAgeCursor(last.getBirthdate(), last.getId());
+            }
+        } while (page.size() == MAX_PAGE_SIZE);
+        return users.stream()
+                    .sorted(Comparator.comparing(User::getId))
+                    .map(userMapper::toDto)
+                    .toList();
+    }
+
+    @GetMapping("/age/histogram")
+    public List<AgeBucket> getAgeHistogram(@RequestParam(defaultValue = "10") int bucket) {
+        if (bucket < 1) {
+            throw new BusinessException("Bucket width should be at least one year");
+        }
+        return userService.getAgeHistogram(bucket);
+    }
+
+    private static void verifyLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BusinessException("Limit should be between 1 and %d".formatted(MAX_PAGE_SIZE));
+        }
     }
 }
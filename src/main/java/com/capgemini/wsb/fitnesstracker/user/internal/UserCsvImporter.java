@@ -0,0 +1,313 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.exception.api.BusinessException;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserChangedEvent;
+import com.capgemini.wsb.fitnesstracker.user.api.UserImportReport;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import of users from CSV. The input is read line by line and never buffered as a whole; valid rows are
+ * collected into batches of {@value #BATCH_SIZE}, checked for already registered emails with one indexed query
+ * per batch and inserted in one transaction per batch with JDBC batching (user ids come from a pooled sequence).
+ * In the sharded storage the ids are allocated up front, the emails of a batch are registered with the
+ * {@link UserEmailRegistry} and the batch is split into one transaction per shard.
+ * The file has a header row naming the {@code first_name}, {@code last_name}, {@code birthdate} and {@code email}
+ * columns, in any order; birthdates use the {@code yyyy-MM-dd} format.
+ */
+@Component
+@Slf4j
+class UserCsvImporter {
+
+    static final int BATCH_SIZE = 1000;
+
+    private static final String[] COLUMNS = {"first_name", "last_name", "birthdate", "email"};
+
+    private final UserRepository userRepository;
+
+    private final EntityManager entityManager;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ShardRouter shardRouter;
+
+    private final UserIdAllocator userIdAllocator;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final UserEmailRegistry userEmailRegistry;
+
+    UserCsvImporter(UserRepository userRepository,
+                    EntityManager entityManager,
+                    ApplicationEventPublisher eventPublisher,
+                    ShardRouter shardRouter,
+                    UserIdAllocator userIdAllocator,
+                    NamedParameterJdbcTemplate jdbcTemplate,
+                    PlatformTransactionManager transactionManager,
+                    UserEmailRegistry userEmailRegistry) {
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.shardRouter = shardRouter;
+        this.userIdAllocator = userIdAllocator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userEmailRegistry = userEmailRegistry;
+    }
+
+    /**
+     * Imports the users from the CSV.
+     *
+     * @param csv CSV content, read until its end
+     * @return report of the imported and rejected rows
+     * @throws BusinessException if the header is missing or does not name all columns
+     */
+    UserImportReport importUsers(Reader csv) {
+        try {
+            BufferedReader reader = new BufferedReader(csv, 64 * 1024);
+            String header = reader.readLine();
+            if (header == null) {
+                throw new BusinessException("CSV should start with a header row");
+            }
+            int[] columns = resolveColumns(parseLine(header));
+
+            Report report = new Report();
+            // emails of the file are kept to reject duplicates within it, the database only sees one batch at a time
+            Set<String> fileEmails = new HashSet<>();
+            List<Row> batch = new ArrayList<>(BATCH_SIZE);
+            long line = 1;
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                try {
+                    User user = toUser(parseLine(text), columns);
+                    if (!fileEmails.add(user.getNormalizedEmail())) {
+                        throw new IllegalArgumentException("Email %s is repeated in the file".formatted(user.getEmail()));
+                    }
+                    batch.add(new Row(line, user));
+                } catch (IllegalArgumentException e) {
+                    report.reject(line, e.getMessage());
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    insert(batch, report);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                insert(batch, report);
+            }
+            log.info("Imported {} users, rejected {} rows", report.imported, report.rejected);
+            return new UserImportReport(report.imported, report.rejected, report.errors);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the imported users", e);
+        }
+    }
+
+    private void insert(List<Row> batch, Report report) {
+        if (shardRouter.shardCount() > 1) {
+            insertSharded(batch, report);
+            return;
+        }
+        List<String> emails = batch.stream().map(row -> row.user().getNormalizedEmail()).toList();
+        try {
+            List<Row> duplicates = transactionTemplate.execute(status -> {
+                Set<String> registered = new HashSet<>(userRepository.findRegisteredNormalizedEmails(emails));
+                List<Row> rejected = new ArrayList<>();
+                for (Row row : batch) {
+                    if (registered.contains(row.user().getNormalizedEmail())) {
+                        rejected.add(row);
+                        continue;
+                    }
+                    entityManager.persist(row.user());
+                    eventPublisher.publishEvent(UserChangedEvent.saved(row.user()));
+                }
+                entityManager.flush();
+                entityManager.clear();
+                return rejected;
+            });
+            for (Row duplicate : duplicates) {
+                report.reject(duplicate.line(), "User with email %s already exists".formatted(duplicate.user().getEmail()));
+            }
+            report.imported += batch.size() - duplicates.size();
+        } catch (DataAccessException | PersistenceException e) {
+            // e.g. an email registered concurrently, the whole batch was rolled back; the flush of the entity manager
+            // is not translated by Spring, so it fails with the JPA exception of the violated constraint
+            rejectRolledBack(batch, e, report);
+        }
+    }
+
+    private void insertSharded(List<Row> batch, Report report) {
+        Map<Long, String> emailsByUserId = new HashMap<>();
+        for (Row row : batch) {
+            row.user().setId(userIdAllocator.nextId());
+            emailsByUserId.put(row.user().getId(), row.user().getEmail());
+        }
+        Set<Long> taken = userEmailRegistry.registerAll(emailsByUserId);
+        List<Row> accepted = new ArrayList<>(batch.size());
+        for (Row row : batch) {
+            if (taken.contains(row.user().getId())) {
+                report.reject(row.line(), "User with email %s already exists".formatted(row.user().getEmail()));
+            } else {
+                accepted.add(row);
+            }
+        }
+        Map<Integer, List<Row>> rowsByShard = accepted.stream()
+                .collect(Collectors.groupingBy(row -> shardRouter.shardOf(row.user().getId()),
+                                               TreeMap::new,
+                                               Collectors.toList()));
+        rowsByShard.forEach((shard, rows) -> {
+            try {
+                shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> {
+                    List<User> users = rows.stream().map(Row::user).toList();
+                    jdbcTemplate.batchUpdate(UserRepository.INSERT_USER, SqlParameterSourceUtils.createBatch(users));
+                    users.forEach(user -> eventPublisher.publishEvent(UserChangedEvent.saved(user)));
+                    return null;
+                }));
+                report.imported += rows.size();
+            } catch (DataAccessException e) {
+                userEmailRegistry.releaseAll(rows.stream().map(row -> row.user().getId()).toList());
+                rejectRolledBack(rows, e, report);
+            }
+        });
+    }
+
+    private static void rejectRolledBack(List<Row> rows, RuntimeException e, Report report) {
+        log.warn("Batch of {} imported users was rolled back", rows.size(), e);
+        String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        for (Row row : rows) {
+            report.reject(row.line(), "Batch could not be stored: " + cause);
+        }
+    }
+
+    private static int[] resolveColumns(List<String> header) {
+        int[] columns = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columns[i] = -1;
+            for (int j = 0; j < header.size(); j++) {
+                if (header.get(j).strip().toLowerCase(Locale.ROOT).equals(COLUMNS[i])) {
+                    columns[i] = j;
+                }
+            }
+            if (columns[i] < 0) {
+                throw new BusinessException("CSV header should name the %s columns".formatted(String.join(", ", COLUMNS)));
+            }
+        }
+        return columns;
+    }
+
+    private static User toUser(List<String> fields, int[] columns) {
+        String firstName = field(fields, columns[0], "First name");
+        String lastName = field(fields, columns[1], "Last name");
+        String birthdateText = field(fields, columns[2], "Birthdate");
+        String email = field(fields, columns[3], "Email");
+        LocalDate birthdate;
+        try {
+            birthdate = LocalDate.parse(birthdateText);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Birthdate %s should have the yyyy-MM-dd format".formatted(birthdateText));
+        }
+        if (birthdate.isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("Birthdate %s is in the future".formatted(birthdateText));
+        }
+        int at = email.indexOf('@');
+        if (at <= 0 || at == email.length() - 1 || email.indexOf('@', at + 1) >= 0) {
+            throw new IllegalArgumentException("Email %s is not valid".formatted(email));
+        }
+        return new User(firstName, lastName, birthdate, email);
+    }
+
+    private static String field(List<String> fields, int column, String name) {
+        String value = column < fields.size() ? fields.get(column).strip() : "";
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        return value;
+    }
+
+    /**
+     * Splits a CSV line into fields. Fields may be enclosed in double quotes, with a quote inside escaped
+     * by doubling it; quoted fields cannot span multiple lines.
+     */
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>(COLUMNS.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char current = line.charAt(i);
+            if (quoted) {
+                if (current != '"') {
+                    field.append(current);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (current == '"') {
+                quoted = true;
+            } else if (current == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(current);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Quoted field is not terminated");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private record Row(long line, User user) {
+
+    }
+
+    private static final class Report {
+
+        private final List<UserImportReport.RowError> errors = new ArrayList<>();
+        private long imported;
+        private long rejected;
+
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < UserImportReport.MAX_REPORTED_ERRORS) {
+                errors.add(new UserImportReport.RowError(line, message));
+            }
+        }
+
+    }
+
+}
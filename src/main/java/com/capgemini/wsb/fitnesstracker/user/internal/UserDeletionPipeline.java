@@ -0,0 +1,91 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.user.api.UserChangedEvent;
+import com.capgemini.wsb.fitnesstracker.user.api.UserDataRemover;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deletes users together with everything referencing them. The users are processed shard by shard, in groups of
+ * {@value #CHUNK_SIZE}; for every group each {@link UserDataRemover} is run chunk by chunk, each chunk in its own
+ * short transaction, and only then the users themselves are deleted with a single statement and their emails are
+ * released in the {@link UserEmailRegistry}.
+ * An interrupted deletion leaves the users in place and can simply be repeated.
+ */
+@Component
+@Slf4j
+class UserDeletionPipeline {
+
+    static final int CHUNK_SIZE = 1000;
+
+    private final List<UserDataRemover> removers;
+
+    private final UserRepository userRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ShardRouter shardRouter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final UserEmailRegistry userEmailRegistry;
+
+    UserDeletionPipeline(List<UserDataRemover> removers,
+                         UserRepository userRepository,
+                         ApplicationEventPublisher eventPublisher,
+                         ShardRouter shardRouter,
+                         PlatformTransactionManager transactionManager,
+                         UserEmailRegistry userEmailRegistry) {
+        this.removers = removers;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userEmailRegistry = userEmailRegistry;
+    }
+
+    /**
+     * Deletes the given users with all their data. Unknown ids are ignored.
+     *
+     * @param userIds ids of the users to delete
+     * @return number of deleted users
+     */
+    int delete(Collection<Long> userIds) {
+        List<Long> distinctIds = userIds.stream().distinct().toList();
+        int deleted = 0;
+        for (Map.Entry<Integer, List<Long>> shardUsers : shardRouter.groupByShard(distinctIds).entrySet()) {
+            deleted += shardRouter.onShard(shardUsers.getKey(), () -> deleteOnShard(shardUsers.getValue()));
+        }
+        log.info("Deleted {} of {} requested users", deleted, distinctIds.size());
+        return deleted;
+    }
+
+    private int deleteOnShard(List<Long> userIds) {
+        int deleted = 0;
+        for (int from = 0; from < userIds.size(); from += CHUNK_SIZE) {
+            List<Long> group = userIds.subList(from, Math.min(from + CHUNK_SIZE, userIds.size()));
+            for (UserDataRemover remover : removers) {
+                int removed;
+                do {
+                    removed = transactionTemplate.execute(status -> remover.removeChunk(group, CHUNK_SIZE));
+                } while (removed >= CHUNK_SIZE);
+            }
+            deleted += transactionTemplate.execute(status -> {
+                int deletedUsers = userRepository.deleteByIds(group);
+                group.forEach(userId -> eventPublisher.publishEvent(UserChangedEvent.deleted(userId)));
+                return deletedUsers;
+            });
+            userEmailRegistry.releaseAll(group);
+        }
+        return deleted;
+    }
+
+}
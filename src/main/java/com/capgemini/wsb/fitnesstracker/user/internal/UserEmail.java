@@ -0,0 +1,11 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+/**
+ * Projection of the user's normalized email.
+ *
+ * @param id              id of the user
+ * @param normalizedEmail email of the user in the normalized form
+ */
+public record UserEmail(Long id, String normalizedEmail) {
+
+}
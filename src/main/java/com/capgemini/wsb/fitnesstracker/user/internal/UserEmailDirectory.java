@@ -0,0 +1,210 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import com.capgemini.wsb.fitnesstracker.collection.api.LongIntHashMap;
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserChangedEvent;
+import com.capgemini.wsb.fitnesstracker.user.api.UserDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional in-memory directory of the normalized emails of all users, mapping them to the user ids.
+ * Loaded once the application is ready and then kept in sync with the committed {@link UserChangedEvent}s,
+ * so an email lookup, including one of an unknown email, needs no database round-trip.
+ * The directory is an open addressing table of primitive ids; a lookup hashes and compares the given email
+ * character by character, lower-casing on the fly, so an ASCII email is looked up without allocating.
+ * The slot of every user is kept in a primitive map, so the previous email of a changed user is found in the table
+ * itself, without a second copy of the emails.
+ * Enabled with the {@code user.email-directory.enabled} property.
+ */
+@Component
+@ConditionalOnProperty(name = "user.email-directory.enabled", havingValue = "true")
+@Slf4j
+class UserEmailDirectory {
+
+    static final long NO_USER = -1L;
+
+    private static final int MIN_CAPACITY = 1024;
+
+    private final UserRepository userRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private LongIntHashMap slotsByUserId = new LongIntHashMap(MIN_CAPACITY);
+
+    private volatile boolean loaded;
+
+    private String[] emails = new String[MIN_CAPACITY];
+
+    private long[] userIds = new long[MIN_CAPACITY];
+
+    private int size;
+
+    UserEmailDirectory(UserRepository userRepository, ShardRouter shardRouter) {
+        this.userRepository = userRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            shardRouter.findOnEveryShard(userRepository::findAllEmails)
+                       .forEach(user -> put(user.normalizedEmail(), user.id()));
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Loaded {} emails into the user email directory", size);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            int previousSlot = slotsByUserId.remove(event.userId());
+            if (previousSlot != LongIntHashMap.NO_VALUE) {
+                removeSlot(previousSlot);
+            }
+            UserDto current = event.current();
+            if (current != null) {
+                put(User.normalizeEmail(current.email()), current.id());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} once the directory holds all users and can answer lookups
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Looks up the user by the email, case-insensitively and ignoring surrounding whitespace.
+     *
+     * @param email email to look up
+     * @return id of the user or {@link #NO_USER} if no user has the email
+     */
+    long findUserId(String email) {
+        int start = 0;
+        int end = email.length();
+        while (start < end && Character.isWhitespace(email.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(email.charAt(end - 1))) {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            if (email.charAt(i) >= 128) {
+                // lower-casing outside of ASCII may change the length, compare the fully normalized form
+                String normalized = User.normalizeEmail(email);
+                return findUserId(normalized, 0, normalized.length());
+            }
+        }
+        return findUserId(email, start, end);
+    }
+
+    private long findUserId(String email, int start, int end) {
+        lock.readLock().lock();
+        try {
+            int mask = emails.length - 1;
+            for (int slot = hash(email, start, end) & mask; emails[slot] != null; slot = (slot + 1) & mask) {
+                if (matches(emails[slot], email, start, end)) {
+                    return userIds[slot];
+                }
+            }
+            return NO_USER;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(String normalizedEmail, long userId) {
+        if (2 * (size + 1) > emails.length) {
+            resize(emails.length * 2);
+        }
+        int mask = emails.length - 1;
+        int slot = hash(normalizedEmail, 0, normalizedEmail.length()) & mask;
+        while (emails[slot] != null) {
+            if (emails[slot].equals(normalizedEmail)) {
+                // the email moved to another user, the previous one no longer has any
+                if (userIds[slot] != userId) {
+                    slotsByUserId.remove(userIds[slot]);
+                }
+                userIds[slot] = userId;
+                slotsByUserId.put(userId, slot);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        emails[slot] = normalizedEmail;
+        userIds[slot] = userId;
+        slotsByUserId.put(userId, slot);
+        size++;
+    }
+
+    private void removeSlot(int slot) {
+        int mask = emails.length - 1;
+        // backward shift deletion, keeps the probe sequences intact without tombstones
+        int gap = slot;
+        for (int next = (gap + 1) & mask; emails[next] != null; next = (next + 1) & mask) {
+            int home = hash(emails[next], 0, emails[next].length()) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                emails[gap] = emails[next];
+                userIds[gap] = userIds[next];
+                slotsByUserId.put(userIds[gap], gap);
+                gap = next;
+            }
+        }
+        emails[gap] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        String[] oldEmails = emails;
+        long[] oldUserIds = userIds;
+        emails = new String[capacity];
+        userIds = new long[capacity];
+        slotsByUserId = new LongIntHashMap(capacity / 2);
+        size = 0;
+        for (int i = 0; i < oldEmails.length; i++) {
+            if (oldEmails[i] != null) {
+                put(oldEmails[i], oldUserIds[i]);
+            }
+        }
+    }
+
+    private static int hash(String email, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + Character.toLowerCase(email.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String normalizedEmail, String email, int start, int end) {
+        if (normalizedEmail.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (normalizedEmail.charAt(i - start) != Character.toLowerCase(email.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
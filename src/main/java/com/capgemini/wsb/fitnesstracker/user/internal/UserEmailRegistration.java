@@ -0,0 +1,37 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Normalized email taken by a user in the sharded storage. Kept on the first shard only, where its primary key makes
+ * the emails unique across all shards, see {@link UserEmailRegistry}.
+ */
+@Entity
+@Table(name = "user_email_registrations",
+       indexes = @Index(name = "idx_user_email_registrations_user_id", columnList = "user_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+class UserEmailRegistration {
+
+    @Id
+    @Column(name = "normalized_email")
+    private String normalizedEmail;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "registered_at", nullable = false)
+    private Instant registeredAt;
+
+}
@@ -0,0 +1,282 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.exception.api.ConflictException;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import jakarta.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Single authority of the email uniqueness in the sharded storage, where the unique index of {@code users} guards
+ * a shard only. An email is registered for the user in the {@link UserEmailRegistration}s of the first shard before
+ * the user is stored with it, and released once the user no longer has it, so of two concurrent flows taking the same
+ * email only one gets past the registration.
+ * <p>
+ * A flow interrupted between the registration and the change of the user leaves a registration its user does not
+ * hold. Such a registration is taken over by the next user registering the email, once it is older than
+ * {@link #GRACE_PERIOD} (the time a flow is given to finish).
+ * <p>
+ * With a single shard the unique index is the authority and the methods do nothing.
+ */
+@Component
+@Slf4j
+class UserEmailRegistry {
+
+    static final Duration GRACE_PERIOD = Duration.ofMinutes(1);
+
+    private static final int REGISTRY_SHARD = 0;
+
+    private static final String INSERT_REGISTRATION = """
+            insert into user_email_registrations (normalized_email, user_id, registered_at)
+            values (:normalizedEmail, :userId, :registeredAt)
+            """;
+
+    private static final String FIND_REGISTRATION =
+            "select user_id, registered_at from user_email_registrations where normalized_email = :normalizedEmail";
+
+    private static final String FIND_REGISTERED =
+            "select normalized_email from user_email_registrations where normalized_email in (:normalizedEmails)";
+
+    private static final String TAKE_OVER_REGISTRATION = """
+            update user_email_registrations set user_id = :userId, registered_at = :registeredAt
+            where normalized_email = :normalizedEmail and user_id = :previousUserId
+            """;
+
+    private static final String DELETE_REGISTRATION =
+            "delete from user_email_registrations where normalized_email = :normalizedEmail and user_id = :userId";
+
+    private static final String DELETE_OTHER_REGISTRATIONS =
+            "delete from user_email_registrations where user_id = :userId and normalized_email <> :normalizedEmail";
+
+    private static final String DELETE_USERS_REGISTRATIONS =
+            "delete from user_email_registrations where user_id in (:userIds)";
+
+    private final ShardRouter shardRouter;
+
+    private final UserRepository userRepository;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate newTransaction;
+
+    UserEmailRegistry(ShardRouter shardRouter,
+                      UserRepository userRepository,
+                      NamedParameterJdbcTemplate jdbcTemplate,
+                      PlatformTransactionManager transactionManager) {
+        this.shardRouter = shardRouter;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        // the registrations commit on their own, whatever shard the transaction of the caller is bound to
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Registers the email for the user, unless it already is.
+     *
+     * @param userId id of the user
+     * @param email  email the user is about to be stored with
+     * @throws ConflictException if another user has the email
+     */
+    void register(long userId, String email) {
+        if (shardRouter.shardCount() == 1) {
+            return;
+        }
+        String normalizedEmail = User.normalizeEmail(email);
+        if (insert(userId, normalizedEmail)) {
+            return;
+        }
+        Registration current = onRegistryShard(() -> findRegistration(normalizedEmail));
+        if (current == null) {
+            // released meanwhile
+            if (insert(userId, normalizedEmail)) {
+                return;
+            }
+            throw emailTaken(email);
+        }
+        if (current.userId() == userId) {
+            return;
+        }
+        if (!isAbandoned(current, normalizedEmail) || !takeOver(current, userId, normalizedEmail)) {
+            throw emailTaken(email);
+        }
+        log.info("User {} took over the email registration abandoned by user {}", userId, current.userId());
+    }
+
+    /**
+     * Registers the emails of many new users at once.
+     *
+     * @param emailsByUserId emails the users are about to be stored with, by the ids of the users
+     * @return ids of the users whose emails belong to other users
+     */
+    Set<Long> registerAll(Map<Long, String> emailsByUserId) {
+        if (shardRouter.shardCount() == 1 || emailsByUserId.isEmpty()) {
+            return Set.of();
+        }
+        List<String> normalizedEmails = emailsByUserId.values().stream().map(User::normalizeEmail).toList();
+        Set<String> registered = onRegistryShard(() -> new HashSet<>(jdbcTemplate.queryForList(
+                FIND_REGISTERED, Map.of("normalizedEmails", normalizedEmails), String.class)));
+        List<MapSqlParameterSource> registrations = new ArrayList<>(emailsByUserId.size());
+        // the taken ones and, should the batch fail, all of them, are registered one by one
+        List<Long> oneByOne = new ArrayList<>();
+        emailsByUserId.forEach((userId, email) -> {
+            String normalizedEmail = User.normalizeEmail(email);
+            if (registered.contains(normalizedEmail)) {
+                oneByOne.add(userId);
+            } else {
+                registrations.add(registrationParameters(userId, normalizedEmail));
+            }
+        });
+        try {
+            onRegistryShard(() -> jdbcTemplate.batchUpdate(INSERT_REGISTRATION,
+                                                           registrations.toArray(MapSqlParameterSource[]::new)));
+        } catch (DuplicateKeyException e) {
+            // registered concurrently, or twice within the batch
+            oneByOne.clear();
+            oneByOne.addAll(emailsByUserId.keySet());
+        }
+        Set<Long> rejected = new HashSet<>();
+        for (Long userId : oneByOne) {
+            try {
+                register(userId, emailsByUserId.get(userId));
+            } catch (ConflictException e) {
+                rejected.add(userId);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Releases the email registered for the user, e.g. when storing the user failed.
+     */
+    void release(long userId, String email) {
+        if (shardRouter.shardCount() == 1) {
+            return;
+        }
+        onRegistryShard(() -> jdbcTemplate.update(DELETE_REGISTRATION, new MapSqlParameterSource()
+                .addValue("normalizedEmail", User.normalizeEmail(email))
+                .addValue("userId", userId)));
+    }
+
+    /**
+     * Releases the emails registered for the user other than the given one, once the current transaction (changing
+     * the email of the user) commits.
+     *
+     * @param userId id of the user
+     * @param email  current email of the user
+     */
+    void releasePreviousAfterCommit(long userId, String email) {
+        if (shardRouter.shardCount() == 1) {
+            return;
+        }
+        Runnable releasePrevious = () -> onRegistryShard(() -> jdbcTemplate.update(
+                DELETE_OTHER_REGISTRATIONS, new MapSqlParameterSource()
+                        .addValue("userId", userId)
+                        .addValue("normalizedEmail", User.normalizeEmail(email))));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            releasePrevious.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                releasePrevious.run();
+            }
+        });
+    }
+
+    /**
+     * Releases the emails of the deleted users.
+     *
+     * @param userIds ids of the deleted users
+     */
+    void releaseAll(Collection<Long> userIds) {
+        if (shardRouter.shardCount() == 1 || userIds.isEmpty()) {
+            return;
+        }
+        onRegistryShard(() -> jdbcTemplate.update(DELETE_USERS_REGISTRATIONS, Map.of("userIds", userIds)));
+    }
+
+    /**
+     * @return {@code false} if the email is already registered
+     */
+    private boolean insert(long userId, String normalizedEmail) {
+        try {
+            onRegistryShard(() -> jdbcTemplate.update(INSERT_REGISTRATION,
+                                                      registrationParameters(userId, normalizedEmail)));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Nullable
+    private Registration findRegistration(String normalizedEmail) {
+        List<Registration> registrations = jdbcTemplate.query(
+                FIND_REGISTRATION,
+                Map.of("normalizedEmail", normalizedEmail),
+                (resultSet, row) -> new Registration(resultSet.getLong("user_id"),
+                                                     resultSet.getTimestamp("registered_at").toInstant()));
+        return registrations.isEmpty() ? null : registrations.get(0);
+    }
+
+    /**
+     * @return {@code true} if the registration is past the grace period and its user does not have the email
+     */
+    private boolean isAbandoned(Registration registration, String normalizedEmail) {
+        if (registration.registeredAt().isAfter(Instant.now().minus(GRACE_PERIOD))) {
+            return false;
+        }
+        Optional<User> owner = shardRouter.onShardOf(
+                registration.userId(),
+                () -> newTransaction.execute(status -> userRepository.findById(registration.userId())));
+        return owner.map(user -> !user.getNormalizedEmail().equals(normalizedEmail)).orElse(true);
+    }
+
+    private boolean takeOver(Registration abandoned, long userId, String normalizedEmail) {
+        return onRegistryShard(() -> jdbcTemplate.update(
+                TAKE_OVER_REGISTRATION, registrationParameters(userId, normalizedEmail)
+                        .addValue("previousUserId", abandoned.userId()))) == 1;
+    }
+
+    private <T> T onRegistryShard(Supplier<T> action) {
+        return shardRouter.onShard(REGISTRY_SHARD, () -> newTransaction.execute(status -> action.get()));
+    }
+
+    private static MapSqlParameterSource registrationParameters(long userId, String normalizedEmail) {
+        return new MapSqlParameterSource()
+                .addValue("normalizedEmail", normalizedEmail)
+                .addValue("userId", userId)
+                .addValue("registeredAt", Timestamp.from(Instant.now()));
+    }
+
+    private static ConflictException emailTaken(String email) {
+        return new ConflictException("User with email %s already exists".formatted(email));
+    }
+
+    private record Registration(long userId, Instant registeredAt) {
+
+    }
+
+}
@@ -0,0 +1,304 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import com.capgemini.wsb.fitnesstracker.collection.api.LongIntHashMap;
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram inverted index over the normalized emails of all users, serving the case-insensitive substring search.
+ * Every user gets a dense row number, and every trigram of an email maps to a posting list of the rows containing
+ * it, kept as a sorted {@code int[]}. Rows of removed users are reused by the next added ones, and both the rows
+ * and the posting lists are found through primitive maps, so the index stays as large as the number of users.
+ * A query of at least three characters intersects the posting lists of its trigrams, starting from the shortest
+ * one, and verifies only the remaining candidates; shorter queries scan the emails directly. The index is built
+ * once the application is ready and then kept in sync with the committed {@link UserChangedEvent}s.
+ */
+@Component
+@Slf4j
+class UserEmailSearchIndex {
+
+    private static final int GRAM_SIZE = 3;
+
+    private static final int REMOVED = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final UserRepository userRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongIntHashMap postingIdsByGram = new LongIntHashMap(INITIAL_CAPACITY);
+
+    private final LongIntHashMap rowsByUserId = new LongIntHashMap(INITIAL_CAPACITY);
+
+    private volatile boolean loaded;
+
+    private PostingList[] postings = new PostingList[INITIAL_CAPACITY];
+
+    private long[] userIds = new long[INITIAL_CAPACITY];
+
+    private String[] emails = new String[INITIAL_CAPACITY];
+
+    private int rowCount;
+
+    /**
+     * Rows of the removed users, reused before appending new ones.
+     */
+    private int[] freeRows = new int[16];
+
+    private int freeRowCount;
+
+    UserEmailSearchIndex(UserRepository userRepository, ShardRouter shardRouter) {
+        this.userRepository = userRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            shardRouter.findOnEveryShard(userRepository::findAllEmails)
+                       .forEach(user -> add(user.id(), user.normalizedEmail()));
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Indexed {} user emails with {} trigrams", rowsByUserId.size(), postingIdsByGram.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            remove(event.userId());
+            if (event.current() != null) {
+                add(event.current().id(), User.normalizeEmail(event.current().email()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} once the index holds all users and can answer searches
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return number of the rows allocated so far, of both the indexed and the removed users
+     */
+    int rowCount() {
+        lock.readLock().lock();
+        try {
+            return rowCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the users whose email contains the given fragment, ignoring case.
+     *
+     * @param fragment fragment of the email
+     * @return ids of the matching users, in ascending order
+     */
+    long[] search(String fragment) {
+        String normalized = fragment.toLowerCase(Locale.ROOT);
+        lock.readLock().lock();
+        try {
+            if (normalized.length() < GRAM_SIZE) {
+                return scan(normalized);
+            }
+            int[] candidates = intersect(normalized);
+            long[] matches = new long[candidates.length];
+            int count = 0;
+            for (int row : candidates) {
+                if (emails[row].contains(normalized)) {
+                    matches[count++] = userIds[row];
+                }
+            }
+            long[] result = Arrays.copyOf(matches, count);
+            Arrays.sort(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long[] scan(String fragment) {
+        long[] matches = new long[16];
+        int count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (emails[row] != null && emails[row].contains(fragment)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = userIds[row];
+            }
+        }
+        long[] result = Arrays.copyOf(matches, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int[] intersect(String fragment) {
+        int gramCount = fragment.length() - GRAM_SIZE + 1;
+        PostingList[] lists = new PostingList[gramCount];
+        for (int i = 0; i < gramCount; i++) {
+            int postingId = postingIdsByGram.get(gram(fragment, i));
+            if (postingId == LongIntHashMap.NO_VALUE || postings[postingId].size == 0) {
+                return new int[0];
+            }
+            lists[i] = postings[postingId];
+        }
+        Arrays.sort(lists, (first, second) -> Integer.compare(first.size, second.size));
+
+        int[] result = Arrays.copyOf(lists[0].rows, lists[0].size);
+        int size = result.length;
+        for (int i = 1; i < lists.length && size > 0; i++) {
+            if (lists[i] == lists[i - 1]) {
+                continue;
+            }
+            size = retainAll(result, size, lists[i]);
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Keeps in {@code rows} only the ones present in the posting list, galloping through the (longer) posting list.
+     *
+     * @return number of the retained rows
+     */
+    private static int retainAll(int[] rows, int size, PostingList list) {
+        int retained = 0;
+        int from = 0;
+        for (int i = 0; i < size && from < list.size; i++) {
+            int row = rows[i];
+            int bound = 1;
+            while (from + bound < list.size && list.rows[from + bound] < row) {
+                bound <<= 1;
+            }
+            int position = Arrays.binarySearch(list.rows, from, Math.min(from + bound + 1, list.size), row);
+            if (position >= 0) {
+                rows[retained++] = row;
+                from = position + 1;
+            } else {
+                from = -position - 1;
+            }
+        }
+        return retained;
+    }
+
+    private void add(long userId, String normalizedEmail) {
+        int row = allocateRow();
+        userIds[row] = userId;
+        emails[row] = normalizedEmail;
+        rowsByUserId.put(userId, row);
+        for (int i = 0; i + GRAM_SIZE <= normalizedEmail.length(); i++) {
+            posting(gram(normalizedEmail, i)).insert(row);
+        }
+    }
+
+    private void remove(long userId) {
+        int row = rowsByUserId.remove(userId);
+        if (row == LongIntHashMap.NO_VALUE) {
+            return;
+        }
+        String email = emails[row];
+        for (int i = 0; i + GRAM_SIZE <= email.length(); i++) {
+            int postingId = postingIdsByGram.get(gram(email, i));
+            if (postingId != LongIntHashMap.NO_VALUE) {
+                postings[postingId].remove(row);
+            }
+        }
+        userIds[row] = REMOVED;
+        emails[row] = null;
+        if (freeRowCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeRowCount * 2);
+        }
+        freeRows[freeRowCount++] = row;
+    }
+
+    private int allocateRow() {
+        if (freeRowCount > 0) {
+            return freeRows[--freeRowCount];
+        }
+        if (rowCount == userIds.length) {
+            userIds = Arrays.copyOf(userIds, rowCount * 2);
+            emails = Arrays.copyOf(emails, rowCount * 2);
+        }
+        return rowCount++;
+    }
+
+    /**
+     * Posting list of the trigram, created on its first use. Emptied lists are kept for the next email with
+     * the trigram, their number is bounded by the trigrams of the email alphabet.
+     */
+    private PostingList posting(long gram) {
+        int postingId = postingIdsByGram.get(gram);
+        if (postingId == LongIntHashMap.NO_VALUE) {
+            postingId = postingIdsByGram.size();
+            if (postingId == postings.length) {
+                postings = Arrays.copyOf(postings, postingId * 2);
+            }
+            postings[postingId] = new PostingList();
+            postingIdsByGram.put(gram, postingId);
+        }
+        return postings[postingId];
+    }
+
+    private static long gram(String text, int offset) {
+        return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) | text.charAt(offset + 2);
+    }
+
+    /**
+     * Sorted list of the rows containing a trigram.
+     */
+    private static final class PostingList {
+
+        private int[] rows = new int[4];
+        private int size;
+
+        private void insert(int row) {
+            // rows are appended in order while loading, only reused rows land in the middle
+            int position = size == 0 || rows[size - 1] < row ? size : Arrays.binarySearch(rows, 0, size, row);
+            if (position >= 0 && position < size) {
+                return;
+            }
+            if (position < 0) {
+                position = -position - 1;
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            System.arraycopy(rows, position, rows, position + 1, size - position);
+            rows[position] = row;
+            size++;
+        }
+
+        private void remove(int row) {
+            int position = Arrays.binarySearch(rows, 0, size, row);
+            if (position >= 0) {
+                System.arraycopy(rows, position + 1, rows, position, size - position - 1);
+                size--;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Allocates the ids of users created in the sharded storage, where the id picks the shard and so has to be known
+ * before the insert. The ids are taken in blocks from the {@code users_seq} sequence of the first shard, the same
+ * way Hibernate's pooled optimizer reads it (a sequence value is the upper end of a block), so they never collide
+ * with the ids Hibernate generates from that sequence.
+ */
+@Component
+class UserIdAllocator {
+
+    /**
+     * {@code allocationSize} of the {@code users_seq} sequence.
+     */
+    private static final int BLOCK_SIZE = 50;
+
+    private final UserRepository userRepository;
+
+    private final ShardRouter shardRouter;
+
+    private long nextId = 1;
+
+    private long lastId = 0;
+
+    UserIdAllocator(UserRepository userRepository, ShardRouter shardRouter) {
+        this.userRepository = userRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    synchronized long nextId() {
+        if (nextId > lastId) {
+            long blockEnd = shardRouter.onShard(0, userRepository::nextUserIdBlock);
+            // the first value of the sequence opens no full block below it
+            nextId = Math.max(1, blockEnd - BLOCK_SIZE + 1);
+            lastId = blockEnd;
+        }
+        return nextId++;
+    }
+
+}
@@ -1,26 +1,220 @@
 package com.capgemini.wsb.fitnesstracker.user.internal;
 
 import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserSummaryDto;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.stereotype.Repository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     /**
-     * Query searching users by email address. It matches by exact match.
+     * Query searching users by email address. It matches case-insensitively, ignoring surrounding whitespace.
      *
      * @param email email of the user to search
      * @return {@link Optional} containing found user or {@link Optional#empty()} if none matched
      */
     default Optional<User> findByEmail(String email) {
-        return findAll().stream()
-                        .filter(user -> Objects.equals(user.getEmail(), email))
-                        .findFirst();
+        return findByNormalizedEmail(User.normalizeEmail(email));
     }
 
+    /**
+     * Query searching users by the normalized email. Backed by the unique {@code normalized_email} index.
+     *
+     * @param normalizedEmail email in the {@link User#normalizeEmail normalized} form
+     * @return {@link Optional} containing found user or {@link Optional#empty()} if none matched
+     */
+    Optional<User> findByNormalizedEmail(String normalizedEmail);
+
+    /**
+     * Query returning which of the given normalized emails are already registered. Backed by the unique
+     * {@code normalized_email} index.
+     *
+     * @param normalizedEmails emails in the {@link User#normalizeEmail normalized} form
+     * @return registered emails among the given ones
+     */
+    @Query("select u.normalizedEmail from User u where u.normalizedEmail in :normalizedEmails")
+    List<String> findRegisteredNormalizedEmails(@Param("normalizedEmails") Collection<String> normalizedEmails);
+
+    /**
+     * Query searching users by a fragment of the normalized email.
+     *
+     * @param fragment lower-cased fragment of the email
+     * @return users whose email contains the fragment, ordered by id
+     */
+    List<User> findByNormalizedEmailContainingOrderById(String fragment);
+
+    /**
+     * Native insert of a user with an already allocated id, in the form of both a named parameter query and
+     * a {@code BeanPropertySqlParameterSource} statement.
+     */
+    String INSERT_USER = """
+            insert into users (id, first_name, last_name, birthdate, email, normalized_email)
+            values (:id, :firstName, :lastName, :birthdate, :email, :normalizedEmail)
+            """;
+
+    /**
+     * Inserts a user with an already allocated id, as the sharded storage has to know the id before the insert.
+     *
+     * @return number of inserted rows
+     */
+    @Modifying
+    @Transactional
+    @Query(value = INSERT_USER, nativeQuery = true)
+    int insertUser(@Param("id") Long id,
+                   @Param("firstName") String firstName,
+                   @Param("lastName") String lastName,
+                   @Param("birthdate") LocalDate birthdate,
+                   @Param("email") String email,
+                   @Param("normalizedEmail") String normalizedEmail);
+
+    /**
+     * Takes the next value of the {@code users_seq} sequence, the upper end of a block of user ids.
+     *
+     * @return next value of the sequence
+     */
+    @Query(value = "select next value for users_seq", nativeQuery = true)
+    Long nextUserIdBlock();
+
+    /**
+     * Overwrites all attributes of the user with a single {@code UPDATE} statement, without loading the entity.
+     *
+     * @return number of updated rows, {@code 0} if the user does not exist
+     */
+    @Modifying
+    @Query("""
+            update User u
+            set u.firstName = :firstName, u.lastName = :lastName, u.birthdate = :birthdate,
+                u.email = :email, u.normalizedEmail = :normalizedEmail
+            where u.id = :id
+            """)
+    int updateUser(@Param("id") Long id,
+                   @Param("firstName") String firstName,
+                   @Param("lastName") String lastName,
+                   @Param("birthdate") LocalDate birthdate,
+                   @Param("email") String email,
+                   @Param("normalizedEmail") String normalizedEmail);
+
+    /**
+     * Deletes the given users with a single statement, bypassing the persistence context.
+     * Data referencing the users has to be removed first.
+     *
+     * @param ids ids of the users
+     * @return number of deleted users
+     */
+    @Modifying
+    @Query("delete from User u where u.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Query returning the first page of users born within {@code (bornAfter, bornOnOrBefore]}, ordered from
+     * the youngest one. Backed by the {@code birthdate} index.
+     *
+     * @param bornAfter      exclusive lower bound of the birthdate
+     * @param bornOnOrBefore inclusive upper bound of the birthdate
+     * @param pageable       page size (only the first page is meaningful, consecutive pages should use the keyset query)
+     * @return users ordered from the youngest one
+     */
+    @Query("""
+            select u from User u
+            where u.birthdate > :bornAfter and u.birthdate <= :bornOnOrBefore
+            order by u.birthdate desc, u.id desc
+            """)
+    List<User> findFirstPageBornBetween(@Param("bornAfter") LocalDate bornAfter,
+                                        @Param("bornOnOrBefore") LocalDate bornOnOrBefore,
+                                        Pageable pageable);
+
+    /**
+     * Keyset query returning users born within {@code (bornAfter, bornOnOrBefore]} after the given
+     * {@code (birthdate, id)} position, ordered from the youngest one.
+     *
+     * @param bornAfter      exclusive lower bound of the birthdate
+     * @param bornOnOrBefore inclusive upper bound of the birthdate
+     * @param birthdate      birthdate of the last user from the previous page
+     * @param id             id of the last user from the previous page
+     * @param pageable       page size (only the first page is meaningful)
+     * @return users ordered from the youngest one
+     */
+    @Query("""
+            select u from User u
+            where u.birthdate > :bornAfter and u.birthdate <= :bornOnOrBefore
+              and (u.birthdate < :birthdate or (u.birthdate = :birthdate and u.id < :id))
+            order by u.birthdate desc, u.id desc
+            """)
+    List<User> findPageBornBetweenAfter(@Param("bornAfter") LocalDate bornAfter,
+                                        @Param("bornOnOrBefore") LocalDate bornOnOrBefore,
+                                        @Param("birthdate") LocalDate birthdate,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
+
+    /**
+     * Aggregate query counting users per birthdate. The result has at most one row per calendar day, however many
+     * users there are.
+     *
+     * @return number of users born on every day having at least one user born
+     */
+    @Query("""
+            select new com.capgemini.wsb.fitnesstracker.user.internal.BirthdateCount(u.birthdate, count(u))
+            from User u
+            group by u.birthdate
+            """)
+    List<BirthdateCount> countByBirthdate();
+
+    /**
+     * Select clause projecting users directly into {@link UserSummaryDto}s, reading only the id and name columns.
+     */
+    String SELECT_SUMMARY = """
+            select new com.capgemini.wsb.fitnesstracker.user.api.UserSummaryDto(u.id, u.firstName, u.lastName)
+            from User u
+            """;
+
+    /**
+     * Query returning the first page of user summaries.
+     *
+     * @param pageable page size (only the first page is meaningful, consecutive pages should use the keyset query)
+     * @return user summaries ordered by id
+     */
+    @Query(SELECT_SUMMARY + "order by u.id")
+    List<UserSummaryDto> findFirstSummaryPage(Pageable pageable);
+
+    /**
+     * Keyset query returning summaries of the users with an id greater than the given one.
+     *
+     * @param id       id of the last user from the previous page
+     * @param pageable page size (only the first page is meaningful)
+     * @return user summaries ordered by id
+     */
+    @Query(SELECT_SUMMARY + "where u.id > :id order by u.id")
+    List<UserSummaryDto> findSummaryPageAfter(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Query streaming summaries of all users over a server-side cursor.
+     * Must be consumed within a transaction and closed afterwards.
+     *
+     * @return stream of the user summaries ordered by id
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_SUMMARY + "order by u.id")
+    Stream<UserSummaryDto> streamAllSummaries();
+
+    /**
+     * Query returning the normalized emails of all users, without loading the entities.
+     *
+     * @return id and normalized email of every user
+     */
+    @Query("select new com.capgemini.wsb.fitnesstracker.user.internal.UserEmail(u.id, u.normalizedEmail) from User u")
+    List<UserEmail> findAllEmails();
+
 }
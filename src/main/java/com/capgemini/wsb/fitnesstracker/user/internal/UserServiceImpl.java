@@ -1,76 +1,306 @@
 package com.capgemini.wsb.fitnesstracker.user.internal;
 
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.exception.api.ConflictException;
+import com.capgemini.wsb.fitnesstracker.user.api.AgeBucket;
 import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserAgeCursor;
+import com.capgemini.wsb.fitnesstracker.user.api.UserChangedEvent;
+import com.capgemini.wsb.fitnesstracker.user.api.UserImportReport;
 import com.capgemini.wsb.fitnesstracker.user.api.UserNotFoundException;
+import com.capgemini.wsb.fitnesstracker.user.api.UserPatchDto;
 import com.capgemini.wsb.fitnesstracker.user.api.UserProvider;
 import com.capgemini.wsb.fitnesstracker.user.api.UserService;
+import com.capgemini.wsb.fitnesstracker.user.api.UserSummaryDto;
+import jakarta.annotation.Nullable;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.Reader;
+import java.sql.Types;
+import java.time.LocalDate;
 import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
-import java.time.LocalDate;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 class UserServiceImpl implements UserService, UserProvider {
 
+    /**
+     * Update of the patched columns, the absent ones keep their values. Returns the row as it is after the update
+     * (H2 data change delta table), so the patched user is not read back with a query of its own.
+     */
+    private static final String PATCH_RETURNING_PATCHED = """
+            select first_name, last_name, birthdate, email
+            from final table (
+                update users
+                set first_name = coalesce(:firstName, first_name),
+                    last_name = coalesce(:lastName, last_name),
+                    birthdate = coalesce(:birthdate, birthdate),
+                    email = coalesce(:email, email),
+                    normalized_email = coalesce(:normalizedEmail, normalized_email)
+                where id = :id)
+            """;
+
+    private static final LocalDate EARLIEST_BIRTHDATE = LocalDate.of(1, 1, 1);
+
+    private static final Comparator<User> YOUNGEST_FIRST = Comparator.comparing(User::getBirthdate)
+                                                                     .thenComparing(User::getId)
+                                                                     .reversed();
+
     private final UserRepository userRepository;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Optional<UserEmailDirectory> emailDirectory;
+
+    private final UserEmailSearchIndex emailSearchIndex;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final UserDeletionPipeline userDeletionPipeline;
+
+    private final UserCsvImporter userCsvImporter;
+
+    private final ShardRouter shardRouter;
+
+    private final UserIdAllocator userIdAllocator;
+
+    private final UserCache userCache;
+
+    private final UserEmailRegistry userEmailRegistry;
 
     @Override
     public User createUser(final User user) {
-        log.info("Creating User {}", user);
+        log.debug("Creating User {}", user);
         if (user.getId() != null) {
             throw new IllegalArgumentException("User has already DB ID, update is not permitted!");
         }
-        return userRepository.save(user);
+        User createdUser = shardRouter.shardCount() == 1 ? userRepository.save(user) : createOnShard(user);
+        eventPublisher.publishEvent(UserChangedEvent.saved(createdUser));
+        return createdUser;
+    }
+
+    /**
+     * Creates the user on the shard picked by its id, so the id is allocated up front. The unique index guards
+     * the email within a shard only, so the email is first registered with the {@link UserEmailRegistry}.
+     */
+    private User createOnShard(User user) {
+        user.setId(userIdAllocator.nextId());
+        userEmailRegistry.register(user.getId(), user.getEmail());
+        try {
+            shardRouter.onShardOf(user.getId(), () -> userRepository.insertUser(user.getId(),
+                                                                                 user.getFirstName(),
+                                                                                 user.getLastName(),
+                                                                                 user.getBirthdate(),
+                                                                                 user.getEmail(),
+                                                                                 user.getNormalizedEmail()));
+        } catch (RuntimeException e) {
+            userEmailRegistry.release(user.getId(), user.getEmail());
+            throw e;
+        }
+        return user;
+    }
+
+    @Override
+    public UserImportReport importUsers(final Reader csv) {
+        return userCsvImporter.importUsers(csv);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<User> getUser(final Long userId) {
-        return userRepository.findById(userId);
+        return userCache.get(userId, () -> shardRouter.onShardOf(userId, () -> userRepository.findById(userId)));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<User> getUserByEmail(final String email) {
-        return userRepository.findByEmail(email);
+        if (emailDirectory.isPresent() && emailDirectory.get().isLoaded()) {
+            long userId = emailDirectory.get().findUserId(email);
+            return userId == UserEmailDirectory.NO_USER ? Optional.empty() : getUser(userId);
+        }
+        return shardRouter.findOnEveryShard(() -> userRepository.findByEmail(email).stream().toList())
+                          .stream()
+                          .findFirst();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<User> findAllUsers() {
-        return userRepository.findAll();
+        return shardRouter.findOnEveryShard(userRepository::findAll);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserSummaryDto> findUserSummaries(@Nullable Long afterId, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        return shardRouter.findPageOnEveryShard(() -> afterId == null
+                                                        ? userRepository.findFirstSummaryPage(page)
+                                                        : userRepository.findSummaryPageAfter(afterId, page),
+                                                Comparator.comparing(UserSummaryDto::id),
+                                                limit);
+    }
+
+    @Override
+    public void streamUserSummaries(Consumer<UserSummaryDto> consumer) {
+        shardRouter.streamEveryShard(userRepository::streamAllSummaries, consumer);
     }
 
     @Override
     public void deleteUser(final Long userId) {
-        userRepository.deleteById(userId);
+        userDeletionPipeline.delete(List.of(userId));
     }
 
     @Override
+    public int deleteUsers(final List<Long> userIds) {
+        return userDeletionPipeline.delete(userIds);
+    }
+
+    @Override
+    @Transactional
     public User updateUser(Long id, User user) {
-        if (!userRepository.existsById(id)) {
+        userEmailRegistry.register(id, user.getEmail());
+        // a single UPDATE statement, instead of checking the existence and merging the detached entity
+        int updated = shardRouter.onShardOf(id, () -> userRepository.updateUser(id,
+                                                                               user.getFirstName(),
+                                                                               user.getLastName(),
+                                                                               user.getBirthdate(),
+                                                                               user.getEmail(),
+                                                                               user.getNormalizedEmail()));
+        if (updated == 0) {
+            userEmailRegistry.release(id, user.getEmail());
             throw new UserNotFoundException(id);
         }
+        userEmailRegistry.releasePreviousAfterCommit(id, user.getEmail());
         user.setId(id);
-        return userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.saved(user));
+        return user;
+    }
+
+    @Override
+    @Transactional
+    public User patchUser(Long id, UserPatchDto patch) {
+        return shardRouter.onShardOf(id, () -> patchOnShard(id, patch));
+    }
+
+    private User patchOnShard(Long id, UserPatchDto patch) {
+        if (patch.email() != null) {
+            userEmailRegistry.register(id, patch.email());
+        }
+        Optional<User> patched;
+        try {
+            patched = executePatch(id, patch);
+        } catch (DuplicateKeyException e) {
+            userEmailRegistry.release(id, patch.email());
+            throw new ConflictException("User with email %s already exists".formatted(patch.email()));
+        }
+        if (patch.email() != null) {
+            if (patched.isEmpty()) {
+                userEmailRegistry.release(id, patch.email());
+            } else {
+                userEmailRegistry.releasePreviousAfterCommit(id, patch.email());
+            }
+        }
+        User patchedUser = patched.orElseThrow(() -> new UserNotFoundException(id));
+        eventPublisher.publishEvent(UserChangedEvent.saved(patchedUser));
+        return patchedUser;
     }
 
+    /**
+     * Issues the {@link #PATCH_RETURNING_PATCHED} statement, the only read of the patch is the row it returns.
+     *
+     * @return the patched user, empty if it does not exist
+     */
+    private Optional<User> executePatch(Long id, UserPatchDto patch) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("firstName", patch.firstName(), Types.VARCHAR)
+                .addValue("lastName", patch.lastName(), Types.VARCHAR)
+                .addValue("birthdate", patch.birthdate(), Types.DATE)
+                .addValue("email", patch.email(), Types.VARCHAR)
+                .addValue("normalizedEmail", patch.email() == null ? null : User.normalizeEmail(patch.email()),
+                          Types.VARCHAR)
+                .addValue("id", id);
+        List<User> patched = jdbcTemplate.query(PATCH_RETURNING_PATCHED, parameters, (resultSet, row) -> {
+            User user = new User(resultSet.getString("first_name"),
+                                 resultSet.getString("last_name"),
+                                 resultSet.getObject("birthdate", LocalDate.class),
+                                 resultSet.getString("email"));
+            user.setId(id);
+            return user;
+        });
+        return patched.stream().findFirst();
+    }
+
+    @Transactional(readOnly = true)
     public List<User> findByEmailContainingIgnoreCase(String email) {
-        return userRepository.findAll()
-                .stream()
-                .filter(user -> user.getEmail().toLowerCase().contains(email.toLowerCase()))
-                .toList();
-    }
-
-    public List<User> findUserByAgeGreaterThan(int age) {
-        LocalDate currentDate = LocalDate.now();
-        return userRepository.findAll()
-                .stream()
-                .filter(user -> Period.between(user.getBirthdate(), currentDate).getYears() > age)
-                .toList();
+        if (!emailSearchIndex.isLoaded()) {
+            return shardRouter.findOnEveryShard(
+                            () -> userRepository.findByNormalizedEmailContainingOrderById(email.toLowerCase(Locale.ROOT)))
+                    .stream()
+                    .sorted(Comparator.comparing(User::getId))
+                    .toList();
+        }
+        List<Long> userIds = Arrays.stream(emailSearchIndex.search(email)).boxed().toList();
+        // every shard returns the ones it has
+        return shardRouter.findOnEveryShard(() -> userRepository.findAllById(userIds))
+                          .stream()
+                          .sorted(Comparator.comparing(User::getId))
+                          .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> findUsersByAge(@Nullable Integer minAge, @Nullable Integer maxAge,
+                                     @Nullable UserAgeCursor after, int limit) {
+        LocalDate today = LocalDate.now();
+        LocalDate bornOnOrBefore = minAge == null ? today : today.minusYears(minAge);
+        LocalDate bornAfter = maxAge == null ? EARLIEST_BIRTHDATE : today.minusYears(maxAge + 1L);
+        PageRequest page = PageRequest.of(0, limit);
+        return shardRouter.findPageOnEveryShard(
+                () -> after == null
+                        ? userRepository.findFirstPageBornBetween(bornAfter, bornOnOrBefore, page)
+                        : userRepository.findPageBornBetweenAfter(bornAfter, bornOnOrBefore, after.birthdate(), after.id(), page),
+                YOUNGEST_FIRST,
+                limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<AgeBucket> getAgeHistogram(int bucketWidth) {
+        LocalDate today = LocalDate.now();
+        // one row per distinct birthdate, folded into the age bands here as the age depends on the current date
+        TreeMap<Integer, Long> counts = new TreeMap<>();
+        for (BirthdateCount birthdateCount : shardRouter.findOnEveryShard(userRepository::countByBirthdate)) {
+            int age = Period.between(birthdateCount.birthdate(), today).getYears();
+            counts.merge(Math.floorDiv(age, bucketWidth), birthdateCount.count(), Long::sum);
+        }
+        if (counts.isEmpty()) {
+            return List.of();
+        }
+        int first = counts.firstKey();
+        int last = counts.lastKey();
+        List<AgeBucket> histogram = new ArrayList<>(last - first + 1);
+        for (int bucket = first; bucket <= last; bucket++) {
+            histogram.add(new AgeBucket(bucket * bucketWidth,
+                                        (bucket + 1) * bucketWidth - 1,
+                                        counts.getOrDefault(bucket, 0L)));
+        }
+        return histogram;
     }
 }
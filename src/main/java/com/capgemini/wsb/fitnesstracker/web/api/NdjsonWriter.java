@@ -0,0 +1,45 @@
+package com.capgemini.wsb.fitnesstracker.web.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes streamed values into the response as newline delimited JSON, one value per line, as they are produced,
+ * so an export of any size is never held in memory.
+ */
+@Component
+@RequiredArgsConstructor
+public class NdjsonWriter {
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param response response to write to
+     * @param source   action passing every value to write to the given consumer
+     * @param <T>      type of the values
+     */
+    public <T> void write(HttpServletResponse response, Consumer<Consumer<T>> source) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        try (SequenceWriter writer = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .writeValues(new BufferedOutputStream(response.getOutputStream()))) {
+            source.accept(value -> {
+                try {
+                    writer.write(value);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+}
@@ -36,12 +36,12 @@ public abstract class IntegrationTestBase {
     }
 
     protected Training persistTraining(Training training) {
-        return trainingRepository.save(training);
+        return trainingRepository.saveAndFlush(training);
     }
 
     protected User existingUser(User user) {
 
-        return userRepository.save(user);
+        return userRepository.saveAndFlush(user);
     }
 
     protected List<User> getAllUsers() {
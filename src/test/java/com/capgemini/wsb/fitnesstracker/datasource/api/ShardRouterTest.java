@@ -0,0 +1,128 @@
+package com.capgemini.wsb.fitnesstracker.datasource.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardRouterTest {
+
+    private static final Comparator<Item> ORDER = Comparator.comparingInt(Item::score).reversed()
+                                                            .thenComparingLong(Item::id);
+
+    private final Random random = new Random(42);
+
+    @Test
+    void shouldMatchSortedConcatenation_whenMergingPagesOfShards() {
+        for (int round = 0; round < 200; round++) {
+            int limit = 1 + random.nextInt(50);
+            List<List<Item>> shards = new ArrayList<>();
+            for (int shard = 0; shard < 2 + random.nextInt(7); shard++) {
+                shards.add(randomItems(random.nextInt(80)));
+            }
+
+            List<Item> merged = new FakeShardRouter(shards).findPageOnEveryShard(() -> null, ORDER, limit);
+
+            assertThat(merged).isEqualTo(expectedPage(shards, limit));
+        }
+    }
+
+    @Test
+    void shouldReturnAllItems_whenShardsRunOutBeforeLimit() {
+        List<List<Item>> shards = List.of(List.of(new Item(1, 10), new Item(4, 3)),
+                                          List.of(),
+                                          List.of(new Item(2, 10), new Item(3, 7), new Item(5, 1)));
+
+        List<Item> merged = new FakeShardRouter(shards).findPageOnEveryShard(() -> null, ORDER, 20);
+
+        assertThat(merged).containsExactly(new Item(1, 10), new Item(2, 10), new Item(3, 7), new Item(4, 3), new Item(5, 1));
+    }
+
+    @Test
+    void shouldReturnEmptyPage_whenAllShardsAreEmpty() {
+        List<List<Item>> shards = List.of(List.of(), List.of(), List.of());
+
+        assertThat(new FakeShardRouter(shards).findPageOnEveryShard(() -> null, ORDER, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldTruncatePage_whenThereIsSingleShard() {
+        List<Item> page = randomItems(30);
+
+        assertThat(new FakeShardRouter(List.of(page)).findPageOnEveryShard(() -> null, ORDER, 10))
+                .isEqualTo(page.subList(0, 10));
+        assertThat(new FakeShardRouter(List.of(page)).findPageOnEveryShard(() -> null, ORDER, 50))
+                .isEqualTo(page);
+    }
+
+    /**
+     * Page of a single shard, sorted as the query of a shard would, ids are unique across all shards.
+     */
+    private List<Item> randomItems(int count) {
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new Item(random.nextLong(), random.nextInt(20)));
+        }
+        items.sort(ORDER);
+        return items;
+    }
+
+    private static List<Item> expectedPage(List<List<Item>> shards, int limit) {
+        return shards.stream().flatMap(List::stream).sorted(ORDER).limit(limit).toList();
+    }
+
+    private record Item(long id, int score) {
+
+    }
+
+    /**
+     * Router over fixed results of every shard, the query of a shard returns its results as they are.
+     */
+    private static final class FakeShardRouter implements ShardRouter {
+
+        private final List<List<Item>> shards;
+
+        private FakeShardRouter(List<List<Item>> shards) {
+            this.shards = shards;
+        }
+
+        @Override
+        public int shardCount() {
+            return shards.size();
+        }
+
+        @Override
+        public int shardOf(long userId) {
+            return (int) Math.floorMod(userId, (long) shards.size());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T onShard(int shard, Supplier<T> action) {
+            return (T) shards.get(shard);
+        }
+
+        @Override
+        public <T> List<T> onEveryShard(Supplier<T> action) {
+            List<T> results = new ArrayList<>();
+            for (int shard = 0; shard < shards.size(); shard++) {
+                results.add(onShard(shard, action));
+            }
+            return results;
+        }
+
+        @Override
+        public <T> void streamEveryShard(Supplier<Stream<T>> query, Consumer<T> consumer) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConsistentHashRingTest {
+
+    private static final int USER_COUNT = 1_000_000;
+
+    private static final int VIRTUAL_NODES = 128;
+
+    /**
+     * Maximal deviation of the share of a shard from the even one, with the default number of virtual nodes.
+     */
+    private static final double MAX_IMBALANCE = 0.2;
+
+    @Test
+    void shouldSpreadUsersEvenly_whenIdsAreConsecutive() {
+        for (int shardCount : new int[]{2, 4, 8}) {
+            ConsistentHashRing ring = new ConsistentHashRing(shardCount, VIRTUAL_NODES);
+            int[] users = new int[shardCount];
+            for (long userId = 1; userId <= USER_COUNT; userId++) {
+                users[ring.shardOf(userId)]++;
+            }
+
+            double evenShare = (double) USER_COUNT / shardCount;
+            for (int shard = 0; shard < shardCount; shard++) {
+                assertThat(users[shard] / evenShare).as("shard %d of %d", shard, shardCount)
+                                                    .isBetween(1 - MAX_IMBALANCE, 1 + MAX_IMBALANCE);
+            }
+        }
+    }
+
+    @Test
+    void shouldOnlyMoveUsersToNewShard_whenShardIsAdded() {
+        ConsistentHashRing before = new ConsistentHashRing(4, VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(5, VIRTUAL_NODES);
+
+        int moved = 0;
+        for (long userId = 1; userId <= USER_COUNT; userId++) {
+            int shard = after.shardOf(userId);
+            if (shard != before.shardOf(userId)) {
+                assertThat(shard).as("user %d", userId).isEqualTo(4);
+                moved++;
+            }
+        }
+
+        assertThat((double) moved / USER_COUNT).isBetween(1 / 5.0 - MAX_IMBALANCE / 5, 1 / 5.0 + MAX_IMBALANCE / 5);
+    }
+
+    @Test
+    void shouldAssignSameShard_whenRingIsBuiltAgain() {
+        ConsistentHashRing ring = new ConsistentHashRing(8, VIRTUAL_NODES);
+        ConsistentHashRing rebuilt = new ConsistentHashRing(8, VIRTUAL_NODES);
+
+        for (long userId = -1000; userId <= 100_000; userId++) {
+            assertThat(rebuilt.shardOf(userId)).isEqualTo(ring.shardOf(userId));
+        }
+        assertThat(ring.shardOf(Long.MAX_VALUE)).isEqualTo(rebuilt.shardOf(Long.MAX_VALUE));
+        assertThat(ring.shardOf(Long.MIN_VALUE)).isEqualTo(rebuilt.shardOf(Long.MIN_VALUE));
+    }
+
+    @Test
+    void shouldAssignEveryUserToOnlyShard_whenThereIsOneShard() {
+        ConsistentHashRing ring = new ConsistentHashRing(1, 1);
+
+        for (long userId = 1; userId <= 10_000; userId++) {
+            assertThat(ring.shardOf(userId)).isEqualTo(0);
+        }
+    }
+
+    @Test
+    void shouldFail_whenThereAreNoShardsOrVirtualNodes() {
+        assertThatThrownBy(() -> new ConsistentHashRing(0, VIRTUAL_NODES)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ConsistentHashRing(4, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
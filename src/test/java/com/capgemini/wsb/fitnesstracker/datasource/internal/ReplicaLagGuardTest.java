@@ -0,0 +1,50 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaLagGuardTest {
+
+    private final ReplicaLagGuard guard = new ReplicaLagGuard(Duration.ofMinutes(1));
+
+    @Test
+    void shouldHoldClientOnPrimary_whenClientHasJustWritten() {
+        List<Long> toldWrites = new ArrayList<>();
+        guard.bindClient(0, toldWrites::add);
+
+        assertThat(guard.isReplicaStale()).isFalse();
+        guard.recordWrite();
+
+        assertThat(guard.isReplicaStale()).isTrue();
+        assertThat(toldWrites).hasSize(1);
+        guard.unbindClient();
+    }
+
+    @Test
+    void shouldKeepOtherClientsOnReplica_whenClientHasJustWritten() {
+        guard.bindClient(0, lastWriteMillis -> { });
+        guard.recordWrite();
+        guard.unbindClient();
+
+        guard.bindClient(0, lastWriteMillis -> { });
+        assertThat(guard.isReplicaStale()).isFalse();
+        guard.unbindClient();
+    }
+
+    @Test
+    void shouldHoldClientOnPrimary_whenItsLastWriteIsWithinLag() {
+        guard.bindClient(System.currentTimeMillis() - 1000, lastWriteMillis -> { });
+        assertThat(guard.isReplicaStale()).isTrue();
+        guard.unbindClient();
+
+        guard.bindClient(System.currentTimeMillis() - Duration.ofMinutes(2).toMillis(), lastWriteMillis -> { });
+        assertThat(guard.isReplicaStale()).isFalse();
+        guard.unbindClient();
+    }
+
+}
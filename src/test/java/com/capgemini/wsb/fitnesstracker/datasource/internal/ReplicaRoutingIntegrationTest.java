@@ -0,0 +1,55 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import com.capgemini.wsb.fitnesstracker.IntegrationTest;
+import com.capgemini.wsb.fitnesstracker.IntegrationTestBase;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.log;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs with the replica enabled, pointing to the primary database. Not transactional, as the writes have to be
+ * committed to be tracked.
+ */
+@IntegrationTest
+@TestPropertySource(properties = "datasource.replica.enabled=true")
+class ReplicaRoutingIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void shouldRememberLastWrite_whenRequestCommittedWrite() throws Exception {
+        mockMvc.perform(post("/v1/users")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("""
+                                        {"firstName": "Mike", "lastName": "Scott", "birthdate": "1999-09-29",
+                                         "email": "mike.scott@domain.com"}
+                                        """))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(cookie().exists(ReadYourWritesFilter.LAST_WRITE_COOKIE))
+                .andExpect(cookie().httpOnly(ReadYourWritesFilter.LAST_WRITE_COOKIE, true));
+    }
+
+    @Test
+    void shouldNotRememberWrite_whenRequestOnlyRead() throws Exception {
+        existingUser(new User("Mike", "Scott", LocalDate.of(1999, 9, 29), "mike.scott@domain.com"));
+
+        mockMvc.perform(get("/v1/users").contentType(MediaType.APPLICATION_JSON))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(cookie().doesNotExist(ReadYourWritesFilter.LAST_WRITE_COOKIE));
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.capgemini.wsb.fitnesstracker.datasource.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteTrackingConnectionTest {
+
+    private final AtomicInteger committedWrites = new AtomicInteger();
+
+    @Test
+    void shouldNotReportWrite_whenTransactionOnlyQueried() throws SQLException {
+        Connection connection = WriteTrackingConnection.wrap(fakeConnection(false), committedWrites::incrementAndGet);
+
+        connection.prepareStatement("select * from users where id = ?").executeQuery();
+        connection.createStatement().execute("select count(*) from trainings");
+        connection.commit();
+
+        assertThat(committedWrites.get()).isEqualTo(0);
+    }
+
+    @Test
+    void shouldReportWriteOnCommit_whenTransactionUpdated() throws SQLException {
+        Connection connection = WriteTrackingConnection.wrap(fakeConnection(false), committedWrites::incrementAndGet);
+
+        connection.prepareStatement("update users set first_name = ? where id = ?").executeUpdate();
+        assertThat(committedWrites.get()).isEqualTo(0);
+        connection.commit();
+        assertThat(committedWrites.get()).isEqualTo(1);
+
+        connection.prepareStatement("select * from users").executeQuery();
+        connection.commit();
+        assertThat(committedWrites.get()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReportWrite_whenQueryingDataChangeDeltaTable() throws SQLException {
+        Connection connection = WriteTrackingConnection.wrap(fakeConnection(false), committedWrites::incrementAndGet);
+
+        connection.prepareStatement("select first_name from final table (update users set first_name = ?)")
+                  .executeQuery();
+        connection.commit();
+
+        assertThat(committedWrites.get()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotReportWrite_whenTransactionRolledBack() throws SQLException {
+        Connection connection = WriteTrackingConnection.wrap(fakeConnection(false), committedWrites::incrementAndGet);
+
+        connection.prepareStatement("delete from users").executeUpdate();
+        connection.rollback();
+        connection.commit();
+
+        assertThat(committedWrites.get()).isEqualTo(0);
+    }
+
+    @Test
+    void shouldReportWriteRightAway_whenConnectionAutoCommits() throws SQLException {
+        Connection connection = WriteTrackingConnection.wrap(fakeConnection(true), committedWrites::incrementAndGet);
+
+        connection.createStatement().executeUpdate("insert into users values (1)");
+
+        assertThat(committedWrites.get()).isEqualTo(1);
+    }
+
+    private static Connection fakeConnection(boolean autoCommit) {
+        return (Connection) Proxy.newProxyInstance(
+                WriteTrackingConnectionTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getAutoCommit" -> autoCommit;
+                    case "createStatement" -> fakeStatement(Statement.class);
+                    case "prepareStatement" -> fakeStatement(PreparedStatement.class);
+                    default -> null;
+                });
+    }
+
+    private static Object fakeStatement(Class<? extends Statement> type) {
+        return Proxy.newProxyInstance(
+                WriteTrackingConnectionTest.class.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "executeUpdate" -> 1;
+                    // the statements executed in the tests are all queries
+                    case "execute" -> true;
+                    default -> null;
+                });
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CalorieEngineTest {
+
+    private static final long HOUR = 3600;
+
+    @Test
+    void shouldUseMetOfTable_whenSpeedIsOneOfItsPoints() {
+        // 9.8 MET * 70 kg * 1 h
+        assertThat(CalorieEngine.estimate(ActivityType.RUNNING, HOUR, 9.7, CalorieEngine.REFERENCE_AGE)).isEqualTo(686);
+        // 3.5 MET * 70 kg * 0.5 h
+        assertThat(CalorieEngine.estimate(ActivityType.WALKING, HOUR / 2, 4.8, CalorieEngine.REFERENCE_AGE)).isEqualTo(123);
+    }
+
+    @Test
+    void shouldInterpolateMet_whenSpeedIsBetweenPointsOfTable() {
+        // a quarter of the way from 6.8 MET at 17.7 km/h to 8.0 MET at 20.9 km/h: 7.1 MET * 70 kg * 2 h
+        assertThat(CalorieEngine.estimate(ActivityType.CYCLING, 2 * HOUR, 18.5, CalorieEngine.REFERENCE_AGE)).isEqualTo(994);
+    }
+
+    @Test
+    void shouldHoldMetOfNearestPoint_whenSpeedIsOutsideOfTable() {
+        assertThat(CalorieEngine.estimate(ActivityType.RUNNING, HOUR, 30, CalorieEngine.REFERENCE_AGE))
+                .isEqualTo(CalorieEngine.estimate(ActivityType.RUNNING, HOUR, 19.3, CalorieEngine.REFERENCE_AGE));
+        assertThat(CalorieEngine.estimate(ActivityType.RUNNING, HOUR, 1, CalorieEngine.REFERENCE_AGE))
+                .isEqualTo(CalorieEngine.estimate(ActivityType.RUNNING, HOUR, 6.4, CalorieEngine.REFERENCE_AGE));
+    }
+
+    @Test
+    void shouldUseTypicalMet_whenSpeedIsUnknown() {
+        // 8.3 MET * 70 kg * 1 h
+        assertThat(CalorieEngine.estimate(ActivityType.SWIMMING, HOUR, 0, CalorieEngine.REFERENCE_AGE)).isEqualTo(581);
+        // 7.3 MET * 70 kg * 1 h
+        assertThat(CalorieEngine.estimate(ActivityType.TENNIS, HOUR, 0, CalorieEngine.REFERENCE_AGE)).isEqualTo(511);
+    }
+
+    @Test
+    void shouldScaleByAgeWithinBounds_whenUserIsOlderOrYoungerThanReference() {
+        int reference = CalorieEngine.estimate(ActivityType.RUNNING, HOUR, 9.7, CalorieEngine.REFERENCE_AGE);
+
+        // 0.2 % less per year
+        assertThat(CalorieEngine.estimate(ActivityType.RUNNING, HOUR, 9.7, 80)).isEqualTo(Math.round(reference * 0.9));
+        assertThat(CalorieEngine.estimate(ActivityType.RUNNING, HOUR, 9.7, 10)).isEqualTo(Math.round(reference * 1.04));
+        // capped at 80 % and 110 %
+        assertThat(CalorieEngine.estimate(ActivityType.RUNNING, HOUR, 9.7, 200)).isEqualTo(Math.round(reference * 0.8));
+        assertThat(CalorieEngine.estimate(ActivityType.RUNNING, HOUR, 9.7, -100)).isEqualTo(Math.round(reference * 1.1));
+    }
+
+    @Test
+    void shouldEstimateZero_whenTrainingHasNoDuration() {
+        assertThat(CalorieEngine.estimate(ActivityType.RUNNING, 0, 10, CalorieEngine.REFERENCE_AGE)).isEqualTo(0);
+        assertThat(CalorieEngine.estimate(ActivityType.RUNNING, -60, 10, CalorieEngine.REFERENCE_AGE)).isEqualTo(0);
+    }
+
+    @Test
+    void shouldMatchSingleEstimates_whenEstimatingInBatch() {
+        Random random = new Random(42);
+        int count = 10_000;
+        int[] activities = new int[count];
+        long[] durations = new long[count];
+        double[] speeds = new double[count];
+        int[] ages = new int[count];
+        for (int i = 0; i < count; i++) {
+            activities[i] = random.nextInt(ActivityType.values().length);
+            durations[i] = random.nextInt(4 * 3600);
+            speeds[i] = random.nextInt(5) == 0 ? 0 : random.nextDouble() * 40;
+            ages[i] = 10 + random.nextInt(80);
+        }
+
+        int[] calories = new int[count];
+        CalorieEngine.estimate(activities, durations, speeds, ages, count, calories);
+
+        for (int i = 0; i < count; i++) {
+            assertThat(calories[i]).isEqualTo(CalorieEngine.estimate(ActivityType.values()[activities[i]], durations[i],
+                                                                     speeds[i], ages[i]));
+        }
+    }
+
+    @Test
+    void shouldCountWholeYears_whenComputingAge() {
+        long birthEpochDay = LocalDate.of(1994, 10, 18).toEpochDay();
+
+        assertThat(CalorieEngine.age(birthEpochDay, millisAt(LocalDate.of(2024, 10, 17)))).isEqualTo(29);
+        assertThat(CalorieEngine.age(birthEpochDay, millisAt(LocalDate.of(2024, 10, 18)) + 12 * HOUR * 1000))
+                .isEqualTo(30);
+        assertThat(CalorieEngine.age(birthEpochDay, millisAt(LocalDate.of(1994, 10, 18)))).isEqualTo(0);
+    }
+
+    private static long millisAt(LocalDate day) {
+        return day.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+}
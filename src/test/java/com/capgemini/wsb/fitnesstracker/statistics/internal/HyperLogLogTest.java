@@ -0,0 +1,90 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HyperLogLogTest {
+
+    /**
+     * Three standard errors of a counter with {@value HyperLogLog#REGISTER_COUNT} registers.
+     */
+    private static final double MAX_RELATIVE_ERROR = 3 * 1.04 / Math.sqrt(HyperLogLog.REGISTER_COUNT);
+
+    @Test
+    void shouldEstimateWithinErrorBound_whenCountingFromTenToMillionUsers() {
+        Random random = new Random(42);
+        for (int users : new int[]{10, 100, 1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog counter = new HyperLogLog();
+            long firstId = random.nextInt(1_000_000);
+            for (long userId = firstId; userId < firstId + users; userId++) {
+                counter.add(userId);
+            }
+
+            assertThat((double) counter.estimate()).as("estimate of %d users", users)
+                                                   .isBetween(users * (1 - MAX_RELATIVE_ERROR),
+                                                              users * (1 + MAX_RELATIVE_ERROR));
+        }
+    }
+
+    @Test
+    void shouldNotCountUserTwice_whenAddedRepeatedly() {
+        HyperLogLog counter = new HyperLogLog();
+        for (long userId = 1; userId <= 50_000; userId++) {
+            counter.add(userId);
+        }
+        long estimate = counter.estimate();
+
+        for (int repetition = 0; repetition < 3; repetition++) {
+            for (long userId = 1; userId <= 50_000; userId++) {
+                counter.add(userId);
+            }
+        }
+
+        assertThat(counter.estimate()).isEqualTo(estimate);
+    }
+
+    @Test
+    void shouldEstimateUnion_whenMergingCountersOfOverlappingUsers() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (long userId = 0; userId < 600_000; userId++) {
+            first.add(userId);
+        }
+        for (long userId = 400_000; userId < 1_000_000; userId++) {
+            second.add(userId);
+        }
+        long secondEstimate = second.estimate();
+
+        first.merge(second);
+
+        assertThat((double) first.estimate()).isBetween(1_000_000 * (1 - MAX_RELATIVE_ERROR),
+                                                        1_000_000 * (1 + MAX_RELATIVE_ERROR));
+        assertThat(second.estimate()).isEqualTo(secondEstimate);
+    }
+
+    @Test
+    void shouldEstimateSameAsSingleCounter_whenMergingCountersOfShards() {
+        HyperLogLog single = new HyperLogLog();
+        HyperLogLog[] shards = {new HyperLogLog(), new HyperLogLog(), new HyperLogLog()};
+        for (long userId = 1; userId <= 300_000; userId++) {
+            single.add(userId);
+            shards[(int) (userId % shards.length)].add(userId);
+        }
+
+        HyperLogLog merged = new HyperLogLog();
+        for (HyperLogLog shard : shards) {
+            merged.merge(shard);
+        }
+
+        assertThat(merged.estimate()).isEqualTo(single.estimate());
+    }
+
+    @Test
+    void shouldEstimateZero_whenEmpty() {
+        assertThat(new HyperLogLog().estimate()).isEqualTo(0L);
+    }
+
+}
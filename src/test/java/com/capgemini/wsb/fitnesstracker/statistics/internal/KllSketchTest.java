@@ -0,0 +1,152 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class KllSketchTest {
+
+    /**
+     * Rank error allowed by the tests, about twice the {@code 1.7 / k} the sketch guarantees with a high probability.
+     */
+    private static final double MAX_RANK_ERROR = 0.02;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void shouldEstimateRanksWithinErrorBound_whenAddingMillionValues() {
+        double[] values = randomValues(1_000_000);
+        KllSketch sketch = new KllSketch();
+        for (double value : values) {
+            sketch.add(value);
+        }
+
+        assertThat(sketch.count()).isEqualTo(values.length);
+        assertRanks(sketch, values);
+    }
+
+    @Test
+    void shouldEstimateRanksOfUnion_whenMergingSketchesOfDisjointStreams() {
+        double[] values = randomValues(400_000);
+        KllSketch merged = new KllSketch();
+        for (int part = 0; part < 4; part++) {
+            KllSketch sketch = new KllSketch();
+            for (int i = part; i < values.length; i += 4) {
+                sketch.add(values[i]);
+            }
+            merged.merge(sketch);
+        }
+
+        assertThat(merged.count()).isEqualTo(values.length);
+        assertRanks(merged, values);
+    }
+
+    @Test
+    void shouldLeaveOtherSketchUntouched_whenMerging() {
+        KllSketch sketch = new KllSketch();
+        KllSketch other = new KllSketch();
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add(i);
+            other.add(10_000 + i);
+        }
+        byte[] otherBefore = other.toBytes();
+
+        sketch.merge(other);
+
+        assertThat(other.toBytes()).isEqualTo(otherBefore);
+        assertThat(sketch.rank(9_999)).isCloseTo(0.5, within(MAX_RANK_ERROR));
+    }
+
+    @Test
+    void shouldKeepCountAndRanks_whenRoundTrippingThroughBytes() {
+        double[] values = randomValues(100_000);
+        KllSketch sketch = new KllSketch();
+        for (double value : values) {
+            sketch.add(value);
+        }
+
+        KllSketch copy = KllSketch.fromBytes(sketch.toBytes());
+
+        assertThat(copy.count()).isEqualTo(sketch.count());
+        for (int i = 0; i < 1000; i++) {
+            double value = values[random.nextInt(values.length)];
+            assertThat(copy.rank(value)).isEqualTo(sketch.rank(value));
+        }
+        assertThat(copy.toBytes()).isEqualTo(sketch.toBytes());
+    }
+
+    @Test
+    void shouldAcceptMoreValues_whenRestoredFromBytes() {
+        double[] values = randomValues(200_000);
+        KllSketch sketch = new KllSketch();
+        for (int i = 0; i < values.length / 2; i++) {
+            sketch.add(values[i]);
+        }
+
+        KllSketch restored = KllSketch.fromBytes(sketch.toBytes());
+        for (int i = values.length / 2; i < values.length; i++) {
+            restored.add(values[i]);
+        }
+
+        assertThat(restored.count()).isEqualTo(values.length);
+        assertRanks(restored, values);
+    }
+
+    @Test
+    void shouldRankExactly_whenValueIsOutsideOfSeenRange() {
+        KllSketch sketch = new KllSketch();
+        assertThat(sketch.rank(1.0)).isEqualTo(0.0);
+
+        for (int i = 1; i <= 100_000; i++) {
+            sketch.add(i);
+        }
+
+        assertThat(sketch.rank(0.5)).isEqualTo(0.0);
+        assertThat(sketch.rank(100_000)).isEqualTo(1.0);
+        assertThat(sketch.rank(1e9)).isEqualTo(1.0);
+    }
+
+    private void assertRanks(KllSketch sketch, double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (int percentile = 1; percentile < 100; percentile++) {
+            double value = sorted[sorted.length * percentile / 100];
+            double exactRank = (double) upperBound(sorted, value) / sorted.length;
+            assertThat(sketch.rank(value)).as("rank of the %d. percentile", percentile)
+                                          .isCloseTo(exactRank, within(MAX_RANK_ERROR));
+        }
+    }
+
+    /**
+     * Number of values less than or equal to the given one.
+     */
+    private static int upperBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Skewed values with repetitions, like distances of trainings.
+     */
+    private double[] randomValues(int count) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.round(Math.exp(random.nextGaussian()) * 100) / 10.0;
+        }
+        return values;
+    }
+
+}
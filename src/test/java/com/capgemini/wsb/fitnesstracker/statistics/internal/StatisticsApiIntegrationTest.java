@@ -0,0 +1,144 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import com.capgemini.wsb.fitnesstracker.IntegrationTest;
+import com.capgemini.wsb.fitnesstracker.IntegrationTestBase;
+import com.capgemini.wsb.fitnesstracker.statistics.api.Statistics;
+import com.capgemini.wsb.fitnesstracker.training.api.Training;
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.log;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Not transactional, as the deltas are applied right before the training transactions commit and the calorie
+ * backfill works on its own threads.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc(addFilters = false)
+class StatisticsApiIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StatisticsRepository statisticsRepository;
+
+    @Autowired
+    private StatisticsRollupRepository rollupRepository;
+
+    @AfterEach
+    void cleanUpStatistics() {
+        statisticsRepository.deleteAllInBatch();
+        rollupRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void shouldAddTrainingsToStatistics_whenCreatingTrainings() throws Exception {
+        User user = existingUser(generateClient());
+
+        createTraining(user, 10.5);
+        createTraining(user, 4.5);
+
+        Statistics statistics = statisticsRepository.findByUserId(user.getId()).orElseThrow();
+        assertThat(statistics.getTotalTrainings()).isEqualTo(2);
+        assertThat(statistics.getTotalDistance()).isEqualTo(15.0);
+        assertThat(statistics.getTotalCaloriesBurned()).isPositive();
+    }
+
+    @Test
+    void shouldApplyDistanceDifference_whenUpdatingTraining() throws Exception {
+        User user = existingUser(generateClient());
+        long trainingId = createTraining(user, 10.5);
+
+        mockMvc.perform(put("/api/trainings/{trainingId}", trainingId)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(trainingBody(user, 3.0)))
+                .andDo(log())
+                .andExpect(status().isOk());
+
+        Statistics statistics = statisticsRepository.findByUserId(user.getId()).orElseThrow();
+        assertThat(statistics.getTotalTrainings()).isEqualTo(1);
+        assertThat(statistics.getTotalDistance()).isEqualTo(3.0);
+    }
+
+    @Test
+    void shouldAggregateTrainingsWrittenAroundTrainingModule_whenRebuildingStatistics() throws Exception {
+        User user = existingUser(generateClient());
+        persistTraining(generateTraining(user, 10.5));
+        persistTraining(generateTraining(user, 4.5));
+        // the statistics are not rebuilt on startup, nor by trainings stored without the training module
+        assertThat(statisticsRepository.findByUserId(user.getId())).isEmpty();
+
+        mockMvc.perform(post("/api/statistics/rebuild").contentType(MediaType.APPLICATION_JSON))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+
+        Statistics statistics = statisticsRepository.findByUserId(user.getId()).orElseThrow();
+        assertThat(statistics.getTotalTrainings()).isEqualTo(2);
+        assertThat(statistics.getTotalDistance()).isEqualTo(15.0);
+        assertThat(statistics.getTotalCaloriesBurned()).isPositive();
+    }
+
+    private long createTraining(User user, double distance) throws Exception {
+        String response = mockMvc.perform(post("/api/trainings")
+                                                  .contentType(MediaType.APPLICATION_JSON)
+                                                  .content(trainingBody(user, distance)))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(response).get("id").asLong();
+    }
+
+    private static String trainingBody(User user, double distance) {
+        return """
+                {
+                    "userId": %d,
+                    "startTime": "2024-01-19T08:00:00",
+                    "endTime": "2024-01-19T09:30:00",
+                    "activityType": "RUNNING",
+                    "distance": %s,
+                    "averageSpeed": 8.2
+                }
+                """.formatted(user.getId(), distance);
+    }
+
+    private static User generateClient() {
+        return new User(randomUUID().toString(), randomUUID().toString(), LocalDate.of(1990, 5, 17),
+                        randomUUID().toString());
+    }
+
+    private static Training generateTraining(User user, double distance) {
+        Instant start = Instant.parse("2024-01-19T08:00:00Z");
+        return new Training(user,
+                            Date.from(start),
+                            Date.from(start.plus(Duration.ofMinutes(90))),
+                            ActivityType.RUNNING,
+                            distance,
+                            8.2);
+    }
+
+}
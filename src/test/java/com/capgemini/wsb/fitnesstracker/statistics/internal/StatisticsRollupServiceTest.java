@@ -0,0 +1,85 @@
+package com.capgemini.wsb.fitnesstracker.statistics.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatisticsRollupServiceTest {
+
+    /**
+     * Days before the first and after the last month of a range, plus the weeks in between.
+     */
+    private static final int MAX_NON_MONTH_BUCKETS = 32;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void shouldCoverEveryDayExactlyOnce_whenRangesAreRandom() {
+        LocalDate epoch = LocalDate.of(2020, 1, 1);
+        for (int round = 0; round < 5000; round++) {
+            LocalDate from = epoch.plusDays(random.nextInt(2000));
+            LocalDate to = from.plusDays(random.nextInt(random.nextBoolean() ? 40 : 1500));
+
+            Map<RollupGranularity, List<LocalDate>> buckets = StatisticsRollupService.cover(from, to);
+
+            Set<LocalDate> covered = new HashSet<>();
+            int nonMonthBuckets = 0;
+            for (Map.Entry<RollupGranularity, List<LocalDate>> entry : buckets.entrySet()) {
+                RollupGranularity granularity = entry.getKey();
+                for (LocalDate bucketStart : entry.getValue()) {
+                    assertThat(granularity.bucketStart(bucketStart)).isEqualTo(bucketStart);
+                    for (LocalDate day = bucketStart; day.isBefore(granularity.nextBucketStart(bucketStart)); day = day.plusDays(1)) {
+                        assertThat(covered.add(day)).as("%s covered twice in %s..%s", day, from, to).isTrue();
+                    }
+                    if (granularity != RollupGranularity.MONTH) {
+                        nonMonthBuckets++;
+                    }
+                }
+            }
+            assertThat(covered).as("%s..%s", from, to).hasSize((int) (to.toEpochDay() - from.toEpochDay()));
+            assertThat(covered.stream().allMatch(day -> !day.isBefore(from) && day.isBefore(to))).isTrue();
+            assertThat(nonMonthBuckets).as("%s..%s", from, to).isLessThanOrEqualTo(MAX_NON_MONTH_BUCKETS);
+        }
+    }
+
+    @Test
+    void shouldCoverWithMonthsOnly_whenRangeIsWholeYear() {
+        Map<RollupGranularity, List<LocalDate>> buckets = StatisticsRollupService.cover(LocalDate.of(2024, 1, 1),
+                                                                                         LocalDate.of(2025, 1, 1));
+
+        assertThat(buckets).hasSize(1);
+        assertThat(buckets.get(RollupGranularity.MONTH)).hasSize(12);
+    }
+
+    @Test
+    void shouldUseWeeksNextToMonthsAndDaysAtEdges_whenRangeSpansMonth() {
+        Map<RollupGranularity, List<LocalDate>> buckets = StatisticsRollupService.cover(LocalDate.of(2024, 1, 10),
+                                                                                         LocalDate.of(2024, 3, 20));
+
+        assertThat(buckets.get(RollupGranularity.DAY)).containsExactly(
+                LocalDate.of(2024, 1, 10), LocalDate.of(2024, 1, 11), LocalDate.of(2024, 1, 12),
+                LocalDate.of(2024, 1, 13), LocalDate.of(2024, 1, 14),
+                LocalDate.of(2024, 1, 29), LocalDate.of(2024, 1, 30), LocalDate.of(2024, 1, 31),
+                LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 2), LocalDate.of(2024, 3, 3),
+                LocalDate.of(2024, 3, 18), LocalDate.of(2024, 3, 19));
+        assertThat(buckets.get(RollupGranularity.WEEK)).containsExactly(
+                LocalDate.of(2024, 1, 15), LocalDate.of(2024, 1, 22),
+                LocalDate.of(2024, 3, 4), LocalDate.of(2024, 3, 11));
+        assertThat(buckets.get(RollupGranularity.MONTH)).containsExactly(LocalDate.of(2024, 2, 1));
+    }
+
+    @Test
+    void shouldReturnNoBuckets_whenRangeIsEmpty() {
+        LocalDate day = LocalDate.of(2024, 5, 1);
+
+        assertThat(StatisticsRollupService.cover(day, day)).isEmpty();
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.capgemini.wsb.fitnesstracker.training;
+
+import com.capgemini.wsb.fitnesstracker.IntegrationTest;
+import com.capgemini.wsb.fitnesstracker.IntegrationTestBase;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static java.util.UUID.randomUUID;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.log;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs with the analytics store enabled. Not transactional, as the store follows the committed training changes.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc(addFilters = false)
+@TestPropertySource(properties = "training.analytics.enabled=true")
+class TrainingAnalyticsIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserService userService;
+
+    @AfterEach
+    void deleteUsersWithTheirData() {
+        // the training writes created statistics, which only the user deletion removes
+        userService.deleteUsers(getAllUsers().stream().map(User::getId).toList());
+    }
+
+    @Test
+    void shouldAggregateCommittedTrainingsOfUser_whenAggregatingTrainings() throws Exception {
+        User user1 = existingUser(generateClient());
+        User user2 = existingUser(generateClient());
+        createTraining(user1, "RUNNING", "2024-01-18T08:00:00", "2024-01-18T09:00:00", 10.0);
+        createTraining(user1, "TENNIS", "2024-01-19T08:00:00", "2024-01-19T09:30:00", 2.0);
+        createTraining(user2, "RUNNING", "2024-01-19T08:00:00", "2024-01-19T09:00:00", 5.0);
+
+        mockMvc.perform(get("/api/trainings/analytics").param("userId", user1.getId().toString()))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.totalDistance").value(12.0))
+                .andExpect(jsonPath("$.totalDurationMillis").value(9_000_000))
+                .andExpect(jsonPath("$.maxDistance").value(10.0));
+
+        mockMvc.perform(get("/api/trainings/analytics")
+                                .param("activityType", "RUNNING")
+                                .param("from", "2024-01-19T00:00:00Z")
+                                .param("to", "2024-01-20T00:00:00Z"))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(1))
+                .andExpect(jsonPath("$.totalDistance").value(5.0));
+
+        mockMvc.perform(get("/api/trainings/analytics/activity").param("userId", user1.getId().toString()))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.RUNNING.count").value(1))
+                .andExpect(jsonPath("$.TENNIS.count").value(1))
+                .andExpect(jsonPath("$.CYCLING.count").value(0));
+    }
+
+    @Test
+    void shouldAggregateUpdatedValues_whenAggregatingUpdatedTraining() throws Exception {
+        User user1 = existingUser(generateClient());
+        long trainingId = createTraining(user1, "RUNNING", "2024-01-18T08:00:00", "2024-01-18T09:00:00", 10.0);
+
+        mockMvc.perform(put("/api/trainings/{trainingId}", trainingId)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(trainingBody(user1, "CYCLING", "2024-01-18T08:00:00", "2024-01-18T09:00:00",
+                                                      30.0)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/trainings/analytics/activity").param("userId", user1.getId().toString()))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.RUNNING.count").value(0))
+                .andExpect(jsonPath("$.CYCLING.count").value(1))
+                .andExpect(jsonPath("$.CYCLING.totalDistance").value(30.0));
+    }
+
+    private long createTraining(User user, String activityType, String startTime, String endTime, double distance)
+            throws Exception {
+        String response = mockMvc.perform(post("/api/trainings")
+                                                  .contentType(MediaType.APPLICATION_JSON)
+                                                  .content(trainingBody(user, activityType, startTime, endTime,
+                                                                        distance)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(response).get("id").asLong();
+    }
+
+    private static String trainingBody(User user, String activityType, String startTime, String endTime,
+                                       double distance) {
+        return """
+                {"userId": %d, "startTime": "%s", "endTime": "%s", "activityType": "%s", "distance": %s,
+                 "averageSpeed": 10.0}
+                """.formatted(user.getId(), startTime, endTime, activityType, distance);
+    }
+
+    private static User generateClient() {
+        return new User(randomUUID().toString(), randomUUID().toString(), LocalDate.of(1990, 5, 17),
+                        randomUUID().toString());
+    }
+
+}
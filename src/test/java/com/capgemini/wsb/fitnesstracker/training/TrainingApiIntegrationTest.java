@@ -5,6 +5,8 @@ import com.capgemini.wsb.fitnesstracker.IntegrationTestBase;
 import com.capgemini.wsb.fitnesstracker.training.api.Training;
 import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
 import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -14,11 +16,19 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 
 import static java.time.LocalDate.now;
 import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.log;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -27,9 +37,14 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc(addFilters = false)
 class TrainingApiIntegrationTest extends IntegrationTestBase {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Test
     void shouldReturnAllTrainings_whenGettingAllTrainings() throws Exception {
 
@@ -182,6 +197,280 @@ class TrainingApiIntegrationTest extends IntegrationTestBase {
                 .andExpect(jsonPath("$.averageSpeed").value(0.0));
     }
 
+    @Test
+    void shouldReturnUserTrainingsNewestFirstPageByPage_whenGettingTrainingsForUserWithCursor() throws Exception {
+        User user1 = existingUser(generateClient());
+        User user2 = existingUser(generateClient());
+        Training oldest = persistTraining(generateTrainingStartingAt(user1, "2024-01-17T08:00:00Z"));
+        Training middle = persistTraining(generateTrainingStartingAt(user1, "2024-01-18T08:00:00Z"));
+        Training newest = persistTraining(generateTrainingStartingAt(user1, "2024-01-19T08:00:00Z"));
+        persistTraining(generateTrainingStartingAt(user2, "2024-01-20T08:00:00Z"));
+        String cursor = "2024-01-18T08:00:00," + middle.getId();
+
+        mockMvc.perform(get("/api/trainings/{userId}", user1.getId()).param("limit", "2"))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(header().string(NEXT_CURSOR_HEADER, cursor))
+                .andExpect(jsonPath("$[0].id").value(newest.getId()))
+                .andExpect(jsonPath("$[0].userId").value(user1.getId()))
+                .andExpect(jsonPath("$[0].startTime").value("2024-01-19T08:00:00"))
+                .andExpect(jsonPath("$[1].id").value(middle.getId()))
+                .andExpect(jsonPath("$[2]").doesNotExist());
+
+        mockMvc.perform(get("/api/trainings/{userId}", user1.getId()).param("after", cursor).param("limit", "2"))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$[0].id").value(oldest.getId()))
+                .andExpect(jsonPath("$[1]").doesNotExist());
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenTrainingCursorIsMalformed() throws Exception {
+        User user1 = existingUser(generateClient());
+
+        mockMvc.perform(get("/api/trainings/{userId}", user1.getId()).param("after", "yesterday"))
+                .andDo(log())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldWriteEveryTrainingOnItsOwnLine_whenExportingTrainingsAsNdjson() throws Exception {
+        User user1 = existingUser(generateClient());
+        Training training1 = persistTraining(generateTrainingStartingAt(user1, "2024-01-18T08:00:00Z"));
+        Training training2 = persistTraining(generateTrainingStartingAt(user1, "2024-01-19T08:00:00Z"));
+
+        String export = mockMvc.perform(get("/api/trainings").accept(MediaType.APPLICATION_NDJSON))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        List<Long> exportedIds = new ArrayList<>();
+        for (String line : export.lines().toList()) {
+            exportedIds.add(objectMapper.readTree(line).get("id").asLong());
+        }
+        assertThat(exportedIds).containsExactlyInAnyOrder(training1.getId(), training2.getId());
+    }
+
+    @Test
+    void shouldCreateValidTrainingsAndRejectOthersOneByOne_whenCreatingTrainingBatch() throws Exception {
+        User user1 = existingUser(generateClient());
+        String requestBody = """
+                [
+                    {"userId": %1$d, "startTime": "2024-04-01T10:00:00", "endTime": "2024-04-01T11:00:00",
+                     "activityType": "RUNNING", "distance": 10.52, "averageSpeed": 8.2},
+                    {"userId": -1, "startTime": "2024-04-01T10:00:00", "endTime": "2024-04-01T11:00:00",
+                     "activityType": "RUNNING", "distance": 10.52, "averageSpeed": 8.2},
+                    null,
+                    {"userId": %1$d, "startTime": "2024-04-01T11:00:00", "endTime": "2024-04-01T10:00:00",
+                     "activityType": "TENNIS", "distance": 0.0, "averageSpeed": 0.0},
+                    {"userId": %1$d, "startTime": "2024-04-02T10:00:00", "endTime": "2024-04-02T11:30:00",
+                     "activityType": "CYCLING", "distance": 30.0, "averageSpeed": 20.0}
+                ]
+                """.formatted(user1.getId());
+
+        mockMvc.perform(post("/api/trainings/batch").contentType(MediaType.APPLICATION_JSON).content(requestBody))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].id").isNumber())
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].index").value(1))
+                .andExpect(jsonPath("$[1].id").doesNotExist())
+                .andExpect(jsonPath("$[1].error").isString())
+                .andExpect(jsonPath("$[2].error").value("Training is required"))
+                .andExpect(jsonPath("$[3].error").value("End time cannot be before the start time"))
+                .andExpect(jsonPath("$[4].id").isNumber())
+                .andExpect(jsonPath("$[5]").doesNotExist());
+
+        assertThat(getAllTrainings())
+                .hasSize(2)
+                .allSatisfy(training -> assertThat(training.getUser().getId()).isEqualTo(user1.getId()));
+    }
+
+    @Test
+    void shouldReturnTrainingsCompletedWithinRangePageByPage_whenGettingCompletedTrainings() throws Exception {
+        User user1 = existingUser(generateClient());
+        Training first = persistTraining(generateTrainingStartingAt(user1, "2024-01-17T08:00:00Z"));
+        Training second = persistTraining(generateTrainingStartingAt(user1, "2024-01-18T08:00:00Z"));
+        Training third = persistTraining(generateTrainingStartingAt(user1, "2024-01-19T08:00:00Z"));
+        persistTraining(generateTrainingStartingAt(user1, "2024-02-01T08:00:00Z"));
+        String cursor = "2024-01-18T09:30:00," + second.getId();
+
+        mockMvc.perform(get("/api/trainings/completed")
+                                .param("from", "2024-01-01T00:00:00Z")
+                                .param("to", "2024-01-31T00:00:00Z")
+                                .param("limit", "2"))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(header().string(NEXT_CURSOR_HEADER, cursor))
+                .andExpect(jsonPath("$[0].id").value(first.getId()))
+                .andExpect(jsonPath("$[0].endTime").value("2024-01-17T09:30:00"))
+                .andExpect(jsonPath("$[1].id").value(second.getId()))
+                .andExpect(jsonPath("$[2]").doesNotExist());
+
+        mockMvc.perform(get("/api/trainings/completed")
+                                .param("from", "2024-01-01T00:00:00Z")
+                                .param("to", "2024-01-31T00:00:00Z")
+                                .param("after", cursor)
+                                .param("limit", "2"))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$[0].id").value(third.getId()))
+                .andExpect(jsonPath("$[1]").doesNotExist());
+    }
+
+    @Test
+    void shouldWriteTrainingsCompletedWithinRange_whenExportingCompletedTrainingsAsNdjson() throws Exception {
+        User user1 = existingUser(generateClient());
+        Training completed = persistTraining(generateTrainingStartingAt(user1, "2024-01-17T08:00:00Z"));
+        persistTraining(generateTrainingStartingAt(user1, "2024-02-01T08:00:00Z"));
+
+        mockMvc.perform(get("/api/trainings/completed")
+                                .param("from", "2024-01-01T00:00:00Z")
+                                .param("to", "2024-01-31T00:00:00Z")
+                                .accept(MediaType.APPLICATION_NDJSON))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(jsonPath("$.id").value(completed.getId()));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenCompletedRangeEndsBeforeItStarts() throws Exception {
+        mockMvc.perform(get("/api/trainings/completed")
+                                .param("from", "2024-01-31T00:00:00Z")
+                                .param("to", "2024-01-01T00:00:00Z"))
+                .andDo(log())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturnTrainingsOfActivityNewestFirst_whenGettingTrainingsByActivityOfUserAndRange() throws Exception {
+        User user1 = existingUser(generateClient());
+        User user2 = existingUser(generateClient());
+        persistTraining(generateTrainingStartingAt(user1, ActivityType.RUNNING, "2024-01-17T08:00:00Z"));
+        Training tennis1 = persistTraining(
+                generateTrainingStartingAt(user1, ActivityType.TENNIS, "2024-01-18T08:00:00Z"));
+        Training tennis2 = persistTraining(
+                generateTrainingStartingAt(user1, ActivityType.TENNIS, "2024-01-19T08:00:00Z"));
+        Training tennis3 = persistTraining(
+                generateTrainingStartingAt(user2, ActivityType.TENNIS, "2024-01-20T08:00:00Z"));
+
+        mockMvc.perform(get("/api/trainings/activity")
+                                .param("activityType", "TENNIS")
+                                .param("userId", user1.getId().toString()))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(tennis2.getId()))
+                .andExpect(jsonPath("$[1].id").value(tennis1.getId()))
+                .andExpect(jsonPath("$[2]").doesNotExist());
+
+        mockMvc.perform(get("/api/trainings/activity")
+                                .param("activityType", "TENNIS")
+                                .param("from", "2024-01-19T00:00:00Z")
+                                .param("to", "2024-01-21T00:00:00Z"))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(tennis3.getId()))
+                .andExpect(jsonPath("$[1].id").value(tennis2.getId()))
+                .andExpect(jsonPath("$[2]").doesNotExist());
+    }
+
+    @Test
+    void shouldCountCreatedTraining_whenGettingTrainingCountsByActivity() throws Exception {
+        User user1 = existingUser(generateClient());
+        JsonNode countsBefore = getTrainingCountsByActivity();
+
+        mockMvc.perform(post("/api/trainings").contentType(MediaType.APPLICATION_JSON).content("""
+                        {"userId": %d, "startTime": "2024-04-01T10:00:00", "endTime": "2024-04-01T11:00:00",
+                         "activityType": "TENNIS", "distance": 0.0, "averageSpeed": 0.0}
+                        """.formatted(user1.getId())))
+                .andExpect(status().isOk());
+
+        JsonNode countsAfter = getTrainingCountsByActivity();
+        assertThat(countsAfter.get("TENNIS").asLong()).isEqualTo(countsBefore.get("TENNIS").asLong() + 1);
+        assertThat(countsAfter.get("RUNNING").asLong()).isEqualTo(countsBefore.get("RUNNING").asLong());
+    }
+
+    private JsonNode getTrainingCountsByActivity() throws Exception {
+        String counts = mockMvc.perform(get("/api/trainings/activity/counts"))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(counts);
+    }
+
+    @Test
+    void shouldChangeOnlyPatchedAttributesAndBumpVersion_whenPatchingTraining() throws Exception {
+        User user1 = existingUser(generateClient());
+        Training training1 = persistTraining(generateTrainingStartingAt(user1, "2024-01-19T08:00:00Z"));
+
+        mockMvc.perform(patch("/api/trainings/{trainingId}", training1.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("""
+                                        {"version": %d, "distance": 12.0}
+                                        """.formatted(training1.getVersion())))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(training1.getId()))
+                .andExpect(jsonPath("$.distance").value(12.0))
+                .andExpect(jsonPath("$.averageSpeed").value(8.2))
+                .andExpect(jsonPath("$.activityType").value(ActivityType.RUNNING.toString()))
+                .andExpect(jsonPath("$.startTime").value("2024-01-19T08:00:00"))
+                .andExpect(jsonPath("$.version").value(training1.getVersion() + 1));
+    }
+
+    @Test
+    void shouldReturnConflict_whenPatchingStaleVersionOfTraining() throws Exception {
+        User user1 = existingUser(generateClient());
+        Training training1 = persistTraining(generateTrainingStartingAt(user1, "2024-01-19T08:00:00Z"));
+        String patchOfFirstVersion = """
+                {"version": %d, "activityType": "TENNIS"}
+                """.formatted(training1.getVersion());
+
+        mockMvc.perform(patch("/api/trainings/{trainingId}", training1.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(patchOfFirstVersion))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch("/api/trainings/{trainingId}", training1.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(patchOfFirstVersion))
+                .andDo(log())
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldReturnNotFound_whenPatchingMissingTraining() throws Exception {
+        mockMvc.perform(patch("/api/trainings/{trainingId}", -1)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("""
+                                        {"version": 0, "distance": 12.0}
+                                        """))
+                .andDo(log())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenPatchingTrainingWithoutVersion() throws Exception {
+        User user1 = existingUser(generateClient());
+        Training training1 = persistTraining(generateTrainingStartingAt(user1, "2024-01-19T08:00:00Z"));
+
+        mockMvc.perform(patch("/api/trainings/{trainingId}", training1.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("""
+                                        {"distance": 12.0}
+                                        """))
+                .andDo(log())
+                .andExpect(status().isBadRequest());
+    }
+
     private static User generateClient() {
         return new User(randomUUID().toString(), randomUUID().toString(), now(), randomUUID().toString());
     }
@@ -209,6 +498,20 @@ class TrainingApiIntegrationTest extends IntegrationTestBase {
                 0, 0);
     }
 
+    private static Training generateTrainingStartingAt(User user, String startTime) {
+        return generateTrainingStartingAt(user, ActivityType.RUNNING, startTime);
+    }
+
+    private static Training generateTrainingStartingAt(User user, ActivityType activityType, String startTime) {
+        Instant start = Instant.parse(startTime);
+        return new Training(user,
+                            Date.from(start),
+                            Date.from(start.plus(Duration.ofMinutes(90))),
+                            activityType,
+                            10.5,
+                            8.2);
+    }
+
     private static Training generateTrainingWithDetails(User user, String startTime, String endTime, ActivityType activityType, double distance, double averageSpeed) throws ParseException {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
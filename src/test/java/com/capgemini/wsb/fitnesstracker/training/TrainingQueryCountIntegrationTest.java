@@ -0,0 +1,115 @@
+package com.capgemini.wsb.fitnesstracker.training;
+
+import com.capgemini.wsb.fitnesstracker.IntegrationTest;
+import com.capgemini.wsb.fitnesstracker.IntegrationTestBase;
+import com.capgemini.wsb.fitnesstracker.training.api.Training;
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.log;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the statements of the training list endpoints with the Hibernate statistics.
+ */
+@IntegrationTest
+@Transactional
+@AutoConfigureMockMvc(addFilters = false)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class TrainingQueryCountIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUpStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void shouldIssueSameNumberOfStatements_whenListingTrainingsOfMoreUsers() throws Exception {
+        persistTrainingsOfNewUsers(1);
+        long statementsForOneUser = countStatements(get("/api/trainings"));
+
+        persistTrainingsOfNewUsers(5);
+        long statementsForSixUsers = countStatements(get("/api/trainings"));
+
+        assertThat(statementsForSixUsers).isEqualTo(statementsForOneUser);
+    }
+
+    @Test
+    void shouldNotLoadUsers_whenListingTrainingsForUser() throws Exception {
+        User user = persistTrainingsOfNewUsers(1);
+
+        countStatements(get("/api/trainings/{userId}", user.getId()));
+
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    /**
+     * @return the last of the new users
+     */
+    private User persistTrainingsOfNewUsers(int users) {
+        User user = null;
+        for (int i = 0; i < users; i++) {
+            user = existingUser(new User(randomUUID().toString(), randomUUID().toString(), LocalDate.of(1990, 5, 17),
+                                         randomUUID().toString()));
+            persistTraining(generateTraining(user));
+        }
+        return user;
+    }
+
+    /**
+     * Performs the request with an empty persistence context, so every user it needs has to be loaded.
+     */
+    private long countStatements(RequestBuilder request) throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        mockMvc.perform(request)
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].userId").isNumber());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private static Training generateTraining(User user) {
+        Instant start = Instant.parse("2024-01-19T08:00:00Z");
+        return new Training(user,
+                            Date.from(start),
+                            Date.from(start.plus(Duration.ofMinutes(90))),
+                            ActivityType.RUNNING,
+                            10.5,
+                            8.2);
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SampleChunkCodecTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void shouldRoundTripSamples_whenSampledSteadily() {
+        long[] timestamps = new long[3600];
+        long[] values = new long[3600];
+        long value = 1_500;
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = 1_700_000_000_000L + i * 1000L;
+            value += random.nextInt(5) - 2;
+            values[i] = value;
+        }
+
+        byte[] data = SampleChunkCodec.encode(timestamps, values, 0, timestamps.length);
+
+        assertThat(data.length).isLessThan(timestamps.length);
+        assertDecodes(data, timestamps, values);
+    }
+
+    @Test
+    void shouldRoundTripSamples_whenSampledIrregularlyWithLargeJumps() {
+        long[] timestamps = new long[1000];
+        long[] values = new long[1000];
+        long timestamp = random.nextLong() >>> 24;
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamp += 1 + random.nextInt(random.nextBoolean() ? 50 : 5_000_000);
+            timestamps[i] = timestamp;
+            values[i] = random.nextBoolean() ? random.nextInt(100) : random.nextLong() >> 8;
+        }
+
+        assertDecodes(SampleChunkCodec.encode(timestamps, values, 0, timestamps.length), timestamps, values);
+    }
+
+    @Test
+    void shouldRoundTripSingleSample() {
+        long[] timestamps = {-5_000};
+        long[] values = {Long.MIN_VALUE / 4};
+
+        assertDecodes(SampleChunkCodec.encode(timestamps, values, 0, 1), timestamps, values);
+    }
+
+    @Test
+    void shouldEncodeAndDecodeAtOffsets_whenChunkIsPartOfLongerStream() {
+        long[] timestamps = new long[500];
+        long[] values = new long[500];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = i * 250L;
+            values[i] = i * i;
+        }
+
+        byte[] data = SampleChunkCodec.encode(timestamps, values, 100, 200);
+        long[] decodedTimestamps = new long[260];
+        long[] decodedValues = new long[260];
+        int decoded = SampleChunkCodec.decode(data, 200, Long.MIN_VALUE, Long.MAX_VALUE,
+                                              decodedTimestamps, decodedValues, 60);
+
+        assertThat(decoded).isEqualTo(200);
+        assertThat(Arrays.copyOfRange(decodedTimestamps, 60, 260)).containsExactly(Arrays.copyOfRange(timestamps, 100, 300));
+        assertThat(Arrays.copyOfRange(decodedValues, 60, 260)).containsExactly(Arrays.copyOfRange(values, 100, 300));
+        assertThat(decodedTimestamps[59]).isEqualTo(0L);
+    }
+
+    @Test
+    void shouldKeepOnlySamplesWithinWindow_whenDecoding() {
+        long[] timestamps = new long[100];
+        long[] values = new long[100];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = 10_000 + i * 10L;
+            values[i] = -i;
+        }
+        byte[] data = SampleChunkCodec.encode(timestamps, values, 0, timestamps.length);
+        long[] decodedTimestamps = new long[100];
+        long[] decodedValues = new long[100];
+
+        // from inclusive, to exclusive
+        int decoded = SampleChunkCodec.decode(data, 100, 10_200, 10_500, decodedTimestamps, decodedValues, 0);
+
+        assertThat(decoded).isEqualTo(30);
+        assertThat(Arrays.copyOf(decodedTimestamps, decoded)).containsExactly(Arrays.copyOfRange(timestamps, 20, 50));
+        assertThat(Arrays.copyOf(decodedValues, decoded)).containsExactly(Arrays.copyOfRange(values, 20, 50));
+
+        assertThat(SampleChunkCodec.decode(data, 100, 20_000, 30_000, decodedTimestamps, decodedValues, 0)).isEqualTo(0);
+    }
+
+    private static void assertDecodes(byte[] data, long[] timestamps, long[] values) {
+        long[] decodedTimestamps = new long[timestamps.length];
+        long[] decodedValues = new long[values.length];
+
+        int decoded = SampleChunkCodec.decode(data, timestamps.length, Long.MIN_VALUE, Long.MAX_VALUE,
+                                              decodedTimestamps, decodedValues, 0);
+
+        assertThat(decoded).isEqualTo(timestamps.length);
+        assertThat(decodedTimestamps).containsExactly(timestamps);
+        assertThat(decodedValues).containsExactly(values);
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.datasource.api.ShardRouter;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingAggregate;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingChangedEvent;
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TrainingColumnStoreTest {
+
+    private static final int SEGMENT_SIZE = 16;
+
+    /**
+     * Trainings read by the load, with the events committed while it reads them.
+     */
+    private final List<Object> loadedItems = new ArrayList<>();
+
+    private final TrainingColumnStore store = new TrainingColumnStore(mock(TrainingRepository.class),
+                                                                      new LoadingShardRouter(),
+                                                                      SEGMENT_SIZE);
+
+    @Test
+    void shouldKeepNewerState_whenTrainingIsUpdatedWhileLoading() {
+        TrainingDto stale = training(1, 5.0);
+        TrainingDto updated = training(1, 42.0);
+        loadedItems.add(TrainingChangedEvent.updated(stale, updated));
+        loadedItems.add(stale);
+
+        store.load();
+
+        assertThat(store.aggregate(null, null, null, null)).isEqualTo(new TrainingAggregate(1, 42.0, 3_600_000, 10.0, 42.0));
+    }
+
+    @Test
+    void shouldNotKeepTraining_whenItIsDeletedWhileLoading() {
+        TrainingDto deleted = training(1, 5.0);
+        loadedItems.add(training(2, 7.0));
+        loadedItems.add(TrainingChangedEvent.deleted(deleted));
+        loadedItems.add(deleted);
+
+        store.load();
+
+        assertThat(store.aggregate(null, null, null, null).count()).isEqualTo(1L);
+        assertThat(store.aggregate(null, null, null, null).totalDistance()).isEqualTo(7.0);
+    }
+
+    @Test
+    void shouldAddTraining_whenItIsCreatedWhileLoading() {
+        loadedItems.add(training(1, 5.0));
+        loadedItems.add(TrainingChangedEvent.created(training(2, 7.0)));
+
+        store.load();
+        store.onTrainingChanged(TrainingChangedEvent.created(training(3, 9.0)));
+
+        assertThat(store.aggregate(null, null, null, null).count()).isEqualTo(3L);
+        assertThat(store.aggregate(null, null, null, null).totalDistance()).isEqualTo(21.0);
+    }
+
+    @Test
+    void shouldReuseRows_whenTrainingsAreRemovedAndCreated() {
+        store.load();
+        for (long id = 1; id <= 100; id++) {
+            store.onTrainingChanged(TrainingChangedEvent.created(training(id, 1.0)));
+        }
+
+        long nextId = 101;
+        for (int round = 0; round < 20; round++) {
+            // deletes the older half of the live trainings
+            for (long id = nextId - 100; id < nextId - 50; id++) {
+                store.onTrainingChanged(TrainingChangedEvent.deleted(training(id, 1.0)));
+            }
+            for (int i = 0; i < 50; i++) {
+                store.onTrainingChanged(TrainingChangedEvent.created(training(nextId++, 2.0)));
+            }
+        }
+
+        assertThat(store.rowCount()).isEqualTo(100);
+        TrainingAggregate aggregate = store.aggregate(null, null, null, null);
+        assertThat(aggregate.count()).isEqualTo(100L);
+        assertThat(aggregate.totalDistance()).isEqualTo(200.0);
+    }
+
+    private static TrainingDto training(long id, double distance) {
+        long start = 1_700_000_000_000L;
+        return new TrainingDto(id,
+                               1L,
+                               new Date(start),
+                               new Date(start + 3_600_000L),
+                               ActivityType.RUNNING,
+                               distance,
+                               10.0,
+                               0,
+                               0L);
+    }
+
+    /**
+     * Router of a single shard, streaming the loaded trainings and committing the events in between.
+     */
+    private final class LoadingShardRouter implements ShardRouter {
+
+        @Override
+        public int shardCount() {
+            return 1;
+        }
+
+        @Override
+        public int shardOf(long userId) {
+            return 0;
+        }
+
+        @Override
+        public <T> T onShard(int shard, Supplier<T> action) {
+            return action.get();
+        }
+
+        @Override
+        public <T> List<T> onEveryShard(Supplier<T> action) {
+            return List.of(action.get());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> void streamEveryShard(Supplier<Stream<T>> query, Consumer<T> consumer) {
+            for (Object item : loadedItems) {
+                if (item instanceof TrainingChangedEvent event) {
+                    store.onTrainingChanged(event);
+                } else {
+                    consumer.accept((T) item);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,222 @@
+package com.capgemini.wsb.fitnesstracker.training.internal;
+
+import com.capgemini.wsb.fitnesstracker.training.api.TrainingDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TrainingWriteAheadLogTest {
+
+    private static final int RECORD_SIZE = 49;
+
+    /**
+     * Fits 20 records and a roll marker.
+     */
+    private static final int SEGMENT_SIZE = 1000;
+
+    @TempDir
+    Path directory;
+
+    private TrainingWriteAheadLog log;
+
+    @AfterEach
+    void closeLog() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Test
+    void shouldReadAllRecords_whenReopenedAfterRollingOverSegments() throws IOException {
+        List<TrainingDto> appended = new ArrayList<>();
+        openLog();
+        TrainingLogPosition last = null;
+        for (int i = 0; i < 45; i++) {
+            TrainingDto training = training(i);
+            appended.add(training);
+            last = log.append(training);
+        }
+        assertThat(last).isEqualTo(new TrainingLogPosition(2, 5 * RECORD_SIZE));
+
+        reopenLog();
+
+        assertThat(log.endPosition()).isEqualTo(last);
+        assertThat(readAll(log.startPosition())).isEqualTo(appended);
+    }
+
+    @Test
+    void shouldContinueAfterFullSegment_whenReopenedWithRollMarkerAsTail() throws IOException {
+        openLog();
+        for (int i = 0; i < 20; i++) {
+            log.append(training(i));
+        }
+        log.append(training(20));
+        assertThat(log.endPosition()).isEqualTo(new TrainingLogPosition(1, RECORD_SIZE));
+
+        reopenLog();
+        log.append(training(21));
+
+        List<TrainingDto> read = readAll(log.startPosition());
+        assertThat(read).hasSize(22);
+        assertThat(read.get(21)).isEqualTo(training(21));
+    }
+
+    @Test
+    void shouldDropTornLastRecordAndAppendInItsPlace_whenReopened() throws IOException {
+        openLog();
+        List<TrainingDto> appended = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            TrainingDto training = training(i);
+            appended.add(training);
+            log.append(training);
+        }
+        log.close();
+        // the payload of the last record only partially reached the disk
+        corrupt(1, 4 * RECORD_SIZE + 20);
+
+        reopenLog();
+
+        assertThat(log.endPosition()).isEqualTo(new TrainingLogPosition(1, 4 * RECORD_SIZE));
+        assertThat(readAll(log.startPosition())).isEqualTo(appended.subList(0, 24));
+
+        TrainingDto next = training(100);
+        log.append(next);
+        reopenLog();
+
+        List<TrainingDto> expected = new ArrayList<>(appended.subList(0, 24));
+        expected.add(next);
+        assertThat(readAll(log.startPosition())).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldClearGarbageBehindTornRecord_whenReopened() throws IOException {
+        openLog();
+        for (int i = 0; i < 5; i++) {
+            log.append(training(i));
+        }
+        log.close();
+        // the length of the third record never reached the disk, the two records behind it did
+        write(0, 2 * RECORD_SIZE, 0);
+
+        reopenLog();
+        log.append(training(100));
+        reopenLog();
+
+        assertThat(readAll(log.startPosition())).isEqualTo(List.of(training(0), training(1), training(100)));
+    }
+
+    @Test
+    void shouldFailOnCorruptedRecordAndSkipIt_whenRecordIsNotInLastSegment() throws IOException {
+        openLog();
+        List<TrainingDto> appended = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            TrainingDto training = training(i);
+            appended.add(training);
+            log.append(training);
+        }
+        log.close();
+        corrupt(0, 3 * RECORD_SIZE + 30);
+        reopenLog();
+
+        List<TrainingDto> read = new ArrayList<>();
+        TrainingLogPosition position = log.read(log.startPosition(), 3, read);
+        assertThat(position).isEqualTo(new TrainingLogPosition(0, 3 * RECORD_SIZE));
+        assertThat(read).isEqualTo(appended.subList(0, 3));
+        assertThatThrownBy(() -> log.read(log.startPosition(), 100, new ArrayList<>()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("0:" + 3 * RECORD_SIZE);
+
+        List<byte[]> skipped = new ArrayList<>();
+        position = log.skip(position, skipped);
+
+        assertThat(position).isEqualTo(new TrainingLogPosition(0, 4 * RECORD_SIZE));
+        assertThat(skipped).hasSize(1);
+        assertThat(skipped.get(0).length).isEqualTo(RECORD_SIZE);
+        read.clear();
+        log.read(position, 100, read);
+        assertThat(read).isEqualTo(appended.subList(4, 25));
+    }
+
+    @Test
+    void shouldSkipOverRollMarker_whenSkippingAtEndOfSegment() throws IOException {
+        openLog();
+        for (int i = 0; i < 22; i++) {
+            log.append(training(i));
+        }
+
+        List<byte[]> skipped = new ArrayList<>();
+        TrainingLogPosition position = log.skip(new TrainingLogPosition(0, 20 * RECORD_SIZE), skipped);
+
+        assertThat(position).isEqualTo(new TrainingLogPosition(1, RECORD_SIZE));
+        assertThat(skipped).hasSize(1);
+        List<TrainingDto> read = new ArrayList<>();
+        log.read(position, 100, read);
+        assertThat(read).isEqualTo(List.of(training(21)));
+
+        skipped.clear();
+        TrainingLogPosition end = log.endPosition();
+        assertThat(log.skip(end, skipped)).isEqualTo(end);
+        assertThat(skipped).isEmpty();
+    }
+
+    private void openLog() throws IOException {
+        log = new TrainingWriteAheadLog(new TrainingIngestionProperties(directory.toString(),
+                                                                        DataSize.ofBytes(SEGMENT_SIZE),
+                                                                        100,
+                                                                        false,
+                                                                        3));
+        log.open();
+    }
+
+    /**
+     * Opens the log again as after a restart of the application.
+     */
+    private void reopenLog() throws IOException {
+        log.close();
+        openLog();
+    }
+
+    private List<TrainingDto> readAll(TrainingLogPosition from) throws IOException {
+        List<TrainingDto> trainings = new ArrayList<>();
+        log.read(from, Integer.MAX_VALUE, trainings);
+        return trainings;
+    }
+
+    private void corrupt(long segment, int offset) throws IOException {
+        write(segment, offset, 0x5a5a5a5a);
+    }
+
+    private void write(long segment, int offset, int value) throws IOException {
+        Path file = directory.resolve("%020d.log".formatted(segment));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, value), offset);
+        }
+    }
+
+    private static TrainingDto training(int i) {
+        long start = 1_700_000_000_000L + i * 3_600_000L;
+        return new TrainingDto(null,
+                               1L + i % 7,
+                               new Date(start),
+                               new Date(start + 1_800_000L + i * 1000L),
+                               ActivityType.values()[i % ActivityType.values().length],
+                               5.5 + i,
+                               9.75 + i / 10.0,
+                               0,
+                               null);
+    }
+
+}
@@ -2,7 +2,12 @@ package com.capgemini.wsb.fitnesstracker.user.internal;
 
 import com.capgemini.wsb.fitnesstracker.IntegrationTest;
 import com.capgemini.wsb.fitnesstracker.IntegrationTestBase;
+import com.capgemini.wsb.fitnesstracker.training.api.Training;
+import com.capgemini.wsb.fitnesstracker.training.internal.ActivityType;
 import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserImportReport;
+import com.capgemini.wsb.fitnesstracker.user.api.UserProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -10,7 +15,11 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import static java.time.format.DateTimeFormatter.ISO_DATE;
@@ -19,6 +28,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.log;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -30,6 +41,12 @@ class UserApiIntegrationTest extends IntegrationTestBase {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserProvider userProvider;
+
     @Test
     void shouldReturnAllUsers_whenGettingAllUsers() throws Exception {
         User user1 = existingUser(generateUser());
@@ -95,6 +112,22 @@ class UserApiIntegrationTest extends IntegrationTestBase {
                 .andExpect(jsonPath("$[0].email").value(user1.getEmail()));
     }
 
+    @Test
+    void shouldFindUserIgnoringCaseAndWhitespace_whenGettingUserByEmail() {
+        User user1 = existingUser(generateUserWithEmail("Mike.Scott@Domain.com"));
+        existingUser(generateUserWithEmail("dwight.schrute@domain.com"));
+
+        assertThat(userProvider.getUserByEmail(" MIKE.scott@domain.COM "))
+                .hasValueSatisfying(user -> assertThat(user.getId()).isEqualTo(user1.getId()));
+    }
+
+    @Test
+    void shouldFindNoUser_whenGettingUserByUnknownEmail() {
+        existingUser(generateUserWithEmail("mike.scott@domain.com"));
+
+        assertThat(userProvider.getUserByEmail("michael.scott@domain.com")).isEmpty();
+    }
+
     @Test
     void shouldReturnAllUsersOlderThan_whenGettingAllUsersOlderThan() throws Exception {
         User user1 = existingUser(generateUserWithDate(LocalDate.of(2000, 8, 11)));
@@ -203,6 +236,236 @@ class UserApiIntegrationTest extends IntegrationTestBase {
         assertThat(user.getEmail()).isEqualTo(USER_EMAIL);
     }
 
+    @Test
+    void shouldImportValidRowsAndReportRejectedOnes_whenImportingUsers() throws Exception {
+        User user1 = existingUser(generateUserWithEmail("dwight.schrute@domain.com"));
+
+        String csv = """
+                email,first_name,last_name,birthdate
+                mike.scott@domain.com,Mike,Scott,1964-03-15
+                Dwight.Schrute@domain.com,Dwight,Schrute,1970-01-20
+                jim.halpert@domain.com,"Jim ""Big Tuna""\",Halpert,1978-10-01
+                pam.beesly@domain.com,Pam,Beesly,01/25/1979
+                MIKE.SCOTT@domain.com,Ryan,Howard,1979-05-05
+                """;
+
+        String response = mockMvc.perform(post("/v1/users/import").contentType("text/csv").content(csv))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        UserImportReport report = objectMapper.readValue(response, UserImportReport.class);
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.rejected()).isEqualTo(3);
+        assertThat(report.errors()).containsExactlyInAnyOrder(
+                new UserImportReport.RowError(3, "User with email Dwight.Schrute@domain.com already exists"),
+                new UserImportReport.RowError(5, "Birthdate 01/25/1979 should have the yyyy-MM-dd format"),
+                new UserImportReport.RowError(6, "Email MIKE.SCOTT@domain.com is repeated in the file"));
+
+        assertThat(getAllUsers()).extracting(User::getEmail)
+                                 .containsExactlyInAnyOrder(user1.getEmail(),
+                                                            "mike.scott@domain.com",
+                                                            "jim.halpert@domain.com");
+        assertThat(userProvider.getUserByEmail("jim.halpert@domain.com"))
+                .hasValueSatisfying(user -> assertThat(user.getFirstName()).isEqualTo("Jim \"Big Tuna\""));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenImportingUsersWithoutAllColumns() throws Exception {
+        String csv = """
+                first_name,last_name,email
+                Mike,Scott,mike.scott@domain.com
+                """;
+
+        mockMvc.perform(post("/v1/users/import").contentType("text/csv").content(csv))
+                .andDo(log())
+                .andExpect(status().isBadRequest());
+
+        assertThat(getAllUsers()).isEmpty();
+    }
+
+    @Test
+    void shouldReturnAllUsersOlderThanAgeOrderedById_whenGettingUsersByLegacyAge() throws Exception {
+        User user1 = existingUser(generateUserWithDate(LocalDate.now().minusYears(40)));
+        User user2 = existingUser(generateUserWithDate(LocalDate.now().minusYears(25)));
+        existingUser(generateUserWithDate(LocalDate.now().minusYears(10)));
+
+        mockMvc.perform(get("/v1/users/age").param("age", "20").contentType(MediaType.APPLICATION_JSON))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(UserController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].firstName").value(user1.getFirstName()))
+                .andExpect(jsonPath("$[1].firstName").value(user2.getFirstName()));
+    }
+
+    @Test
+    void shouldReturnPageOfUsersYoungestFirst_whenGettingUsersByAgeRange() throws Exception {
+        existingUser(generateUserWithDate(LocalDate.now().minusYears(40)));
+        User user2 = existingUser(generateUserWithDate(LocalDate.now().minusYears(30)));
+        User user3 = existingUser(generateUserWithDate(LocalDate.now().minusYears(25)));
+        existingUser(generateUserWithDate(LocalDate.now().minusYears(10)));
+
+        String cursor = mockMvc.perform(get("/v1/users/age").param("min", "20")
+                                                                .param("max", "35")
+                                                                .param("limit", "1")
+                                                                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].firstName").value(user3.getFirstName()))
+                .andReturn()
+                .getResponse()
+                .getHeader(UserController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get("/v1/users/age").param("min", "20")
+                                             .param("max", "35")
+                                             .param("after", cursor)
+                                             .contentType(MediaType.APPLICATION_JSON))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(UserController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].firstName").value(user2.getFirstName()));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenMinimalAgeIsGreaterThanMaximalAge() throws Exception {
+        mockMvc.perform(get("/v1/users/age").param("min", "40")
+                                             .param("max", "30")
+                                             .contentType(MediaType.APPLICATION_JSON))
+                .andDo(log())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturnPagesOfSummariesOrderedById_whenGettingUserSummaries() throws Exception {
+        User user1 = existingUser(generateUser());
+        User user2 = existingUser(generateUser());
+        User user3 = existingUser(generateUser());
+
+        String cursor = mockMvc.perform(get("/v1/users/summary").param("limit", "2")
+                                                                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(header().string(UserController.NEXT_CURSOR_HEADER, user2.getId().toString()))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(user1.getId()))
+                .andExpect(jsonPath("$[0].firstName").value(user1.getFirstName()))
+                .andExpect(jsonPath("$[0].lastName").value(user1.getLastName()))
+                .andExpect(jsonPath("$[0].email").doesNotExist())
+                .andExpect(jsonPath("$[1].id").value(user2.getId()))
+                .andReturn()
+                .getResponse()
+                .getHeader(UserController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get("/v1/users/summary").param("after", cursor)
+                                                 .param("limit", "2")
+                                                 .contentType(MediaType.APPLICATION_JSON))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(UserController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(user3.getId()));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenGettingUserSummariesWithLimitOutOfRange() throws Exception {
+        mockMvc.perform(get("/v1/users/summary").param("limit", "0").contentType(MediaType.APPLICATION_JSON))
+                .andDo(log())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldStreamSummariesOfAllUsers_whenExportingUserSummaries() throws Exception {
+        User user1 = existingUser(generateUser());
+        User user2 = existingUser(generateUser());
+
+        String export = mockMvc.perform(get("/v1/users/summary").accept(MediaType.APPLICATION_NDJSON))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        List<Long> exportedIds = new ArrayList<>();
+        for (String line : export.lines().toList()) {
+            exportedIds.add(objectMapper.readTree(line).get("id").asLong());
+        }
+        assertThat(exportedIds).containsExactlyInAnyOrder(user1.getId(), user2.getId());
+    }
+
+    @Test
+    void shouldChangeOnlyPatchedAttributes_whenPatchingUser() throws Exception {
+        User user1 = existingUser(generateUser());
+
+        mockMvc.perform(patch("/v1/users/{userId}", user1.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("""
+                                        {"firstName": "Mike", "email": "Mike.Scott@domain.com"}
+                                        """))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName").value("Mike"))
+                .andExpect(jsonPath("$.lastName").value(user1.getLastName()))
+                .andExpect(jsonPath("$.birthdate").value(ISO_DATE.format(user1.getBirthdate())))
+                .andExpect(jsonPath("$.email").value("Mike.Scott@domain.com"));
+
+        User user = getAllUsers().get(0);
+        assertThat(user.getFirstName()).isEqualTo("Mike");
+        assertThat(user.getLastName()).isEqualTo(user1.getLastName());
+        assertThat(user.getNormalizedEmail()).isEqualTo("mike.scott@domain.com");
+    }
+
+    @Test
+    void shouldReturnConflict_whenPatchingEmailOfAnotherUser() throws Exception {
+        User user1 = existingUser(generateUser());
+        User user2 = existingUser(generateUser());
+
+        mockMvc.perform(patch("/v1/users/{userId}", user2.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("""
+                                        {"email": "%s"}
+                                        """.formatted(user1.getEmail())))
+                .andDo(log())
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldReturnNotFound_whenPatchingMissingUser() throws Exception {
+        mockMvc.perform(patch("/v1/users/{userId}", Long.MAX_VALUE)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("""
+                                        {"firstName": "Mike"}
+                                        """))
+                .andDo(log())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldRemoveUsersWithTheirTrainings_whenDeletingUsers() throws Exception {
+        User user1 = existingUser(generateUser());
+        User user2 = existingUser(generateUser());
+        User user3 = existingUser(generateUser());
+        persistTraining(generateTraining(user1));
+        persistTraining(generateTraining(user1));
+        persistTraining(generateTraining(user2));
+        persistTraining(generateTraining(user3));
+
+        mockMvc.perform(delete("/v1/users").param("ids", user1.getId() + "," + user2.getId() + "," + Long.MAX_VALUE))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(2));
+
+        assertThat(getAllUsers()).hasSize(1);
+        List<Training> trainings = getAllTrainings();
+        assertThat(trainings).hasSize(1);
+        assertThat(trainings.get(0).getUser().getId()).isEqualTo(user3.getId());
+    }
+
     public static User generateUser() {
         return new User(randomUUID().toString(), randomUUID().toString(), LocalDate.now(), randomUUID().toString());
     }
@@ -211,5 +474,19 @@ class UserApiIntegrationTest extends IntegrationTestBase {
         return new User(randomUUID().toString(), randomUUID().toString(), date, randomUUID().toString());
     }
 
+    private static User generateUserWithEmail(String email) {
+        return new User(randomUUID().toString(), randomUUID().toString(), LocalDate.now(), email);
+    }
+
+    private static Training generateTraining(User user) {
+        Instant start = Instant.parse("2024-01-19T08:00:00Z");
+        return new Training(user,
+                            Date.from(start),
+                            Date.from(start.plus(Duration.ofMinutes(90))),
+                            ActivityType.RUNNING,
+                            10.5,
+                            8.2);
+    }
+
 
 }
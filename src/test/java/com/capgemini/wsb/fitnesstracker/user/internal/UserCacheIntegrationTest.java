@@ -0,0 +1,92 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import com.capgemini.wsb.fitnesstracker.IntegrationTest;
+import com.capgemini.wsb.fitnesstracker.IntegrationTestBase;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.LocalDate;
+
+import static java.util.UUID.randomUUID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.log;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Not transactional, as the cached users are invalidated once the user changes commit.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc(addFilters = false)
+class UserCacheIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void shouldServeRepeatedReadFromCache_whenGettingUserById() throws Exception {
+        User user1 = existingUser(generateUser());
+        double hitsBefore = cacheGets("hit");
+        double missesBefore = cacheGets("miss");
+
+        getUser(user1).andExpect(jsonPath("$.firstName").value(user1.getFirstName()));
+        getUser(user1).andExpect(jsonPath("$.firstName").value(user1.getFirstName()));
+
+        assertThat(cacheGets("miss") - missesBefore).isEqualTo(1);
+        assertThat(cacheGets("hit") - hitsBefore).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReturnUpdatedUser_whenGettingCachedUserAfterUpdate() throws Exception {
+        User user1 = existingUser(generateUser());
+        getUser(user1).andExpect(jsonPath("$.firstName").value(user1.getFirstName()));
+
+        mockMvc.perform(put("/v1/users/{userId}", user1.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("""
+                                        {"firstName": "Mike", "lastName": "Scott", "birthdate": "1964-03-15",
+                                         "email": "%s"}
+                                        """.formatted(user1.getEmail())))
+                .andDo(log())
+                .andExpect(status().isOk());
+
+        getUser(user1).andExpect(jsonPath("$.firstName").value("Mike"))
+                      .andExpect(jsonPath("$.lastName").value("Scott"));
+    }
+
+    @Test
+    void shouldPublishCacheMetrics_whenGettingCacheGetsMetric() throws Exception {
+        mockMvc.perform(get("/actuator/metrics/cache.gets").param("tag", "cache:users"))
+                .andDo(log())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("cache.gets"))
+                .andExpect(jsonPath("$.measurements[0].value").isNumber());
+    }
+
+    private ResultActions getUser(User user) throws Exception {
+        return mockMvc.perform(get("/v1/users/{id}", user.getId()).contentType(MediaType.APPLICATION_JSON))
+                .andDo(log())
+                .andExpect(status().isOk());
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tags("cache", "users", "result", result).functionCounter().count();
+    }
+
+    private static User generateUser() {
+        return new User(randomUUID().toString(), randomUUID().toString(), LocalDate.of(1990, 5, 17),
+                        randomUUID().toString());
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import com.capgemini.wsb.fitnesstracker.IntegrationTest;
+import com.capgemini.wsb.fitnesstracker.IntegrationTestBase;
+import com.capgemini.wsb.fitnesstracker.user.api.User;
+import com.capgemini.wsb.fitnesstracker.user.api.UserProvider;
+import com.capgemini.wsb.fitnesstracker.user.api.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs with the email directory enabled. Not transactional, as the directory follows the committed user changes.
+ */
+@IntegrationTest
+@TestPropertySource(properties = "user.email-directory.enabled=true")
+class UserEmailDirectoryIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserProvider userProvider;
+
+    @Autowired
+    private UserEmailDirectory emailDirectory;
+
+    @AfterEach
+    void deleteUsers() {
+        // deleted through the service, so the directory forgets their emails as well
+        userService.deleteUsers(getAllUsers().stream().map(User::getId).toList());
+    }
+
+    @Test
+    void shouldFindCreatedUserIgnoringCaseAndWhitespace_whenGettingUserByEmail() {
+        User user = userService.createUser(generateUser("Mike.Scott@Domain.com"));
+
+        assertThat(emailDirectory.isLoaded()).isTrue();
+        assertThat(emailDirectory.findUserId(" mike.scott@DOMAIN.com ")).isEqualTo(user.getId());
+        assertThat(userProvider.getUserByEmail("MIKE.SCOTT@domain.com"))
+                .hasValueSatisfying(found -> assertThat(found.getId()).isEqualTo(user.getId()));
+        assertThat(userProvider.getUserByEmail("dwight.schrute@domain.com")).isEmpty();
+    }
+
+    @Test
+    void shouldFindUserByNewEmailOnly_whenGettingUserByEmailAfterUpdate() {
+        User user = userService.createUser(generateUser("mike.scott@domain.com"));
+
+        userService.updateUser(user.getId(), generateUser("michael.scott@domain.com"));
+
+        assertThat(userProvider.getUserByEmail("mike.scott@domain.com")).isEmpty();
+        assertThat(userProvider.getUserByEmail("michael.scott@domain.com"))
+                .hasValueSatisfying(found -> assertThat(found.getId()).isEqualTo(user.getId()));
+    }
+
+    @Test
+    void shouldFindNoUser_whenGettingUserByEmailAfterDeletion() {
+        User user = userService.createUser(generateUser("mike.scott@domain.com"));
+
+        userService.deleteUser(user.getId());
+
+        assertThat(emailDirectory.findUserId("mike.scott@domain.com")).isEqualTo(UserEmailDirectory.NO_USER);
+        assertThat(userProvider.getUserByEmail("mike.scott@domain.com")).isEmpty();
+    }
+
+    private static User generateUser(String email) {
+        return new User("Mike", "Scott", LocalDate.of(1964, 3, 15), email);
+    }
+
+}
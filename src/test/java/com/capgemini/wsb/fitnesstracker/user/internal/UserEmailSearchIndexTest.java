@@ -0,0 +1,104 @@
+package com.capgemini.wsb.fitnesstracker.user.internal;
+
+import com.capgemini.wsb.fitnesstracker.user.api.UserChangedEvent;
+import com.capgemini.wsb.fitnesstracker.user.api.UserDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserEmailSearchIndexTest {
+
+    private static final int USER_COUNT = 1_000_000;
+
+    private static final String[] DOMAINS = {"gmail.com", "wp.pl", "example.org", "onet.pl", "Student.WSB.pl"};
+
+    private final Random random = new Random(42);
+
+    private final UserEmailSearchIndex index = new UserEmailSearchIndex(null, null);
+
+    private final Map<Long, String> emails = new HashMap<>();
+
+    @Test
+    void shouldMatchBruteForceScan_whenSearchingMillionEmails() {
+        for (long userId = 1; userId <= USER_COUNT; userId++) {
+            save(userId, randomEmail());
+        }
+
+        for (int query = 0; query < 100; query++) {
+            String fragment = randomFragment();
+            assertThat(index.search(fragment)).as(fragment).containsExactly(bruteForceSearch(fragment));
+        }
+    }
+
+    @Test
+    void shouldReuseRowsAndMatchBruteForceScan_whenEmailsChangeAndUsersAreDeleted() {
+        int userCount = 50_000;
+        for (long userId = 1; userId <= userCount; userId++) {
+            save(userId, randomEmail());
+        }
+
+        long nextUserId = userCount + 1;
+        for (int change = 0; change < 200_000; change++) {
+            long userId = 1 + random.nextInt((int) nextUserId - 1);
+            if (!emails.containsKey(userId)) {
+                continue;
+            }
+            if (random.nextInt(4) == 0) {
+                delete(userId);
+                save(nextUserId++, randomEmail());
+            } else {
+                save(userId, randomEmail());
+            }
+        }
+
+        assertThat(index.rowCount()).isLessThanOrEqualTo(userCount);
+        for (int query = 0; query < 200; query++) {
+            String fragment = randomFragment();
+            assertThat(index.search(fragment)).as(fragment).containsExactly(bruteForceSearch(fragment));
+        }
+    }
+
+    private void save(long userId, String email) {
+        emails.put(userId, email);
+        index.onUserChanged(new UserChangedEvent(userId, new UserDto(userId, "John", "Doe", null, email)));
+    }
+
+    private void delete(long userId) {
+        emails.remove(userId);
+        index.onUserChanged(UserChangedEvent.deleted(userId));
+    }
+
+    private long[] bruteForceSearch(String fragment) {
+        String normalized = fragment.toLowerCase(Locale.ROOT);
+        return emails.entrySet().stream()
+                     .filter(entry -> entry.getValue().toLowerCase(Locale.ROOT).contains(normalized))
+                     .mapToLong(Map.Entry::getKey)
+                     .sorted()
+                     .toArray();
+    }
+
+    private String randomEmail() {
+        return "user" + Integer.toString(random.nextInt(1 << 20), 36) + "." + random.nextInt(1000)
+                + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+    }
+
+    /**
+     * Fragment of an indexed email, of one to nine characters, in random case, or one matching nothing.
+     */
+    private String randomFragment() {
+        if (random.nextInt(10) == 0) {
+            return "no-such-" + random.nextInt(1000);
+        }
+        String email = emails.values().stream().skip(random.nextInt(Math.min(emails.size(), 1000))).findFirst().orElseThrow();
+        int length = 1 + random.nextInt(Math.min(9, email.length()));
+        int start = random.nextInt(email.length() - length + 1);
+        String fragment = email.substring(start, start + length);
+        return random.nextBoolean() ? fragment.toUpperCase(Locale.ROOT) : fragment;
+    }
+
+}